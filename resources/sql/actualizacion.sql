@@ -0,0 +1,40 @@
+-- Actualiza una base de datos `examen2` creada con una versión anterior de examen2.sql sin
+-- borrar sus datos. Todas las sentencias comprueban si ya se han aplicado, de modo que el
+-- script se puede ejecutar más de una vez.
+USE `examen2` ;
+
+-- Miniatura de la imagen de cada producto (utilities.Miniaturas). Las filas que ya existían
+-- quedan sin miniatura hasta que se vuelva a guardar su imagen.
+ALTER TABLE `productos` ADD COLUMN IF NOT EXISTS
+	`miniatura` blob NULL AFTER `imagen`;
+
+-- Versión de cada fila para el control de concurrencia optimista (DAOProducto.modificarProducto):
+-- cada UPDATE la incrementa y una modificación solo se aplica si la versión no ha cambiado.
+ALTER TABLE `productos` ADD COLUMN IF NOT EXISTS
+	`version` int unsigned NOT NULL DEFAULT 1;
+
+-- Índices de las búsquedas de DAOProducto.buscarProductos.
+CREATE INDEX IF NOT EXISTS `idx_productos_nombre` ON `productos` (`nombre`);
+CREATE INDEX IF NOT EXISTS `idx_productos_precio` ON `productos` (`precio`);
+CREATE INDEX IF NOT EXISTS `idx_productos_disponible_precio` ON `productos` (`disponible`, `precio`);
+
+-- Registro de cambios para que los clientes abiertos se sincronicen (DAOProducto.getCambios).
+-- Los triggers se sustituyen si ya existían; el registro empieza vacío.
+CREATE TABLE IF NOT EXISTS `productos_cambios` (
+	`id` bigint NOT NULL AUTO_INCREMENT,
+	`codigo` varchar(5) NOT NULL,
+	`operacion` char(1) NOT NULL,
+	`momento` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+	PRIMARY KEY (`id`),
+	KEY `idx_productos_cambios_momento` (`momento`)
+) ENGINE = InnoDB DEFAULT CHARACTER SET = latin1 COLLATE = latin1_spanish_ci;
+
+CREATE OR REPLACE TRIGGER `productos_cambios_alta` AFTER INSERT ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`) VALUES (NEW.`codigo`, 'A');
+
+CREATE OR REPLACE TRIGGER `productos_cambios_modificacion` AFTER UPDATE ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`)
+	SELECT NEW.`codigo`, 'M' UNION ALL SELECT OLD.`codigo`, 'B' FROM DUAL WHERE OLD.`codigo` <> NEW.`codigo`;
+
+CREATE OR REPLACE TRIGGER `productos_cambios_baja` AFTER DELETE ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`) VALUES (OLD.`codigo`, 'B');
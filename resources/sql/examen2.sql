@@ -11,9 +11,42 @@ CREATE TABLE `productos` (
 	`precio` float NOT NULL,
 	`disponible` int DEFAULT 0,
     `imagen` blob NULL,
+    `miniatura` blob NULL,
+	-- Versión para el control de concurrencia optimista (DAOProducto.modificarProducto)
+	`version` int unsigned NOT NULL DEFAULT 1,
 	PRIMARY KEY (`codigo`)
 ) ENGINE = InnoDB AUTO_INCREMENT = 10 DEFAULT CHARACTER SET = latin1 COLLATE = latin1_spanish_ci;
 
+-- Índices de las búsquedas de DAOProducto.buscarProductos: el prefijo del código usa la clave
+-- primaria, el orden por nombre y precio sus índices, y el filtro de disponibilidad con rango
+-- de precio el compuesto.
+CREATE INDEX IF NOT EXISTS `idx_productos_nombre` ON `productos` (`nombre`);
+CREATE INDEX IF NOT EXISTS `idx_productos_precio` ON `productos` (`precio`);
+CREATE INDEX IF NOT EXISTS `idx_productos_disponible_precio` ON `productos` (`disponible`, `precio`);
+
+-- Registro de cambios para que los clientes abiertos se sincronicen (DAOProducto.getCambios).
+-- Cada alta, modificación o baja deja una fila con un id creciente; los clientes piden las
+-- filas posteriores al último id que han visto. Las filas antiguas se pueden purgar, por ejemplo:
+-- DELETE FROM productos_cambios WHERE momento < NOW() - INTERVAL 7 DAY;
+CREATE TABLE IF NOT EXISTS `productos_cambios` (
+	`id` bigint NOT NULL AUTO_INCREMENT,
+	`codigo` varchar(5) NOT NULL,
+	`operacion` char(1) NOT NULL,
+	`momento` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+	PRIMARY KEY (`id`),
+	KEY `idx_productos_cambios_momento` (`momento`)
+) ENGINE = InnoDB DEFAULT CHARACTER SET = latin1 COLLATE = latin1_spanish_ci;
+
+CREATE OR REPLACE TRIGGER `productos_cambios_alta` AFTER INSERT ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`) VALUES (NEW.`codigo`, 'A');
+
+CREATE OR REPLACE TRIGGER `productos_cambios_modificacion` AFTER UPDATE ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`)
+	SELECT NEW.`codigo`, 'M' UNION ALL SELECT OLD.`codigo`, 'B' FROM DUAL WHERE OLD.`codigo` <> NEW.`codigo`;
+
+CREATE OR REPLACE TRIGGER `productos_cambios_baja` AFTER DELETE ON `productos` FOR EACH ROW
+	INSERT INTO `productos_cambios` (`codigo`, `operacion`) VALUES (OLD.`codigo`, 'B');
+
 INSERT INTO `productos` ( `codigo`,`nombre`, `precio`, `disponible`)
 VALUES
 	('LIM33','LIMONES',1.89,1),
@@ -0,0 +1,431 @@
+package analitica;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import dao.DAOProducto;
+import excepciones.ProductosException;
+import metricas.Medicion;
+import metricas.Metricas;
+import model.Producto;
+
+/**
+ * Copia del catálogo organizada por columnas para calcular agregados y filtros sin recorrer
+ * objetos {@link Producto}.
+ *
+ * <p>
+ * Cada fila tiene una posición densa. Los precios se guardan en un <code>double[]</code>, la
+ * disponibilidad en un {@link BitSet} y los nombres codificados con un diccionario: un
+ * <code>int[]</code> con la posición de cada nombre distinto, de modo que un filtro por nombre
+ * se evalúa una vez por nombre distinto. Los códigos se buscan por búsqueda binaria sobre un
+ * orden de las filas por código.
+ * </p>
+ *
+ * <p>
+ * Las operaciones reciben una selección de filas como {@link BitSet}, o null para todas, y
+ * recorren los arrays en bucles simples que el JIT puede desenrollar y vectorizar. Las
+ * selecciones se combinan con {@link BitSet#and} y {@link BitSet#or}. El almacén no se
+ * modifica tras cargarlo, por lo que se puede consultar desde varios hilos.
+ * </p>
+ */
+public class AlmacenColumnar {
+
+	private final int tamano;
+	private final String[] codigos;
+	private final int[] porCodigo;
+	private final double[] precios;
+	private final BitSet disponibles;
+	private final int[] nombres;
+	private final String[] diccionario;
+
+	private AlmacenColumnar(Constructor c) {
+		this.tamano = c.tamano;
+		this.codigos = Arrays.copyOf(c.codigos, tamano);
+		this.precios = Arrays.copyOf(c.precios, tamano);
+		this.disponibles = c.disponibles;
+		this.nombres = Arrays.copyOf(c.nombres, tamano);
+		this.diccionario = new String[c.diccionario.size()];
+		for (Map.Entry<String, Integer> entrada : c.diccionario.entrySet()) {
+			diccionario[entrada.getValue()] = entrada.getKey();
+		}
+		this.porCodigo = ordenarPorCodigo(codigos);
+	}
+
+	/**
+	 * Carga el almacén con todos los productos de la base de datos, sin imágenes, recorriendo
+	 * las filas sin crear un {@link Producto} por fila.
+	 *
+	 * @return el almacén
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	public static AlmacenColumnar cargar() throws ProductosException {
+		Constructor c = new Constructor();
+		Medicion m = Metricas.medir("analitica.cargar");
+		try {
+			DAOProducto.recorrerFilas(false, rs -> c.anadir(rs.getString("codigo"), rs.getString("nombre"),
+					rs.getDouble("precio"), rs.getInt("disponible") != 0));
+		} catch (IOException e) {
+			// EL PROCESADOR NO ESCRIBE EN NINGÚN SITIO
+			throw new ProductosException(e);
+		} finally {
+			m.close();
+		}
+		return new AlmacenColumnar(c);
+	}
+
+	/**
+	 * Crea el almacén a partir de unos productos ya cargados.
+	 *
+	 * @param productos los productos, con códigos distintos
+	 * @return el almacén
+	 */
+	public static AlmacenColumnar de(Collection<Producto> productos) {
+		Constructor c = new Constructor();
+		for (Producto producto : productos) {
+			c.anadir(producto.getCodigo(), producto.getNombre(), producto.getPrecio(), producto.isDisponible());
+		}
+		return new AlmacenColumnar(c);
+	}
+
+	/**
+	 * Obtiene el número de filas.
+	 *
+	 * @return el número de productos
+	 */
+	public int getTamano() {
+		return tamano;
+	}
+
+	/**
+	 * Busca la fila de un código.
+	 *
+	 * @param codigo el código del producto
+	 * @return la fila, o -1 si no está
+	 */
+	public int buscar(String codigo) {
+		int inferior = 0;
+		int superior = tamano - 1;
+		while (inferior <= superior) {
+			int medio = (inferior + superior) >>> 1;
+			int fila = porCodigo != null ? porCodigo[medio] : medio;
+			int comparacion = codigos[fila].compareTo(codigo);
+			if (comparacion < 0) {
+				inferior = medio + 1;
+			} else if (comparacion > 0) {
+				superior = medio - 1;
+			} else {
+				return fila;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Obtiene el código de una fila.
+	 *
+	 * @param fila la fila
+	 * @return el código
+	 */
+	public String getCodigo(int fila) {
+		return codigos[fila];
+	}
+
+	/**
+	 * Obtiene el nombre de una fila.
+	 *
+	 * @param fila la fila
+	 * @return el nombre
+	 */
+	public String getNombre(int fila) {
+		return diccionario[nombres[fila]];
+	}
+
+	/**
+	 * Obtiene el precio de una fila.
+	 *
+	 * @param fila la fila
+	 * @return el precio
+	 */
+	public double getPrecio(int fila) {
+		return precios[fila];
+	}
+
+	/**
+	 * Indica si el producto de una fila está disponible.
+	 *
+	 * @param fila la fila
+	 * @return true si está disponible
+	 */
+	public boolean isDisponible(int fila) {
+		return disponibles.get(fila);
+	}
+
+	/**
+	 * Obtiene el número de nombres distintos.
+	 *
+	 * @return el tamaño del diccionario de nombres
+	 */
+	public int getNombresDistintos() {
+		return diccionario.length;
+	}
+
+	/**
+	 * Obtiene las filas de los productos disponibles.
+	 *
+	 * @return una copia de la selección, que se puede modificar
+	 */
+	public BitSet getDisponibles() {
+		return (BitSet) disponibles.clone();
+	}
+
+	/**
+	 * Obtiene las filas con el precio dentro de un intervalo cerrado. Los precios y los límites
+	 * deben ser finitos.
+	 *
+	 * @param minimo el precio mínimo
+	 * @param maximo el precio máximo
+	 * @return la selección
+	 */
+	public BitSet filtrarPrecio(double minimo, double maximo) {
+		// SE COMPONE CADA PALABRA DE 64 FILAS SIN SALTOS CONDICIONALES: LA FILA QUEDA FUERA SI
+		// ALGUNA DE LAS DOS RESTAS ES NEGATIVA, LO QUE INDICA SU BIT DE SIGNO
+		long[] palabras = new long[(tamano + 63) >>> 6];
+		for (int p = 0; p < palabras.length; p++) {
+			int base = p << 6;
+			int fin = Math.min(base + 64, tamano);
+			long palabra = 0;
+			for (int i = base; i < fin; i++) {
+				double precio = precios[i];
+				long fuera = (Double.doubleToRawLongBits(precio - minimo) | Double.doubleToRawLongBits(maximo - precio)) >>> 63;
+				palabra |= (fuera ^ 1L) << i;
+			}
+			palabras[p] = palabra;
+		}
+		return BitSet.valueOf(palabras);
+	}
+
+	/**
+	 * Obtiene las filas cuyo nombre cumple una condición. La condición se evalúa una sola vez
+	 * por cada nombre distinto.
+	 *
+	 * @param condicion la condición sobre el nombre
+	 * @return la selección
+	 */
+	public BitSet filtrarNombre(Predicate<String> condicion) {
+		boolean[] cumple = new boolean[diccionario.length];
+		boolean alguno = false;
+		for (int n = 0; n < diccionario.length; n++) {
+			cumple[n] = condicion.test(diccionario[n]);
+			alguno |= cumple[n];
+		}
+		BitSet seleccion = new BitSet(tamano);
+		if (!alguno) {
+			return seleccion;
+		}
+		for (int i = 0; i < tamano; i++) {
+			if (cumple[nombres[i]]) {
+				seleccion.set(i);
+			}
+		}
+		return seleccion;
+	}
+
+	/**
+	 * Cuenta las filas de una selección.
+	 *
+	 * @param seleccion las filas, o null para todas
+	 * @return el número de filas
+	 */
+	public int contar(BitSet seleccion) {
+		return seleccion == null ? tamano : seleccion.cardinality();
+	}
+
+	/**
+	 * Suma los precios de una selección.
+	 *
+	 * @param seleccion las filas, o null para todas
+	 * @return la suma de los precios
+	 */
+	public double sumarPrecios(BitSet seleccion) {
+		if (seleccion == null) {
+			// CUATRO ACUMULADORES INDEPENDIENTES PARA NO ENCADENAR LAS SUMAS
+			double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (int fin = tamano & ~3; i < fin; i += 4) {
+				s0 += precios[i];
+				s1 += precios[i + 1];
+				s2 += precios[i + 2];
+				s3 += precios[i + 3];
+			}
+			for (; i < tamano; i++) {
+				s0 += precios[i];
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+		double suma = 0;
+		long[] palabras = seleccion.toLongArray();
+		for (int p = 0; p < palabras.length; p++) {
+			long palabra = palabras[p];
+			int base = p << 6;
+			while (palabra != 0) {
+				suma += precios[base + Long.numberOfTrailingZeros(palabra)];
+				palabra &= palabra - 1;
+			}
+		}
+		return suma;
+	}
+
+	/**
+	 * Calcula el precio medio de una selección.
+	 *
+	 * @param seleccion las filas, o null para todas
+	 * @return el precio medio, o NaN si la selección está vacía
+	 */
+	public double mediaPrecios(BitSet seleccion) {
+		int total = contar(seleccion);
+		return total > 0 ? sumarPrecios(seleccion) / total : Double.NaN;
+	}
+
+	/**
+	 * Calcula el precio mínimo y el máximo de una selección.
+	 *
+	 * @param seleccion las filas, o null para todas
+	 * @return el mínimo y el máximo, o dos NaN si la selección está vacía
+	 */
+	public double[] rangoPrecios(BitSet seleccion) {
+		double minimo = Double.POSITIVE_INFINITY;
+		double maximo = Double.NEGATIVE_INFINITY;
+		if (seleccion == null) {
+			for (int i = 0; i < tamano; i++) {
+				minimo = Math.min(minimo, precios[i]);
+				maximo = Math.max(maximo, precios[i]);
+			}
+		} else {
+			for (int i = seleccion.nextSetBit(0); i >= 0 && i < tamano; i = seleccion.nextSetBit(i + 1)) {
+				minimo = Math.min(minimo, precios[i]);
+				maximo = Math.max(maximo, precios[i]);
+			}
+		}
+		return minimo <= maximo ? new double[] { minimo, maximo } : new double[] { Double.NaN, Double.NaN };
+	}
+
+	/**
+	 * Reparte los precios de una selección en intervalos de la misma anchura. Los precios fuera
+	 * de <code>[minimo, maximo]</code> no se cuentan; el máximo cuenta en el último intervalo.
+	 *
+	 * @param seleccion las filas, o null para todas
+	 * @param minimo el inicio del primer intervalo
+	 * @param maximo el final del último intervalo
+	 * @param intervalos el número de intervalos
+	 * @return el número de filas de cada intervalo
+	 */
+	public int[] histogramaPrecios(BitSet seleccion, double minimo, double maximo, int intervalos) {
+		if (intervalos <= 0 || !(maximo > minimo)) {
+			throw new IllegalArgumentException("Intervalos no válidos: " + intervalos + " entre " + minimo + " y " + maximo);
+		}
+		int[] cuentas = new int[intervalos];
+		double escala = intervalos / (maximo - minimo);
+		if (seleccion == null) {
+			for (int i = 0; i < tamano; i++) {
+				contarEnIntervalo(cuentas, precios[i], minimo, maximo, escala);
+			}
+		} else {
+			for (int i = seleccion.nextSetBit(0); i >= 0 && i < tamano; i = seleccion.nextSetBit(i + 1)) {
+				contarEnIntervalo(cuentas, precios[i], minimo, maximo, escala);
+			}
+		}
+		return cuentas;
+	}
+
+	private static void contarEnIntervalo(int[] cuentas, double precio, double minimo, double maximo, double escala) {
+		if (precio >= minimo && precio <= maximo) {
+			cuentas[Math.min((int) ((precio - minimo) * escala), cuentas.length - 1)]++;
+		}
+	}
+
+	/**
+	 * Estima la memoria que ocupa el almacén, incluidos los textos de códigos y nombres, con
+	 * cabeceras de objeto de 16 bytes y referencias comprimidas de 4 bytes.
+	 *
+	 * @return los bytes estimados
+	 */
+	public long getBytesEstimados() {
+		long bytes = 8L * precios.length + 4L * nombres.length + 4L * codigos.length
+				+ (porCodigo != null ? 4L * porCodigo.length : 0) + 4L * diccionario.length
+				+ 8L * ((tamano + 63) >>> 6) + 5 * 16;
+		for (String codigo : codigos) {
+			bytes += bytesTexto(codigo);
+		}
+		for (String nombre : diccionario) {
+			bytes += bytesTexto(nombre);
+		}
+		return bytes;
+	}
+
+	private static long bytesTexto(String str) {
+		// OBJETO STRING Y SU ARRAY DE BYTES, CON CADENAS COMPACTAS
+		return str == null ? 0 : 24 + ((16 + str.length() + 7) & ~7);
+	}
+
+	/**
+	 * Calcula el orden de las filas por código, o null si ya están ordenadas.
+	 */
+	private static int[] ordenarPorCodigo(String[] codigos) {
+		boolean ordenado = true;
+		for (int i = 1; i < codigos.length && ordenado; i++) {
+			ordenado = codigos[i - 1].compareTo(codigos[i]) < 0;
+		}
+		if (ordenado) {
+			return null;
+		}
+		Integer[] orden = new Integer[codigos.length];
+		for (int i = 0; i < orden.length; i++) {
+			orden[i] = i;
+		}
+		Arrays.sort(orden, (a, b) -> codigos[a].compareTo(codigos[b]));
+		int[] porCodigo = new int[orden.length];
+		for (int i = 0; i < orden.length; i++) {
+			porCodigo[i] = orden[i];
+		}
+		return porCodigo;
+	}
+
+	@Override
+	public String toString() {
+		return "AlmacenColumnar [tamano=" + tamano + ", nombresDistintos=" + diccionario.length + "]";
+	}
+
+	/**
+	 * Acumula las columnas mientras se cargan las filas.
+	 */
+	private static final class Constructor {
+		private int tamano;
+		private String[] codigos = new String[1024];
+		private double[] precios = new double[1024];
+		private int[] nombres = new int[1024];
+		private final BitSet disponibles = new BitSet();
+		private final Map<String, Integer> diccionario = new HashMap<>();
+
+		void anadir(String codigo, String nombre, double precio, boolean disponible) {
+			if (codigo == null) {
+				throw new IllegalArgumentException("Producto sin código");
+			}
+			if (tamano == codigos.length) {
+				int capacidad = tamano * 2;
+				codigos = Arrays.copyOf(codigos, capacidad);
+				precios = Arrays.copyOf(precios, capacidad);
+				nombres = Arrays.copyOf(nombres, capacidad);
+			}
+			codigos[tamano] = codigo;
+			precios[tamano] = precio;
+			nombres[tamano] = diccionario.computeIfAbsent(nombre != null ? nombre : "", n -> diccionario.size());
+			disponibles.set(tamano, disponible);
+			tamano++;
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package application;
-	
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import dao.DAOBase;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -7,19 +12,53 @@ import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
+import metricas.Metricas;
+import utilities.Configuracion;
+import utilities.Hilos;
 
 
 /**
  * Clase principal que extiende de Application.
+ *
+ * <p>
+ * Para mostrar la ventana cuanto antes, el pool de conexiones se crea en segundo plano mientras
+ * se carga la vista, el icono se carga en segundo plano y la tabla se rellena de forma
+ * asíncrona. Los informes y la ayuda no se cargan hasta que se usan por primera vez.
+ * </p>
+ *
+ * <p>
+ * Con el argumento <code>--medir-arranque</code> se muestra el tiempo hasta el primer
+ * fotograma; con <code>--salir-al-mostrar</code> la aplicación termina tras dibujarlo, para
+ * ejecuciones de entrenamiento de un archivo AppCDS.
+ * </p>
  */
 public class Main extends Application {
 	
+	/**
+	 * Indica si se crea el pool de conexiones al arrancar, configurable con <code>arranque.precalentarPool</code>.
+	 */
+	private static final boolean PRECALENTAR_POOL = Configuracion.getBoolean("arranque.precalentarPool", true);
+	
+	private long inicioStart;
+	
+	/**
+	 * Método de inicialización, anterior a la creación de la ventana.
+	 * Empieza a crear el pool de conexiones en segundo plano.
+	 */
+	@Override
+	public void init() {
+		if (PRECALENTAR_POOL) {
+			Hilos.factoriaDaemon("arranque-pool").newThread(DAOBase::iniciar).start();
+		}
+	}
+	
 	/**
 	 * Método de inicio de la aplicación.
 	 * @param primaryStage Escenario principal de la aplicación.
 	 */
 	@Override
 	public void start(Stage primaryStage) {
+		inicioStart = System.nanoTime();
 		try {
 			/**
 			 * Carga la vista de la aplicación.
@@ -30,8 +69,10 @@ public class Main extends Application {
 			primaryStage.setTitle("INFO");
 			primaryStage.setScene(scene);
 			
-			primaryStage.getIcons().add(new Image(Main.class.getResourceAsStream("/images/carrito.png")));
+			// EL ICONO SE DECODIFICA EN SEGUNDO PLANO Y APARECE CUANDO ESTÁ LISTO
+			primaryStage.getIcons().add(new Image(Main.class.getResource("/images/carrito.png").toExternalForm(), true));
 			
+			medirPrimerFotograma(scene);
 			primaryStage.show();
 		} catch(Exception e) {
 			e.printStackTrace();
@@ -42,6 +83,34 @@ public class Main extends Application {
 		}
 	}
 	
+	/**
+	 * Registra en las métricas, como <code>ui.primerFotograma</code>, el tiempo desde el arranque
+	 * de la JVM hasta el primer pulso de la ventana tras colocar sus nodos, justo antes de dibujarla.
+	 * @param scene la escena de la ventana principal
+	 */
+	private void medirPrimerFotograma(Scene scene) {
+		List<String> argumentos = getParameters().getRaw();
+		boolean mostrar = argumentos.contains("--medir-arranque");
+		boolean salir = argumentos.contains("--salir-al-mostrar");
+		Runnable[] oyente = new Runnable[1];
+		oyente[0] = () -> {
+			scene.removePostLayoutPulseListener(oyente[0]);
+			long desdeStart = System.nanoTime() - inicioStart;
+			Instant arranqueJvm = ProcessHandle.current().info().startInstant().orElse(null);
+			long desdeJvm = arranqueJvm != null ? Duration.between(arranqueJvm, Instant.now()).toNanos() : desdeStart;
+			Metricas.registrar("ui.primerFotograma", desdeJvm);
+			if (mostrar) {
+				System.out.printf("Primer fotograma: %d ms desde el arranque de la JVM, %d ms desde start()%n",
+						desdeJvm / 1_000_000, desdeStart / 1_000_000);
+			}
+			if (salir) {
+				// SE DEJA DIBUJAR EL FOTOGRAMA ANTES DE SALIR
+				Platform.runLater(Platform::exit);
+			}
+		};
+		scene.addPostLayoutPulseListener(oyente[0]);
+	}
+	
 	/**
 	 * Método principal de la aplicación.
 	 * @param args Argumentos de la línea de comandos.
@@ -0,0 +1,106 @@
+package benchmark;
+
+/**
+ * Arnés mínimo de microbenchmarks.
+ *
+ * <p>
+ * Cada caso se ejecuta durante unas iteraciones de calentamiento, para que el JIT lo compile,
+ * y después durante las iteraciones medidas. En cada iteración el caso se repite en bloques
+ * hasta agotar el tiempo de la iteración. El resultado de cada llamada se publica en un campo
+ * volátil para que el JIT no pueda eliminar el trabajo.
+ * </p>
+ */
+public class Benchmark {
+
+	private static final int BLOQUE = 256;
+
+	/**
+	 * Sumidero de resultados para evitar que el JIT elimine el código medido.
+	 */
+	private static volatile Object sumidero;
+
+	private final int calentamiento;
+	private final int iteraciones;
+	private final long nanosPorIteracion;
+
+	/**
+	 * Interfaz funcional para el código a medir.
+	 */
+	@FunctionalInterface
+	public static interface Caso {
+		/**
+		 * Ejecuta una operación.
+		 *
+		 * @return el resultado de la operación, que se consume para que no se elimine
+		 * @throws Exception si la operación falla; el caso se marca como omitido
+		 */
+		Object ejecutar() throws Exception;
+	}
+
+	/**
+	 * Crea el arnés.
+	 *
+	 * @param calentamiento el número de iteraciones de calentamiento
+	 * @param iteraciones el número de iteraciones medidas
+	 * @param msPorIteracion la duración de cada iteración en milisegundos
+	 */
+	public Benchmark(int calentamiento, int iteraciones, long msPorIteracion) {
+		this.calentamiento = calentamiento;
+		this.iteraciones = Math.max(1, iteraciones);
+		this.nanosPorIteracion = msPorIteracion * 1_000_000;
+	}
+
+	/**
+	 * Mide un caso.
+	 *
+	 * @param nombre el nombre del caso
+	 * @param caso el código a medir
+	 * @return el resultado de la medición
+	 */
+	public ResultadoBenchmark medir(String nombre, Caso caso) {
+		try {
+			for (int i = 0; i < calentamiento; i++) {
+				iteracion(caso);
+			}
+			double[] nsPorOp = new double[iteraciones];
+			long operaciones = 0;
+			for (int i = 0; i < iteraciones; i++) {
+				long[] medida = iteracion(caso);
+				nsPorOp[i] = (double) medida[1] / medida[0];
+				operaciones += medida[0];
+			}
+			double media = 0;
+			for (double v : nsPorOp) {
+				media += v;
+			}
+			media /= nsPorOp.length;
+			double varianza = 0;
+			for (double v : nsPorOp) {
+				varianza += (v - media) * (v - media);
+			}
+			double desviacion = nsPorOp.length > 1 ? Math.sqrt(varianza / (nsPorOp.length - 1)) : 0;
+			return new ResultadoBenchmark(nombre, media, desviacion, operaciones, null);
+		} catch (Exception e) {
+			return ResultadoBenchmark.omitido(nombre, e.toString());
+		}
+	}
+
+	/**
+	 * Ejecuta una iteración.
+	 *
+	 * @return las operaciones ejecutadas y los nanosegundos empleados
+	 */
+	private long[] iteracion(Caso caso) throws Exception {
+		long operaciones = 0;
+		long inicio = System.nanoTime();
+		long transcurrido;
+		do {
+			for (int i = 0; i < BLOQUE; i++) {
+				sumidero = caso.ejecutar();
+			}
+			operaciones += BLOQUE;
+			transcurrido = System.nanoTime() - inicio;
+		} while (transcurrido < nanosPorIteracion);
+		return new long[] { operaciones, transcurrido };
+	}
+}
@@ -0,0 +1,402 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import analitica.AlmacenColumnar;
+import busqueda.Consulta;
+import busqueda.IndiceProductos;
+import dao.DAOProducto;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.scene.Scene;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.cell.CheckBoxTableCell;
+import javafx.scene.control.cell.PropertyValueFactory;
+import model.Producto;
+import utilities.ErroresValidacion;
+import utilities.StringUtils;
+import utilities.Utilidades;
+import utilities.Validador;
+import utilities.ValidadorProducto;
+
+/**
+ * Benchmarks de los caminos críticos de mapeo, validación y formato.
+ *
+ * <p>
+ * Uso: <code>java benchmark.BenchmarksHotPaths [resultados.jsonl] [--comparar base.jsonl]</code>.
+ * Los resultados se escriben con un objeto JSON por línea. Con <code>--comparar</code> se
+ * muestra la variación de cada caso frente a una ejecución anterior y el proceso termina con
+ * código 1 si algún caso empeora más de lo indicado en <code>-Dbenchmark.tolerancia</code>
+ * (por defecto 0.10, un 10%).
+ * </p>
+ *
+ * <p>
+ * Los casos que necesitan el toolkit de JavaFX (validación sobre <code>TextField</code>,
+ * decodificación de imágenes y desplazamiento y refresco de una tabla de 20000 productos) se
+ * marcan como omitidos si no se puede arrancar; para
+ * ejecutarlos sin pantalla se puede usar Monocle con
+ * <code>-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw</code>.
+ * </p>
+ */
+public class BenchmarksHotPaths {
+
+	private static final Pattern PATRON_RESULTADO = Pattern.compile("\"benchmark\":\"([^\"]+)\",\"nsPorOperacion\":([0-9.]+)");
+
+	/**
+	 * Punto de entrada de los benchmarks.
+	 *
+	 * @param args el fichero de resultados y, opcionalmente, <code>--comparar</code> y el fichero base
+	 * @throws IOException si no se pueden leer o escribir los ficheros de resultados
+	 */
+	public static void main(String[] args) throws IOException {
+		Path salida = Paths.get("benchmark-resultados.jsonl");
+		Path base = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("--comparar".equals(args[i]) && i + 1 < args.length) {
+				base = Paths.get(args[++i]);
+			} else {
+				salida = Paths.get(args[i]);
+			}
+		}
+
+		Benchmark benchmark = new Benchmark(
+				Integer.getInteger("benchmark.calentamiento", 5),
+				Integer.getInteger("benchmark.iteraciones", 10),
+				Long.getLong("benchmark.msPorIteracion", 200));
+
+		List<ResultadoBenchmark> resultados = new ArrayList<>();
+		casosDao(benchmark, resultados);
+		casosUtilidades(benchmark, resultados);
+		casosStringUtils(benchmark, resultados);
+		casosBusqueda(benchmark, resultados);
+		casosAnalitica(benchmark, resultados);
+		casosJavaFx(benchmark, resultados);
+
+		try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(salida, StandardCharsets.UTF_8))) {
+			for (ResultadoBenchmark resultado : resultados) {
+				System.out.println(resultado);
+				pw.println(resultado.toJson());
+			}
+		}
+		System.out.println("Resultados escritos en " + salida.toAbsolutePath());
+
+		if (base != null && !comparar(base, resultados, Double.parseDouble(System.getProperty("benchmark.tolerancia", "0.10")))) {
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	private static void casosDao(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		byte[] imagen = new byte[16 * 1024];
+		ResultSet rs = ResultSetSimulado.crear(
+				new String[] { "codigo", "nombre", "precio", "disponible", "version", "imagen", "miniatura" },
+				new Object[][] {
+					{ "LIM33", "LIMONES", 1.89, 1, 1, imagen, null },
+					{ "NAR44", "NARANJAS", 1.69, 0, 3, null, null },
+					{ "PLT32", "PLATANOS", 1.75, 1, 2, imagen, null },
+				});
+		resultados.add(benchmark.medir("DAOProducto.mapProducto", () -> {
+			rs.next();
+			return DAOProducto.mapProducto(rs);
+		}));
+		resultados.add(benchmark.medir("DAOProducto.mapProductoListado", () -> {
+			rs.next();
+			return DAOProducto.mapProductoListado(rs);
+		}));
+	}
+
+	private static void casosUtilidades(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		String[] numeros = { "12.5", "3,75", "1000", "0.99" };
+		int[] i = new int[1];
+		resultados.add(benchmark.medir("Utilidades.parseDouble", () -> Utilidades.parseDouble(numeros[i[0]++ & 3])));
+		resultados.add(benchmark.medir("Utilidades.num2str", () -> Utilidades.num2str(1234.5678)));
+
+		Validador validador = ValidadorProducto.crear();
+		ErroresValidacion errores = validador.crearErrores();
+		CharSequence[] valores = { "LIM33", "LIMONES", "1,89" };
+		resultados.add(benchmark.medir("Validador.validar (producto)", () -> validador.validar(valores, errores)));
+		resultados.add(benchmark.medir("Validador.esDecimal", () -> Validador.esDecimal(numeros[i[0]++ & 3])));
+	}
+
+	private static void casosStringUtils(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		String blanco = "          ";
+		String texto = "   Naranjas de Valencia";
+		resultados.add(benchmark.medir("StringUtils.isBlank (blanco)", () -> StringUtils.isBlank(blanco)));
+		resultados.add(benchmark.medir("StringUtils.isBlank (texto)", () -> StringUtils.isBlank(texto)));
+		StringBuilder otro = new StringBuilder("NARANJAS DE VALENCIA");
+		resultados.add(benchmark.medir("StringUtils.equalsIgnoreCase", () -> StringUtils.equalsIgnoreCase("naranjas de valencia", otro)));
+	}
+
+	private static void casosBusqueda(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		Random aleatorio = new Random(42);
+		String[] frutas = { "Naranjas", "Limones", "Plátanos", "Manzanas", "Peras", "Uvas", "Fresas", "Melones" };
+		List<Producto> productos = new ArrayList<>(10_000);
+		for (int i = 0; i < 10_000; i++) {
+			productos.add(new Producto()
+					.setCodigo(String.format("P%04d", i))
+					.setNombre(frutas[aleatorio.nextInt(frutas.length)] + " de calibre " + aleatorio.nextInt(100))
+					.setPrecio(aleatorio.nextInt(1000) / 100.0)
+					.setDisponible(aleatorio.nextBoolean()));
+		}
+		IndiceProductos indice = new IndiceProductos(productos);
+		Consulta texto = Consulta.de("plat cal", false);
+		Consulta compuesta = Consulta.de("nar <5", true);
+		resultados.add(benchmark.medir("IndiceProductos.buscar (texto, 10000)", () -> indice.buscar(texto)));
+		resultados.add(benchmark.medir("IndiceProductos.buscar (precio y disponibles, 10000)", () -> indice.buscar(compuesta)));
+		Producto producto = productos.get(5000);
+		resultados.add(benchmark.medir("IndiceProductos.actualizar", () -> {
+			indice.actualizar(producto);
+			return indice;
+		}));
+	}
+
+	private static void casosAnalitica(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		int filas = 100_000;
+		long antes = memoriaUsada();
+		List<Producto> productos = generarProductos(filas);
+		long memoriaLista = memoriaUsada() - antes;
+		// EL ALMACÉN COMPARTE LOS TEXTOS CON LA LISTA, POR LO QUE SU MEMORIA SE ESTIMA
+		AlmacenColumnar almacen = AlmacenColumnar.de(productos);
+		long memoriaAlmacen = almacen.getBytesEstimados();
+
+		// EL COSTE DE CADA OPERACIÓN ES EL DE RECORRER LAS 100000 FILAS
+		String lista = " (List<Producto>, " + filas + ")";
+		String columnas = " (AlmacenColumnar, " + filas + ")";
+		resultados.add(benchmark.medir("Analitica.cargar" + columnas, () -> AlmacenColumnar.de(productos))
+				.conNota(String.format(Locale.ROOT, "%.1f bytes/fila frente a %.1f de la lista",
+						(double) memoriaAlmacen / filas, (double) memoriaLista / filas)));
+		resultados.add(benchmark.medir("Analitica.mediaPrecios" + lista, () -> {
+			double suma = 0;
+			for (Producto producto : productos) {
+				suma += producto.getPrecio();
+			}
+			return suma / productos.size();
+		}));
+		resultados.add(benchmark.medir("Analitica.mediaPrecios" + columnas, () -> almacen.mediaPrecios(null)));
+		resultados.add(benchmark.medir("Analitica.disponiblesEntrePrecios" + lista, () -> {
+			int total = 0;
+			for (Producto producto : productos) {
+				if (producto.isDisponible() && producto.getPrecio() >= 2 && producto.getPrecio() <= 5) {
+					total++;
+				}
+			}
+			return total;
+		}));
+		resultados.add(benchmark.medir("Analitica.disponiblesEntrePrecios" + columnas, () -> {
+			BitSet seleccion = almacen.filtrarPrecio(2, 5);
+			seleccion.and(almacen.getDisponibles());
+			return almacen.contar(seleccion);
+		}));
+		resultados.add(benchmark.medir("Analitica.histogramaPrecios" + lista, () -> {
+			int[] cuentas = new int[20];
+			for (Producto producto : productos) {
+				cuentas[Math.min((int) (producto.getPrecio() * 2), 19)]++;
+			}
+			return cuentas;
+		}));
+		resultados.add(benchmark.medir("Analitica.histogramaPrecios" + columnas, () -> almacen.histogramaPrecios(null, 0, 10, 20)));
+		resultados.add(benchmark.medir("Analitica.filtrarNombre" + columnas,
+				() -> almacen.filtrarNombre(nombre -> nombre.startsWith("Plátanos de calibre 1"))));
+	}
+
+	/**
+	 * Genera productos de prueba con nombres repetidos y precios aleatorios, siempre los mismos.
+	 */
+	private static List<Producto> generarProductos(int filas) {
+		String[] frutas = { "Naranjas", "Limones", "Plátanos", "Manzanas", "Peras", "Uvas", "Fresas", "Melones" };
+		Random aleatorio = new Random(42);
+		List<Producto> productos = new ArrayList<>(filas);
+		for (int i = 0; i < filas; i++) {
+			productos.add(new Producto()
+					.setCodigo(String.format("P%06d", i))
+					.setNombre(frutas[aleatorio.nextInt(frutas.length)] + " de calibre " + aleatorio.nextInt(100))
+					.setPrecio(aleatorio.nextInt(1000) / 100.0)
+					.setDisponible(aleatorio.nextBoolean()));
+		}
+		return productos;
+	}
+
+	/**
+	 * Memoria ocupada del montón tras pedir una recolección, para estimar lo que ocupa una estructura.
+	 */
+	private static long memoriaUsada() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void casosJavaFx(Benchmark benchmark, List<ResultadoBenchmark> resultados) {
+		String[] nombres = { "Utilidades.checkCampoDoubleStr", "Utilidades.byte2Image",
+				"TableView.desplazar (PropertyValueFactory, 20000)", "TableView.refresh (PropertyValueFactory, 20000)",
+				"TableView.desplazar (propiedades, 20000)", "TableView.refresh (propiedades, 20000)" };
+		String error = arrancarJavaFx();
+		if (error != null) {
+			for (String nombre : nombres) {
+				resultados.add(ResultadoBenchmark.omitido(nombre, "JavaFX no disponible: " + error));
+			}
+			return;
+		}
+		TextField tf = new TextField("1234,56");
+		tf.setId("tfPrecio");
+		resultados.add(benchmark.medir(nombres[0], () -> Utilidades.checkCampoDoubleStr(tf)));
+
+		byte[] png = leerRecurso("/images/naranjas.png");
+		if (png == null) {
+			resultados.add(ResultadoBenchmark.omitido(nombres[1], "No se encuentra /images/naranjas.png"));
+		} else {
+			resultados.add(benchmark.medir(nombres[1], () -> Utilidades.byte2Image(png)));
+		}
+
+		// LAS TABLAS SE CREAN Y SE MIDEN EN EL HILO DE JAVAFX
+		List<Producto> productos = generarProductos(20_000);
+		for (boolean propiedades : new boolean[] { false, true }) {
+			String variante = propiedades ? " (propiedades, 20000)" : " (PropertyValueFactory, 20000)";
+			resultados.add(enHiloFx("TableView.desplazar" + variante, () -> {
+				TableView<Producto> tabla = crearTabla(productos, propiedades);
+				int[] fila = new int[1];
+				return benchmark.medir("TableView.desplazar" + variante, () -> {
+					fila[0] = (fila[0] + 97) % productos.size();
+					tabla.scrollTo(fila[0]);
+					tabla.layout();
+					return tabla;
+				});
+			}));
+			resultados.add(enHiloFx("TableView.refresh" + variante, () -> {
+				TableView<Producto> tabla = crearTabla(productos, propiedades);
+				return benchmark.medir("TableView.refresh" + variante, () -> {
+					tabla.refresh();
+					tabla.layout();
+					return tabla;
+				});
+			}));
+		}
+	}
+
+	/**
+	 * Crea una tabla de productos como la de la ventana principal, colocada en una escena.
+	 *
+	 * @param propiedades true para usar las propiedades del producto, como la ventana; false
+	 *                    para usar {@link PropertyValueFactory}, como antes
+	 */
+	private static TableView<Producto> crearTabla(List<Producto> productos, boolean propiedades) {
+		TableView<Producto> tabla = new TableView<>(FXCollections.observableArrayList(productos));
+		TableColumn<Producto, String> codigo = new TableColumn<>("CÓDIGO");
+		TableColumn<Producto, String> nombre = new TableColumn<>("NOMBRE");
+		TableColumn<Producto, Double> precio = new TableColumn<>("PRECIO");
+		TableColumn<Producto, Boolean> disponible = new TableColumn<>("DISPONIBLE");
+		disponible.setCellFactory(tc -> new CheckBoxTableCell<Producto, Boolean>());
+		if (propiedades) {
+			codigo.setCellValueFactory(f -> f.getValue().codigoProperty());
+			nombre.setCellValueFactory(f -> f.getValue().nombreProperty());
+			precio.setCellValueFactory(f -> f.getValue().precioProperty());
+			disponible.setCellValueFactory(f -> f.getValue().disponibleProperty());
+		} else {
+			codigo.setCellValueFactory(new PropertyValueFactory<>("codigo"));
+			nombre.setCellValueFactory(new PropertyValueFactory<>("nombre"));
+			precio.setCellValueFactory(new PropertyValueFactory<>("precio"));
+			disponible.setCellValueFactory(f -> new SimpleBooleanProperty(f.getValue().isDisponible()));
+		}
+		tabla.getColumns().setAll(List.of(codigo, nombre, precio, disponible));
+		new Scene(tabla, 800, 600);
+		tabla.applyCss();
+		tabla.layout();
+		return tabla;
+	}
+
+	/**
+	 * Ejecuta una medición en el hilo de JavaFX y espera su resultado.
+	 */
+	private static ResultadoBenchmark enHiloFx(String nombre, Callable<ResultadoBenchmark> medicion) {
+		FutureTask<ResultadoBenchmark> tarea = new FutureTask<>(medicion);
+		Platform.runLater(tarea);
+		try {
+			return tarea.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return ResultadoBenchmark.omitido(nombre, e.toString());
+		} catch (ExecutionException e) {
+			return ResultadoBenchmark.omitido(nombre, e.getCause().toString());
+		}
+	}
+
+	/**
+	 * Arranca el toolkit de JavaFX.
+	 *
+	 * @return null si ha arrancado, o el motivo del fallo
+	 */
+	private static String arrancarJavaFx() {
+		try {
+			CountDownLatch arrancado = new CountDownLatch(1);
+			Platform.startup(arrancado::countDown);
+			return arrancado.await(10, TimeUnit.SECONDS) ? null : "tiempo de arranque agotado";
+		} catch (IllegalStateException e) {
+			return null;
+		} catch (Throwable e) {
+			return e.toString();
+		}
+	}
+
+	private static byte[] leerRecurso(String ruta) {
+		try (InputStream is = BenchmarksHotPaths.class.getResourceAsStream(ruta)) {
+			return is != null ? is.readAllBytes() : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compara los resultados con los de una ejecución anterior.
+	 *
+	 * @return false si algún caso ha empeorado más de la tolerancia
+	 */
+	private static boolean comparar(Path base, List<ResultadoBenchmark> resultados, double tolerancia) throws IOException {
+		Map<String, Double> anteriores = new HashMap<>();
+		for (String linea : Files.readAllLines(base, StandardCharsets.UTF_8)) {
+			Matcher m = PATRON_RESULTADO.matcher(linea);
+			if (m.find()) {
+				anteriores.put(m.group(1), Double.parseDouble(m.group(2)));
+			}
+		}
+		boolean correcto = true;
+		System.out.println();
+		System.out.println("Comparación con " + base);
+		for (ResultadoBenchmark resultado : resultados) {
+			Double anterior = anteriores.get(resultado.getNombre());
+			if (anterior == null || !resultado.isMedido()) {
+				continue;
+			}
+			double variacion = resultado.getNsPorOperacion() / anterior - 1;
+			boolean regresion = variacion > tolerancia;
+			correcto &= !regresion;
+			System.out.println(String.format(Locale.ROOT, "%-45s %+8.1f%%%s", resultado.getNombre(), variacion * 100,
+					regresion ? "  REGRESIÓN" : ""));
+		}
+		return correcto;
+	}
+}
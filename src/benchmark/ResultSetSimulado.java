@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ResultSet en memoria para medir el mapeo de filas sin base de datos.
+ *
+ * <p>
+ * Recorre las filas indicadas de forma cíclica: {@link ResultSet#next()} nunca devuelve false.
+ * Solo implementa los métodos que usan los DAO (<code>next</code>, <code>getString</code>,
+ * <code>getDouble</code>, <code>getBoolean</code>, <code>getInt</code>, <code>getLong</code>, <code>getBytes</code>,
+ * <code>getObject</code>, <code>wasNull</code> y <code>close</code>, por nombre o índice de columna).
+ * </p>
+ */
+public class ResultSetSimulado {
+
+	private final Map<String, Integer> columnas = new HashMap<>();
+	private final Object[][] filas;
+	private int actual;
+	private boolean ultimoNulo;
+
+	private ResultSetSimulado(String[] nombres, Object[][] filas) {
+		for (int i = 0; i < nombres.length; i++) {
+			columnas.put(nombres[i].toLowerCase(), i);
+		}
+		this.filas = filas;
+	}
+
+	/**
+	 * Crea un ResultSet posicionado en la primera fila.
+	 *
+	 * @param nombres los nombres de las columnas
+	 * @param filas los valores de cada fila, en el orden de las columnas
+	 * @return el ResultSet simulado
+	 */
+	public static ResultSet crear(String[] nombres, Object[][] filas) {
+		ResultSetSimulado datos = new ResultSetSimulado(nombres, filas);
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> datos.invocar(method.getName(), args));
+	}
+
+	private Object invocar(String metodo, Object[] args) throws SQLException {
+		switch (metodo) {
+		case "next":
+			actual = (actual + 1) % filas.length;
+			return true;
+		case "wasNull":
+			return ultimoNulo;
+		case "close":
+			return null;
+		case "isClosed":
+			return false;
+		case "getString":
+			return valor(args[0]);
+		case "getObject":
+			return valor(args[0]);
+		case "getBytes":
+			return valor(args[0]);
+		case "getDouble": {
+			Object v = valor(args[0]);
+			return v == null ? 0.0 : ((Number) v).doubleValue();
+		}
+		case "getInt": {
+			Object v = valor(args[0]);
+			return v == null ? 0 : ((Number) v).intValue();
+		}
+		case "getLong": {
+			Object v = valor(args[0]);
+			return v == null ? 0L : ((Number) v).longValue();
+		}
+		case "getBoolean": {
+			Object v = valor(args[0]);
+			return v instanceof Boolean ? (Boolean) v : v != null && ((Number) v).intValue() != 0;
+		}
+		case "hashCode":
+			return System.identityHashCode(this);
+		case "equals":
+			return false;
+		case "toString":
+			return "ResultSetSimulado";
+		default:
+			throw new SQLException("Método no soportado por ResultSetSimulado: " + metodo);
+		}
+	}
+
+	private Object valor(Object columna) throws SQLException {
+		Integer indice = columna instanceof Integer ? (Integer) columna - 1 : columnas.get(((String) columna).toLowerCase());
+		if (indice == null) {
+			throw new SQLException("Columna desconocida: " + columna);
+		}
+		Object v = filas[actual][indice];
+		ultimoNulo = v == null;
+		return v;
+	}
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.Locale;
+
+/**
+ * Resultado de la medición de un caso de {@link Benchmark}.
+ */
+public class ResultadoBenchmark {
+
+	private final String nombre;
+	private final double nsPorOperacion;
+	private final double desviacion;
+	private final long operaciones;
+	private final String nota;
+
+	ResultadoBenchmark(String nombre, double nsPorOperacion, double desviacion, long operaciones, String nota) {
+		this.nombre = nombre;
+		this.nsPorOperacion = nsPorOperacion;
+		this.desviacion = desviacion;
+		this.operaciones = operaciones;
+		this.nota = nota;
+	}
+
+	/**
+	 * Crea el resultado de un caso que no se ha podido medir.
+	 *
+	 * @param nombre el nombre del caso
+	 * @param motivo el motivo por el que se ha omitido
+	 * @return el resultado, sin medidas
+	 */
+	public static ResultadoBenchmark omitido(String nombre, String motivo) {
+		return new ResultadoBenchmark(nombre, Double.NaN, Double.NaN, 0, motivo);
+	}
+
+	/**
+	 * Crea una copia del resultado con una nota, por ejemplo una medida que no es de tiempo.
+	 *
+	 * @param nota la nota
+	 * @return el resultado con la nota
+	 */
+	ResultadoBenchmark conNota(String nota) {
+		return new ResultadoBenchmark(nombre, nsPorOperacion, desviacion, operaciones, nota);
+	}
+
+	/**
+	 * Obtiene el nombre del caso.
+	 *
+	 * @return el nombre
+	 */
+	public String getNombre() {
+		return nombre;
+	}
+
+	/**
+	 * Obtiene el tiempo medio por operación.
+	 *
+	 * @return los nanosegundos por operación, o NaN si el caso se ha omitido
+	 */
+	public double getNsPorOperacion() {
+		return nsPorOperacion;
+	}
+
+	/**
+	 * Obtiene la desviación típica del tiempo por operación entre iteraciones.
+	 *
+	 * @return la desviación en nanosegundos
+	 */
+	public double getDesviacion() {
+		return desviacion;
+	}
+
+	/**
+	 * Obtiene el número de operaciones medidas.
+	 *
+	 * @return las operaciones
+	 */
+	public long getOperaciones() {
+		return operaciones;
+	}
+
+	/**
+	 * Obtiene la nota del resultado (por ejemplo, el motivo de omisión).
+	 *
+	 * @return la nota o null
+	 */
+	public String getNota() {
+		return nota;
+	}
+
+	/**
+	 * Indica si el caso se ha medido.
+	 *
+	 * @return false si el caso se ha omitido
+	 */
+	public boolean isMedido() {
+		return !Double.isNaN(nsPorOperacion);
+	}
+
+	/**
+	 * Convierte el resultado en un objeto JSON de una línea.
+	 *
+	 * @return el JSON del resultado
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder("{\"benchmark\":\"").append(escapar(nombre)).append('"');
+		if (isMedido()) {
+			sb.append(String.format(Locale.ROOT, ",\"nsPorOperacion\":%.3f,\"desviacion\":%.3f,\"operacionesPorSegundo\":%.1f,\"operaciones\":%d",
+					nsPorOperacion, desviacion, 1e9 / nsPorOperacion, operaciones));
+		}
+		if (nota != null) {
+			sb.append(",\"nota\":\"").append(escapar(nota)).append('"');
+		}
+		return sb.append('}').toString();
+	}
+
+	@Override
+	public String toString() {
+		if (!isMedido()) {
+			return String.format("%-45s omitido: %s", nombre, nota);
+		}
+		return String.format(Locale.ROOT, "%-45s %12.2f ns/op ± %8.2f%s", nombre, nsPorOperacion, desviacion,
+				nota != null ? "  (" + nota + ")" : "");
+	}
+
+	private static String escapar(String str) {
+		return str.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
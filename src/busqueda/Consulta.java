@@ -0,0 +1,125 @@
+package busqueda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import utilities.Validador;
+
+/**
+ * Consulta sobre un {@link IndiceProductos}.
+ *
+ * <p>
+ * Se construye a partir del texto del buscador: cada palabra busca productos cuyo código
+ * empiece por ella o cuyo nombre tenga palabras que empiecen por cada una de sus partes, y
+ * deben cumplirse todas. Las partes se separan igual que las palabras de los nombres, por
+ * cualquier carácter que no sea letra ni dígito: <code>coca-cola</code> encuentra
+ * "Coca-Cola" y <code>1,5l</code> encuentra "Agua 1,5L". Las palabras con forma
+ * de precio filtran por precio: <code>&lt;2</code>, <code>&gt;1,5</code> o <code>1-3</code>
+ * (extremos incluidos).
+ * </p>
+ */
+public class Consulta {
+
+	private final List<String> palabras;
+	private final double precioMinimo;
+	private final double precioMaximo;
+	private final boolean soloDisponibles;
+
+	private Consulta(List<String> palabras, double precioMinimo, double precioMaximo, boolean soloDisponibles) {
+		this.palabras = Collections.unmodifiableList(palabras);
+		this.precioMinimo = precioMinimo;
+		this.precioMaximo = precioMaximo;
+		this.soloDisponibles = soloDisponibles;
+	}
+
+	/**
+	 * Interpreta el texto del buscador.
+	 *
+	 * @param texto el texto, o null
+	 * @param soloDisponibles true para quedarse solo con los productos disponibles
+	 * @return la consulta
+	 */
+	public static Consulta de(String texto, boolean soloDisponibles) {
+		List<String> palabras = new ArrayList<>();
+		double minimo = Double.NEGATIVE_INFINITY;
+		double maximo = Double.POSITIVE_INFINITY;
+		if (texto != null) {
+			for (String palabra : IndiceProductos.normalizar(texto).split("\\s+")) {
+				if (palabra.isEmpty()) {
+					continue;
+				}
+				char primera = palabra.charAt(0);
+				int guion = palabra.indexOf('-', 1);
+				if ((primera == '<' || primera == '>') && esNumero(palabra.substring(1))) {
+					double valor = numero(palabra.substring(1));
+					if (primera == '<') {
+						maximo = Math.min(maximo, valor);
+					} else {
+						minimo = Math.max(minimo, valor);
+					}
+				} else if (guion > 0 && esNumero(palabra.substring(0, guion)) && esNumero(palabra.substring(guion + 1))) {
+					minimo = Math.max(minimo, numero(palabra.substring(0, guion)));
+					maximo = Math.min(maximo, numero(palabra.substring(guion + 1)));
+				} else {
+					palabras.add(palabra);
+				}
+			}
+		}
+		return new Consulta(palabras, minimo, maximo, soloDisponibles);
+	}
+
+	/**
+	 * Obtiene las palabras a buscar en el código y el nombre, ya normalizadas.
+	 *
+	 * @return la lista inmodificable de palabras
+	 */
+	public List<String> getPalabras() {
+		return palabras;
+	}
+
+	/**
+	 * Obtiene el precio mínimo, incluido.
+	 *
+	 * @return el mínimo, o menos infinito si no hay
+	 */
+	public double getPrecioMinimo() {
+		return precioMinimo;
+	}
+
+	/**
+	 * Obtiene el precio máximo, incluido.
+	 *
+	 * @return el máximo, o infinito si no hay
+	 */
+	public double getPrecioMaximo() {
+		return precioMaximo;
+	}
+
+	/**
+	 * Indica si solo se buscan productos disponibles.
+	 *
+	 * @return true si se descartan los no disponibles
+	 */
+	public boolean isSoloDisponibles() {
+		return soloDisponibles;
+	}
+
+	/**
+	 * Indica si la consulta filtra algo.
+	 *
+	 * @return true si no tiene palabras, precios ni filtro de disponibilidad
+	 */
+	public boolean isVacia() {
+		return palabras.isEmpty() && !soloDisponibles
+				&& precioMinimo == Double.NEGATIVE_INFINITY && precioMaximo == Double.POSITIVE_INFINITY;
+	}
+
+	private static boolean esNumero(String texto) {
+		return Validador.esDecimal(texto);
+	}
+
+	private static double numero(String texto) {
+		return Double.parseDouble(texto.replace(',', '.'));
+	}
+}
@@ -0,0 +1,308 @@
+package busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import model.Producto;
+
+/**
+ * Índice en memoria de los productos para buscar y filtrar mientras se escribe.
+ *
+ * <p>
+ * Cada producto recibe un identificador denso y se indexa en cuatro estructuras: un árbol de
+ * prefijos sobre el código, un índice de palabras del nombre ordenado (para buscar por prefijo),
+ * un índice ordenado de precios y un mapa de bits de disponibilidad. Una búsqueda combina
+ * conjuntos de bits y no recorre los productos. Los textos se comparan sin distinguir
+ * mayúsculas ni tildes.
+ * </p>
+ *
+ * <p>
+ * El índice se mantiene de forma incremental con {@link #anadir}, {@link #quitar} y
+ * {@link #actualizar}. Las claves se copian al indexar, de modo que un producto modificado
+ * debe actualizarse. No es seguro entre hilos: se usa desde el hilo de JavaFX.
+ * </p>
+ */
+public final class IndiceProductos {
+
+	private static final Pattern TILDES = Pattern.compile("\\p{M}+");
+
+	private final Map<String, Integer> idPorCodigo = new HashMap<>();
+	private Producto[] productos = new Producto[16];
+	private String[] nombres = new String[16];
+	private double[] precios = new double[16];
+	private int[] libres = new int[0];
+	private int numeroLibres;
+	private int siguienteId;
+
+	private final NodoTrie codigos = new NodoTrie();
+	private final TreeMap<String, ListaIds> palabras = new TreeMap<>();
+	private final TreeMap<Double, ListaIds> porPrecio = new TreeMap<>();
+	private final BitSet disponibles = new BitSet();
+	private final BitSet ocupados = new BitSet();
+
+	/**
+	 * Crea un índice vacío.
+	 */
+	public IndiceProductos() {
+	}
+
+	/**
+	 * Crea un índice con unos productos.
+	 *
+	 * @param productos los productos a indexar
+	 */
+	public IndiceProductos(Collection<Producto> productos) {
+		for (Producto producto : productos) {
+			anadir(producto);
+		}
+	}
+
+	/**
+	 * Indexa un producto. Si ya hay uno con el mismo código, se sustituye.
+	 *
+	 * @param producto el producto
+	 */
+	public void anadir(Producto producto) {
+		if (producto == null || producto.getCodigo() == null) {
+			return;
+		}
+		quitar(producto.getCodigo());
+		int id = numeroLibres > 0 ? libres[--numeroLibres] : siguienteId++;
+		if (id >= productos.length) {
+			int capacidad = productos.length * 2;
+			productos = Arrays.copyOf(productos, capacidad);
+			nombres = Arrays.copyOf(nombres, capacidad);
+			precios = Arrays.copyOf(precios, capacidad);
+		}
+		String codigo = producto.getCodigo();
+		String nombre = normalizar(producto.getNombre());
+		productos[id] = producto;
+		nombres[id] = nombre;
+		precios[id] = producto.getPrecio();
+		idPorCodigo.put(codigo, id);
+		ocupados.set(id);
+		disponibles.set(id, producto.isDisponible());
+
+		codigos.anadir(normalizar(codigo), id);
+		for (String palabra : palabras(nombre)) {
+			palabras.computeIfAbsent(palabra, p -> new ListaIds()).anadir(id);
+		}
+		porPrecio.computeIfAbsent(producto.getPrecio(), p -> new ListaIds()).anadir(id);
+	}
+
+	/**
+	 * Vuelve a indexar un producto cuyos datos han cambiado.
+	 *
+	 * @param producto el producto
+	 */
+	public void actualizar(Producto producto) {
+		anadir(producto);
+	}
+
+	/**
+	 * Quita un producto del índice. Si el código está indexado con otra instancia, por ejemplo
+	 * porque ya se ha añadido su sustituta, no se quita.
+	 *
+	 * @param producto el producto
+	 */
+	public void quitar(Producto producto) {
+		Integer id = producto != null ? idPorCodigo.get(producto.getCodigo()) : null;
+		if (id != null && productos[id] == producto) {
+			quitar(producto.getCodigo());
+		}
+	}
+
+	private void quitar(String codigo) {
+		Integer id = codigo != null ? idPorCodigo.remove(codigo) : null;
+		if (id == null) {
+			return;
+		}
+		codigos.quitar(normalizar(codigo), id);
+		for (String palabra : palabras(nombres[id])) {
+			quitarDe(palabras, palabra, id);
+		}
+		quitarDe(porPrecio, precios[id], id);
+		ocupados.clear(id);
+		disponibles.clear(id);
+		productos[id] = null;
+		nombres[id] = null;
+		if (numeroLibres == libres.length) {
+			libres = Arrays.copyOf(libres, Math.max(8, libres.length * 2));
+		}
+		libres[numeroLibres++] = id;
+	}
+
+	/**
+	 * Vacía el índice.
+	 */
+	public void limpiar() {
+		idPorCodigo.clear();
+		Arrays.fill(productos, null);
+		Arrays.fill(nombres, null);
+		numeroLibres = 0;
+		siguienteId = 0;
+		palabras.clear();
+		porPrecio.clear();
+		disponibles.clear();
+		ocupados.clear();
+		codigos.limpiar();
+	}
+
+	/**
+	 * Obtiene el número de productos indexados.
+	 *
+	 * @return el número de productos
+	 */
+	public int getTamano() {
+		return idPorCodigo.size();
+	}
+
+	/**
+	 * Busca los productos que cumplen una consulta.
+	 *
+	 * @param consulta la consulta
+	 * @return el resultado de la búsqueda
+	 */
+	public Resultado buscar(Consulta consulta) {
+		BitSet encontrados = (BitSet) ocupados.clone();
+		if (consulta.isSoloDisponibles()) {
+			encontrados.and(disponibles);
+		}
+		if (consulta.getPrecioMinimo() != Double.NEGATIVE_INFINITY || consulta.getPrecioMaximo() != Double.POSITIVE_INFINITY) {
+			BitSet enRango = new BitSet();
+			if (consulta.getPrecioMinimo() <= consulta.getPrecioMaximo()) {
+				for (ListaIds ids : porPrecio.subMap(consulta.getPrecioMinimo(), true, consulta.getPrecioMaximo(), true).values()) {
+					ids.marcar(enRango);
+				}
+			}
+			encontrados.and(enRango);
+		}
+		BitSet coincidencias = new BitSet();
+		BitSet enNombre = new BitSet();
+		BitSet conParte = new BitSet();
+		for (String palabra : consulta.getPalabras()) {
+			if (encontrados.isEmpty()) {
+				break;
+			}
+			coincidencias.clear();
+			codigos.buscar(palabra, coincidencias);
+			// EN EL NOMBRE, LA PALABRA SE DIVIDE COMO LOS NOMBRES: "coca-cola" BUSCA "coca" Y "cola"
+			List<String> partes = palabras(palabra);
+			for (int i = 0; i < partes.size(); i++) {
+				conParte.clear();
+				for (ListaIds ids : conPrefijo(palabras, partes.get(i)).values()) {
+					ids.marcar(conParte);
+				}
+				if (i == 0) {
+					enNombre.clear();
+					enNombre.or(conParte);
+				} else {
+					enNombre.and(conParte);
+				}
+			}
+			if (!partes.isEmpty()) {
+				coincidencias.or(enNombre);
+			}
+			encontrados.and(coincidencias);
+		}
+		return new Resultado(encontrados);
+	}
+
+	/**
+	 * Resultado de una búsqueda.
+	 */
+	public class Resultado {
+		private final BitSet encontrados;
+
+		private Resultado(BitSet encontrados) {
+			this.encontrados = encontrados;
+		}
+
+		/**
+		 * Indica si un producto está en el resultado.
+		 *
+		 * @param producto el producto
+		 * @return true si el producto está indexado y cumple la consulta
+		 */
+		public boolean contiene(Producto producto) {
+			Integer id = producto != null ? idPorCodigo.get(producto.getCodigo()) : null;
+			return id != null && encontrados.get(id);
+		}
+
+		/**
+		 * Obtiene el número de productos encontrados.
+		 *
+		 * @return el número de productos
+		 */
+		public int getTamano() {
+			return encontrados.cardinality();
+		}
+	}
+
+	/**
+	 * Normaliza un texto para compararlo: minúsculas y sin tildes.
+	 *
+	 * @param texto el texto, o null
+	 * @return el texto normalizado, o una cadena vacía
+	 */
+	public static String normalizar(String texto) {
+		if (texto == null) {
+			return "";
+		}
+		String minusculas = texto.toLowerCase(Locale.ROOT);
+		for (int i = 0; i < minusculas.length(); i++) {
+			if (minusculas.charAt(i) >= 0x80) {
+				return TILDES.matcher(Normalizer.normalize(minusculas, Normalizer.Form.NFD)).replaceAll("");
+			}
+		}
+		return minusculas;
+	}
+
+	/**
+	 * Divide un nombre normalizado en palabras de letras y dígitos.
+	 */
+	private static List<String> palabras(String nombre) {
+		List<String> palabras = new ArrayList<>(4);
+		if (nombre == null) {
+			return palabras;
+		}
+		int inicio = -1;
+		for (int i = 0; i <= nombre.length(); i++) {
+			boolean letra = i < nombre.length() && Character.isLetterOrDigit(nombre.charAt(i));
+			if (letra && inicio < 0) {
+				inicio = i;
+			} else if (!letra && inicio >= 0) {
+				String palabra = nombre.substring(inicio, i);
+				if (!palabras.contains(palabra)) {
+					palabras.add(palabra);
+				}
+				inicio = -1;
+			}
+		}
+		return palabras;
+	}
+
+	private static NavigableMap<String, ListaIds> conPrefijo(TreeMap<String, ListaIds> mapa, String prefijo) {
+		return mapa.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+	}
+
+	private static <K> void quitarDe(Map<K, ListaIds> mapa, K clave, int id) {
+		ListaIds ids = mapa.get(clave);
+		if (ids != null) {
+			ids.quitar(id);
+			if (ids.isVacia()) {
+				mapa.remove(clave);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package busqueda;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Conjunto de identificadores de producto.
+ *
+ * <p>
+ * Mientras es pequeño se guarda como un array de enteros; al superar {@link #UMBRAL} pasa a
+ * un {@link BitSet}, de modo que las claves muy repetidas (palabras como "de" o prefijos cortos
+ * del código) se quitan en tiempo constante y se combinan palabra a palabra.
+ * </p>
+ */
+final class ListaIds {
+
+	private static final int UMBRAL = 64;
+
+	private int[] ids = new int[2];
+	private BitSet bits;
+	private int tamano;
+
+	void anadir(int id) {
+		tamano++;
+		if (bits != null) {
+			bits.set(id);
+			return;
+		}
+		if (tamano > UMBRAL) {
+			bits = new BitSet();
+			for (int i = 0; i < tamano - 1; i++) {
+				bits.set(ids[i]);
+			}
+			bits.set(id);
+			ids = null;
+			return;
+		}
+		if (tamano > ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * 2);
+		}
+		ids[tamano - 1] = id;
+	}
+
+	/**
+	 * Quita un identificador; en el array se sustituye por el último.
+	 */
+	void quitar(int id) {
+		if (bits != null) {
+			if (bits.get(id)) {
+				bits.clear(id);
+				tamano--;
+			}
+			return;
+		}
+		for (int i = 0; i < tamano; i++) {
+			if (ids[i] == id) {
+				ids[i] = ids[--tamano];
+				return;
+			}
+		}
+	}
+
+	boolean isVacia() {
+		return tamano == 0;
+	}
+
+	/**
+	 * Marca en el conjunto todos los identificadores de la lista.
+	 */
+	void marcar(BitSet conjunto) {
+		if (bits != null) {
+			conjunto.or(bits);
+			return;
+		}
+		for (int i = 0; i < tamano; i++) {
+			conjunto.set(ids[i]);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package busqueda;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Nodo de un árbol de prefijos. Cada nodo guarda los identificadores de todas las claves que
+ * pasan por él, de modo que buscar un prefijo no necesita recorrer el subárbol.
+ */
+final class NodoTrie {
+
+	private char[] letras = new char[0];
+	private NodoTrie[] hijos = new NodoTrie[0];
+	private final ListaIds ids = new ListaIds();
+
+	void anadir(String clave, int id) {
+		NodoTrie nodo = this;
+		for (int i = 0; i < clave.length(); i++) {
+			nodo = nodo.hijo(clave.charAt(i), true);
+			nodo.ids.anadir(id);
+		}
+	}
+
+	void quitar(String clave, int id) {
+		NodoTrie nodo = this;
+		for (int i = 0; i < clave.length() && nodo != null; i++) {
+			NodoTrie siguiente = nodo.hijo(clave.charAt(i), false);
+			if (siguiente == null) {
+				return;
+			}
+			siguiente.ids.quitar(id);
+			if (siguiente.ids.isVacia()) {
+				nodo.eliminarHijo(clave.charAt(i));
+				return;
+			}
+			nodo = siguiente;
+		}
+	}
+
+	void limpiar() {
+		letras = new char[0];
+		hijos = new NodoTrie[0];
+	}
+
+	/**
+	 * Marca en el conjunto los identificadores de las claves que empiezan por el prefijo.
+	 */
+	void buscar(String prefijo, BitSet conjunto) {
+		NodoTrie nodo = this;
+		for (int i = 0; i < prefijo.length(); i++) {
+			nodo = nodo.hijo(prefijo.charAt(i), false);
+			if (nodo == null) {
+				return;
+			}
+		}
+		nodo.ids.marcar(conjunto);
+	}
+
+	private NodoTrie hijo(char letra, boolean crear) {
+		for (int i = 0; i < letras.length; i++) {
+			if (letras[i] == letra) {
+				return hijos[i];
+			}
+		}
+		if (!crear) {
+			return null;
+		}
+		letras = Arrays.copyOf(letras, letras.length + 1);
+		hijos = Arrays.copyOf(hijos, hijos.length + 1);
+		letras[letras.length - 1] = letra;
+		return hijos[hijos.length - 1] = new NodoTrie();
+	}
+
+	private void eliminarHijo(char letra) {
+		for (int i = 0; i < letras.length; i++) {
+			if (letras[i] == letra) {
+				int ultimo = letras.length - 1;
+				letras[i] = letras[ultimo];
+				hijos[i] = hijos[ultimo];
+				letras = Arrays.copyOf(letras, ultimo);
+				hijos = Arrays.copyOf(hijos, ultimo);
+				return;
+			}
+		}
+	}
+}
@@ -1,25 +1,48 @@
 package controller;
 
-import static utilities.Utilidades.checkCampoDoubleStr;
-import static utilities.Utilidades.checkCampoStrMaxLengthStr;
-import static utilities.Utilidades.checkCampoStrMinLengthStr;
-import static utilities.Utilidades.checkCampoStrNotNullStr;
 import static utilities.Utilidades.lanzarError;
 import static utilities.Utilidades.mostrarImagen;
 import static utilities.Utilidades.mostrarInfo;
 import static utilities.Utilidades.num2str;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.sql.SQLException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import busqueda.Consulta;
+import busqueda.IndiceProductos;
+import dao.CambiosProductos;
 import dao.DAOProducto;
+import dao.DAOProductoAsync;
+import dao.SincronizadorProductos;
+import excepciones.ConflictoVersionException;
 import excepciones.ProductosException;
+import exportacion.ExportadorProductos;
+import exportacion.InstantaneaProductos;
+import importacion.ImportadorProductos;
+import importacion.ResultadoImportacion;
 import jasper.Creador;
-import javafx.beans.property.SimpleBooleanProperty;
+import jasper.GeneradorInformesLote;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.css.PseudoClass;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -31,22 +54,144 @@ import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.CheckBoxTableCell;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import metricas.Medicion;
+import metricas.Metricas;
 import model.Producto;
+import utilities.CacheImagenes;
+import utilities.Configuracion;
+import utilities.DiferenciasLista;
+import utilities.ErroresValidacion;
+import utilities.Miniaturas;
 import utilities.StringUtils;
 import utilities.Utilidades;
+import utilities.Validador;
+import utilities.ValidadorProducto;
 
 /**
  * Controlador para la gestión de productos.
  */
 public class ProductosController implements Initializable {
 	
+	/**
+	 * Ejecutor que devuelve las continuaciones al hilo de JavaFX.
+	 */
+	private static final Executor FX = Platform::runLater;
+	
+	/**
+	 * Milisegundos entre intentos de conexión sin base de datos, configurable con <code>instantanea.reintento</code>.
+	 */
+	private static final long REINTENTO_CONEXION = Configuracion.getLong("instantanea.reintento", 5_000);
+	
+	/**
+	 * Estado CSS de los campos con contenido no válido.
+	 */
+	private static final PseudoClass ERROR = PseudoClass.getPseudoClass("error");
+	
+	/**
+	 * Estado CSS de los campos de un producto que otro cliente ha cambiado mientras se editaba.
+	 */
+	private static final PseudoClass OBSOLETO = PseudoClass.getPseudoClass("obsoleto");
+	
 	byte[] imgSeleccionada;
+	
+	/**
+	 * Reglas del formulario, construidas una sola vez.
+	 */
+	private final Validador validador = ValidadorProducto.crear();
+	
+	/**
+	 * Errores de la última validación, reutilizados entre validaciones.
+	 */
+	private final ErroresValidacion errores = validador.crearErrores();
+	
+	/**
+	 * Valores del formulario que se pasan al validador.
+	 */
+	private final CharSequence[] valoresFormulario = new CharSequence[validador.getNumeroCampos()];
+	
+	/**
+	 * Producto que se está editando, tal como estaba al seleccionarlo, o null si no se edita ninguno.
+	 */
+	private Producto enEdicion;
+	
+	/**
+	 * Indica si al recargar la tabla se debe rellenar el formulario con el estado actual del
+	 * producto en edición, tras un conflicto de versión.
+	 */
+	private boolean recargarEdicion;
+	
+	/**
+	 * Indica si se están aplicando cambios a la lista de productos; mientras tanto la selección
+	 * cambia sin que el usuario elija otro producto.
+	 */
+	private boolean aplicandoCambios;
+	
+	/**
+	 * Carga de la tabla en curso; se cancela si se pide otra antes de que termine.
+	 */
+	private CompletableFuture<List<Producto>> cargaPendiente;
+	
+	/**
+	 * Sincronizador con los cambios de otros clientes, o null si no está en marcha.
+	 */
+	private SincronizadorProductos sincronizador;
+	
+	/**
+	 * Instantánea local mostrada al arrancar, o null si no había.
+	 */
+	private InstantaneaProductos instantanea;
+	
+	/**
+	 * Último cambio del registro incluido en la tabla, con el que se guarda la instantánea.
+	 */
+	private long marcaTabla;
+	
+	/**
+	 * Indica si se está escribiendo la instantánea y si hay que volver a escribirla al terminar.
+	 */
+	private boolean instantaneaEscribiendose;
+	private boolean instantaneaPendiente;
+	
+	/**
+	 * Indica si la tabla muestra la instantánea local porque no hay conexión; es de solo lectura.
+	 */
+	private boolean sinConexion;
+	
+	/**
+	 * Título original de la ventana.
+	 */
+	private String tituloVentana;
+	
+	/**
+	 * Número de operaciones de acceso a datos en curso.
+	 */
+	private int operacionesEnCurso;
+	
+	/**
+	 * Todos los productos cargados; la tabla muestra una vista filtrada y ordenada de esta lista.
+	 */
+	private final ObservableList<Producto> productos = FXCollections.observableArrayList();
+	
+	/**
+	 * Índice de búsqueda, mantenido con los cambios de {@link #productos}.
+	 */
+	private final IndiceProductos indice = new IndiceProductos();
+	
+	/**
+	 * Productos que cumplen la búsqueda.
+	 */
+	private final FilteredList<Producto> filtrados = new FilteredList<>(productos);
 
     /**
      * Botón para actualizar un producto.
@@ -133,24 +278,73 @@ public class ProductosController implements Initializable {
     @FXML
     private TableView<Producto> tvProductos;
     
+    /**
+     * Miniatura de la imagen del producto seleccionado.
+     */
+    @FXML
+    private ImageView ivMiniatura;
+    
+    /**
+     * Indicador de operaciones en curso.
+     */
+    @FXML
+    private ProgressIndicator piCargando;
+    
+    /**
+     * Campo de búsqueda de la tabla.
+     */
+    @FXML
+    private TextField tfBuscar;
+    
+    /**
+     * Filtro de productos disponibles.
+     */
+    @FXML
+    private CheckBox cbSoloDisponibles;
+    
     /**
      * Método para actualizar un producto.
      * @param event Evento de acción.
      */
     @FXML
     void actualizar(ActionEvent event) {
-    	Producto seleccionado = tvProductos.getSelectionModel().getSelectedItem();
+    	if (!comprobarConexion()) {
+    		return;
+    	}
+    	//LA VERSIÓN QUE SE COMPRUEBA ES LA DEL PRODUCTO AL EMPEZAR A EDITARLO, AUNQUE LA FILA SE HAYA SUSTITUIDO
+    	Producto seleccionado = enEdicion;
+    	if (seleccionado == null) {
+    		return;
+    	}
+    	if (!seleccionado.isImagenCargada()) {
+    		lanzarError(new ProductosException("La imagen del producto todavía se está cargando"));
+    		return;
+    	}
     	if (seleccionado.getImagen() != null && this.imgSeleccionada == null) {
     		lanzarError(new ProductosException("Si tenía una imagen, no puede dejarla en blanco"));
     		return;
     	}
     	if (validarFormulario()) {
     		try {
+    			//SOLO SE ESCRIBEN LAS COLUMNAS CAMBIADAS, Y SOLO SI NADIE HA MODIFICADO EL PRODUCTO DESDE QUE SE LEYÓ
     			Producto producto = construirProducto();
-    			DAOProducto.modificarProducto(producto);
-    			limpiarFormulario();
-    			actualizarTabla();
-    		} catch (ProductosException | SQLException e) {
+    			enSegundoPlano(DAOProductoAsync.modificarProducto(seleccionado, producto))
+    				.thenRunAsync(() -> {
+    					CacheImagenes.invalidar(producto.getCodigo());
+    					limpiarFormulario();
+    					actualizarTabla();
+    				}, FX)
+    				.exceptionally(e -> {
+    					if (e.getCause() instanceof ConflictoVersionException) {
+    						//SE MUESTRA EL PRODUCTO COMO ESTÁ AHORA PARA QUE EL USUARIO REPITA SUS CAMBIOS
+    						Platform.runLater(() -> {
+    							recargarEdicion = true;
+    							actualizarTabla();
+    						});
+    					}
+    					return manejarError(e);
+    				});
+    		} catch (ProductosException e) {
     			lanzarError(e);
     		}
     	}
@@ -162,13 +356,16 @@ public class ProductosController implements Initializable {
      */
     @FXML
     void crear(ActionEvent event) {
-    	if (validarFormulario()) {    		
+    	if (comprobarConexion() && validarFormulario()) {    		
     		try {
     			Producto producto = construirProducto();
-    			DAOProducto.anadirProducto(producto);
-    			limpiarFormulario();
-    			actualizarTabla();
-    		} catch (ProductosException | SQLException e) {
+    			enSegundoPlano(DAOProductoAsync.anadirProducto(producto))
+    				.thenRunAsync(() -> {
+    					limpiarFormulario();
+    					actualizarTabla();
+    				}, FX)
+    				.exceptionally(this::manejarError);
+    		} catch (ProductosException e) {
     			lanzarError(e);
     		}
     	}
@@ -195,15 +392,332 @@ public class ProductosController implements Initializable {
     
     /**
      * Método para actualizar la tabla de productos.
+     * La consulta se hace en segundo plano; si ya había una carga en curso se descarta.
      */
     private void actualizarTabla() {
+    	if (cargaPendiente != null) {
+    		cargaPendiente.cancel(false);
+    	}
+    	Medicion medicion = Metricas.medir("ui.actualizarTabla");
+    	//EL LISTADO INCLUYE AL MENOS LOS CAMBIOS YA LEÍDOS POR EL SINCRONIZADOR ANTES DE PEDIRLO
+    	long marca = sincronizador != null ? sincronizador.getMarcaSegura() : 0;
+    	CompletableFuture<List<Producto>> carga = DAOProductoAsync.getProductos();
+    	cargaPendiente = carga;
+    	enSegundoPlano(carga)
+    		.thenAcceptAsync(productos -> {
+    			if (carga == cargaPendiente) {
+    				cargaPendiente = null;
+    				aplicarProductos(productos);
+    				marcaTabla = marca;
+    				guardarInstantanea();
+    			}
+    		}, FX)
+    		//LA MEDICIÓN TERMINA TAMBIÉN SI LA CARGA SE DESCARTA O FALLA
+    		.whenComplete((r, e) -> medicion.close())
+    		.exceptionally(this::manejarError);
+    }
+    
+    /**
+     * Aplica a la tabla solo las diferencias con la lista de productos recibida,
+     * conservando la selección si el producto seleccionado sigue existiendo.
+     * @param productos los productos que debe mostrar la tabla
+     */
+    private void aplicarProductos(List<Producto> productos) {
+    	Medicion m = Metricas.medir("ui.aplicarProductos");
     	try {
-    		tvProductos.getItems().clear();
-			tvProductos.getItems().addAll(DAOProducto.getProductos());
-			tvProductos.refresh();
-		} catch (ProductosException e) {
-			lanzarError(e);
-		}
+    		aplicarDiferencias(productos);
+    	} finally {
+    		m.close();
+    	}
+    }
+    
+    private void aplicarDiferencias(List<Producto> productos) {
+    	aplicandoCambios = true;
+    	try {
+    		//UN PRODUCTO CON LA IMAGEN YA EN MEMORIA SE SUSTITUYE, PORQUE LA IMAGEN PODRÍA ESTAR OBSOLETA
+    		DiferenciasLista.aplicar(this.productos, productos, Producto::getCodigo,
+    				(actual, nuevo) -> !actual.isImagenCargada() && actual.mismoContenido(nuevo));
+    		comprobarEdicion();
+    	} finally {
+    		aplicandoCambios = false;
+    	}
+    }
+    
+    /**
+     * Comprueba, tras cambiar la lista de productos, si el producto en edición ha cambiado. El
+     * formulario no se toca: si otro cliente lo ha modificado o eliminado se marca como obsoleto,
+     * y al guardar se comprobará la versión con la que se empezó a editar. Solo tras un conflicto
+     * de versión se rellena con el estado actual. Vuelve a seleccionar su fila si sigue en la tabla.
+     */
+    private void comprobarEdicion() {
+    	if (enEdicion == null) {
+    		return;
+    	}
+    	Producto actual = null;
+    	for (Producto producto : productos) {
+    		if (producto.getCodigo().equals(enEdicion.getCodigo())) {
+    			actual = producto;
+    			break;
+    		}
+    	}
+    	if (recargarEdicion) {
+    		recargarEdicion = false;
+    		if (actual == null) {
+    			limpiarFormulario();
+    			return;
+    		}
+    		enEdicion = actual;
+    		marcarObsoleto(false);
+    		rellenarEditor(actual);
+    	} else if (actual != enEdicion && (actual == null || !actual.mismoContenido(enEdicion))) {
+    		marcarObsoleto(true);
+    	}
+    	if (actual != null && tvProductos.getSelectionModel().getSelectedItem() != actual) {
+    		int indice = tvProductos.getItems().indexOf(actual);
+    		if (indice >= 0) {
+    			tvProductos.getSelectionModel().select(indice);
+    		}
+    	}
+    }
+    
+    /**
+     * Marca o desmarca los campos del formulario como obsoletos.
+     * @param obsoleto true si otro cliente ha cambiado el producto en edición
+     */
+    private void marcarObsoleto(boolean obsoleto) {
+    	tfCodigo.pseudoClassStateChanged(OBSOLETO, obsoleto);
+    	tfNombre.pseudoClassStateChanged(OBSOLETO, obsoleto);
+    	tfPrecio.pseudoClassStateChanged(OBSOLETO, obsoleto);
+    }
+    
+    /**
+     * Muestra la instantánea local, si la hay, sin esperar a la base de datos, y después
+     * conecta con ella para ponerla al día.
+     */
+    private void cargarInicial() {
+    	Path fichero = InstantaneaProductos.getFichero();
+    	if (fichero == null) {
+    		iniciarSincronizacion();
+    		return;
+    	}
+    	enSegundoPlano(DAOProductoAsync.ejecutar(() -> leerInstantanea(fichero)))
+    		.thenAcceptAsync(leida -> {
+    			instantanea = leida;
+    			if (leida != null) {
+    				aplicarProductos(leida.getProductos());
+    				conectarInstantanea();
+    			} else {
+    				iniciarSincronizacion();
+    			}
+    		}, FX)
+    		.exceptionally(this::manejarError);
+    }
+    
+    /**
+     * Lee la instantánea local; si está dañada se descarta y se cargará de nuevo de la base de datos.
+     */
+    private static InstantaneaProductos leerInstantanea(Path fichero) {
+    	try {
+    		return InstantaneaProductos.leer(fichero);
+    	} catch (ProductosException e) {
+    		Metricas.fallo("ui.descartarInstantanea", e);
+    		return null;
+    	}
+    }
+    
+    /**
+     * Pone al día la instantánea mostrada. Si el registro de cambios conserva todos los
+     * posteriores a ella se piden solo esos; si no, se recarga la tabla. Sin conexión, la tabla
+     * queda en solo lectura y se vuelve a intentar cada {@link #REINTENTO_CONEXION} milisegundos.
+     */
+    private void conectarInstantanea() {
+    	long marca = instantanea.getMarca();
+    	DAOProductoAsync.ejecutar(() -> DAOProducto.isCambiosDisponibles(marca))
+    		.handleAsync((disponibles, e) -> {
+    			if (e != null) {
+    				setSinConexion(true);
+    				CompletableFuture.delayedExecutor(REINTENTO_CONEXION, TimeUnit.MILLISECONDS, FX).execute(this::conectarInstantanea);
+    				return null;
+    			}
+    			setSinConexion(false);
+    			if (disponibles && SincronizadorProductos.INTERVALO > 0) {
+    				marcaTabla = marca;
+    				sincronizador = new SincronizadorProductos(marca, this::aplicarCambios, FX);
+    				sincronizador.iniciar();
+    				sincronizador.sondearAhora();
+    			} else {
+    				iniciarSincronizacion();
+    			}
+    			return null;
+    		}, FX);
+    }
+    
+    /**
+     * Cambia el modo sin conexión e indica en el título de la ventana de cuándo son los datos.
+     * @param sinConexion true si no hay conexión con la base de datos
+     */
+    private void setSinConexion(boolean sinConexion) {
+    	if (this.sinConexion == sinConexion) {
+    		return;
+    	}
+    	this.sinConexion = sinConexion;
+    	Stage stage = tvProductos.getScene() != null ? (Stage) tvProductos.getScene().getWindow() : null;
+    	if (stage != null) {
+    		if (tituloVentana == null) {
+    			tituloVentana = stage.getTitle();
+    		}
+    		stage.setTitle(sinConexion
+    				? String.format("%s - sin conexión, datos del %2$td/%2$tm/%2$tY %2$tH:%2$tM", tituloVentana, instantanea.getInstante())
+    				: tituloVentana);
+    	}
+    }
+    
+    /**
+     * Comprueba que se puede escribir en la base de datos y, si no, lo indica.
+     * @return false si la tabla está en modo sin conexión
+     */
+    private boolean comprobarConexion() {
+    	if (sinConexion) {
+    		lanzarError(new ProductosException("No hay conexión con la base de datos: los productos se muestran en solo lectura"));
+    		return false;
+    	}
+    	return true;
+    }
+    
+    /**
+     * Guarda en segundo plano la instantánea local con los productos de la tabla. Si ya se está
+     * guardando, se vuelve a guardar al terminar con los datos de ese momento.
+     */
+    private void guardarInstantanea() {
+    	Path fichero = InstantaneaProductos.getFichero();
+    	if (fichero == null || sinConexion) {
+    		return;
+    	}
+    	if (instantaneaEscribiendose) {
+    		instantaneaPendiente = true;
+    		return;
+    	}
+    	instantaneaEscribiendose = true;
+    	List<Producto> copia = new ArrayList<>(productos);
+    	long marca = marcaTabla;
+    	DAOProductoAsync.ejecutar(() -> {
+    		InstantaneaProductos.escribir(fichero, copia, marca);
+    		return null;
+    	}).whenCompleteAsync((r, e) -> {
+    		if (e != null) {
+    			//LA TABLA SIGUE FUNCIONANDO: SOLO SE PIERDE EL ARRANQUE RÁPIDO DE LA PRÓXIMA VEZ
+    			Metricas.fallo("ui.guardarInstantanea", e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+    		}
+    		instantaneaEscribiendose = false;
+    		if (instantaneaPendiente) {
+    			instantaneaPendiente = false;
+    			guardarInstantanea();
+    		}
+    	}, FX);
+    }
+    
+    /**
+     * Carga la tabla y empieza a recibir los cambios de otros clientes. La marca del registro de
+     * cambios se lee antes que el listado para no perder los cambios hechos entre ambas consultas;
+     * si no se puede leer, la tabla se carga igualmente sin sincronización.
+     */
+    private void iniciarSincronizacion() {
+    	if (SincronizadorProductos.INTERVALO <= 0) {
+    		actualizarTabla();
+    		return;
+    	}
+    	enSegundoPlano(DAOProductoAsync.ejecutar(DAOProducto::getMarcaCambios))
+    		.handleAsync((marca, e) -> {
+    			if (e == null) {
+    				sincronizador = new SincronizadorProductos(marca, this::aplicarCambios, FX);
+    				sincronizador.iniciar();
+    			} else {
+    				Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    				Metricas.fallo("sincronizacion.iniciar", causa);
+    			}
+    			actualizarTabla();
+    			return null;
+    		}, FX);
+    }
+    
+    /**
+     * Aplica a la tabla los productos cambiados por otros clientes, conservando la selección.
+     * @param cambios los cambios leídos por el sincronizador
+     */
+    private void aplicarCambios(CambiosProductos cambios) {
+    	if (cargaPendiente != null) {
+    		//LA CARGA EN CURSO PUEDE HABER LEÍDO LA TABLA ANTES DE ESTOS CAMBIOS: SE REPITE
+    		actualizarTabla();
+    		return;
+    	}
+    	Medicion m = Metricas.medir("ui.aplicarCambios");
+    	aplicandoCambios = true;
+    	try {
+    		Map<String, Integer> posiciones = new HashMap<>(productos.size() * 2);
+    		for (int i = 0; i < productos.size(); i++) {
+    			posiciones.put(productos.get(i).getCodigo(), i);
+    		}
+    		List<Producto> altas = new ArrayList<>();
+    		for (Producto nuevo : cambios.getModificados()) {
+    			CacheImagenes.invalidar(nuevo.getCodigo());
+    			Integer posicion = posiciones.get(nuevo.getCodigo());
+    			if (posicion == null) {
+    				altas.add(nuevo);
+    			} else {
+    				Producto actual = productos.get(posicion);
+    				//UN PRODUCTO CON LA IMAGEN YA EN MEMORIA SE SUSTITUYE, PORQUE LA IMAGEN PODRÍA HABER CAMBIADO
+    				if (actual.isImagenCargada() || !actual.mismoContenido(nuevo)) {
+    					productos.set(posicion, nuevo);
+    				}
+    			}
+    		}
+    		if (!cambios.getBorrados().isEmpty()) {
+    			Set<String> borrados = new HashSet<>(cambios.getBorrados());
+    			borrados.forEach(CacheImagenes::invalidar);
+    			productos.removeIf(producto -> borrados.contains(producto.getCodigo()));
+    		}
+    		productos.addAll(altas);
+    		comprobarEdicion();
+    	} finally {
+    		aplicandoCambios = false;
+    		m.close();
+    	}
+    	marcaTabla = Math.min(cambios.getMarca(), sincronizador.getMarcaSegura());
+    	guardarInstantanea();
+    }
+    
+    /**
+     * Muestra el indicador de actividad mientras dure una operación en segundo plano.
+     * Debe llamarse desde el hilo de JavaFX.
+     * @param operacion la operación en curso
+     * @return la misma operación, para seguir encadenando etapas
+     */
+    private <T> CompletableFuture<T> enSegundoPlano(CompletableFuture<T> operacion) {
+    	operacionesEnCurso++;
+    	piCargando.setVisible(true);
+    	operacion.whenCompleteAsync((r, e) -> {
+    		operacionesEnCurso--;
+    		piCargando.setVisible(operacionesEnCurso > 0);
+    	}, FX);
+    	return operacion;
+    }
+    
+    /**
+     * Muestra el error de una operación en segundo plano, salvo si se ha cancelado.
+     * @param e el error de la operación
+     * @return null, para poder usarse en {@link CompletableFuture#exceptionally}
+     */
+    private Void manejarError(Throwable e) {
+    	Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    	if (!(causa instanceof CancellationException)) {
+    		Metricas.fallo("ui.segundoPlano", causa);
+    		if (Platform.isFxApplicationThread()) {
+    			lanzarError(causa);
+    		} else {
+    			Platform.runLater(() -> lanzarError(causa));
+    		}
+    	}
+    	return null;
     }
     
     @FXML
@@ -245,29 +759,171 @@ public class ProductosController implements Initializable {
 		}
     }
     
+    /**
+     * Mantiene el índice de búsqueda con los cambios de la lista de productos y vuelve a filtrar.
+     * @param c los cambios de la lista
+     */
+    private void indexarCambios(ListChangeListener.Change<? extends Producto> c) {
+    	while (c.next()) {
+    		for (Producto producto : c.getRemoved()) {
+    			indice.quitar(producto);
+    		}
+    		for (Producto producto : c.getAddedSubList()) {
+    			indice.anadir(producto);
+    		}
+    	}
+    	if (filtrados.getPredicate() != null) {
+    		filtrar();
+    	}
+    }
+    
+    /**
+     * Filtra la tabla con el texto del buscador y el filtro de disponibles.
+     */
+    private void filtrar() {
+    	Consulta consulta = Consulta.de(tfBuscar.getText(), cbSoloDisponibles.isSelected());
+    	if (consulta.isVacia()) {
+    		filtrados.setPredicate(null);
+    	} else {
+    		IndiceProductos.Resultado resultado = indice.buscar(consulta);
+    		filtrados.setPredicate(resultado::contiene);
+    	}
+    }
+    
+    /**
+     * Método para exportar a PDF el informe de cada producto de la tabla.
+     */
+    private void exportarInformes() {
+    	List<String> codigos = new ArrayList<>(tvProductos.getItems().size());
+    	for (Producto producto : tvProductos.getItems()) {
+    		codigos.add(producto.getCodigo());
+    	}
+    	if (codigos.isEmpty()) {
+    		return;
+    	}
+    	DirectoryChooser dc = new DirectoryChooser();
+    	dc.setTitle("Carpeta de destino de los informes");
+    	File directorio = dc.showDialog(tvProductos.getScene().getWindow());
+    	if (directorio != null) {
+    		GeneradorInformesLote generador = new GeneradorInformesLote("informe.jasper", "codigoproducto", directorio, GeneradorInformesLote.HILOS);
+    		piCargando.setProgress(0);
+    		enSegundoPlano(generador.generar(codigos, (hechos, total, porSegundo) -> 
+    				Platform.runLater(() -> piCargando.setProgress((double) hechos / total))))
+    			.thenAcceptAsync(resumen -> {
+    				piCargando.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+    				mostrarInfo(resumen.toString());
+    			}, FX)
+    			.exceptionally(this::manejarError);
+    	}
+    }
+    
+    /**
+     * Método para importar productos desde un fichero CSV o JSON-lines.
+     */
+    private void importarProductos() {
+    	if (!comprobarConexion()) {
+    		return;
+    	}
+    	FileChooser fc = new FileChooser();
+    	fc.setTitle("Importar productos");
+    	fc.getExtensionFilters().addAll(
+    			new FileChooser.ExtensionFilter("CSV o JSON-lines", "*.csv", "*.jsonl", "*.ndjson", "*.json"),
+    			new FileChooser.ExtensionFilter("Todos los ficheros", "*.*"));
+    	File fichero = fc.showOpenDialog(tvProductos.getScene().getWindow());
+    	if (fichero != null) {
+    		ImportadorProductos importador = new ImportadorProductos();
+    		piCargando.setProgress(0);
+    		enSegundoPlano(DAOProductoAsync.ejecutar(() -> importador.importar(fichero.toPath(), (filas, leidos, total, porSegundo) -> 
+    				Platform.runLater(() -> piCargando.setProgress(total > 0 ? (double) leidos / total : -1)))))
+    			.thenAcceptAsync(resultado -> {
+    				piCargando.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+    				StringBuilder sb = new StringBuilder(resultado.toString());
+    				List<ResultadoImportacion.Rechazo> rechazos = resultado.getRechazos();
+    				for (int i = 0; i < Math.min(10, rechazos.size()); i++) {
+    					sb.append('\n').append(rechazos.get(i));
+    				}
+    				if (resultado.getRechazadas() > 10) {
+    					sb.append("\n...");
+    				}
+    				mostrarInfo(sb.toString());
+    				actualizarTabla();
+    			}, FX)
+    			.exceptionally(this::manejarError);
+    	}
+    }
+    
+    /**
+     * Método para exportar el catálogo completo a CSV, JSON-lines o formato binario.
+     * El formato binario incluye las imágenes.
+     */
+    private void exportarCatalogo() {
+    	FileChooser fc = new FileChooser();
+    	fc.setTitle("Exportar catálogo");
+    	fc.setInitialFileName("productos.csv");
+    	fc.getExtensionFilters().addAll(
+    			new FileChooser.ExtensionFilter("CSV", "*.csv"),
+    			new FileChooser.ExtensionFilter("JSON-lines", "*.jsonl"),
+    			new FileChooser.ExtensionFilter("Binario con imágenes", "*.prdx"));
+    	File fichero = fc.showSaveDialog(tvProductos.getScene().getWindow());
+    	if (fichero != null) {
+    		ExportadorProductos.Formato formato = ExportadorProductos.Formato.deFichero(fichero.toPath());
+    		ExportadorProductos exportador = new ExportadorProductos(formato, formato == ExportadorProductos.Formato.BINARIO);
+    		enSegundoPlano(DAOProductoAsync.ejecutar(() -> exportador.exportar(fichero.toPath())))
+    			.thenAcceptAsync(resumen -> mostrarInfo(resumen.toString()), FX)
+    			.exceptionally(this::manejarError);
+    	}
+    }
+    
+    /**
+     * Método para volcar a un fichero las métricas de las operaciones y, si hay una grabación
+     * de Flight Recorder en marcha, una copia de lo grabado.
+     */
+    private void volcarMetricas() {
+    	FileChooser fc = new FileChooser();
+    	fc.setTitle("Volcar métricas");
+    	fc.setInitialFileName("metricas.txt");
+    	File fichero = fc.showSaveDialog(tvProductos.getScene().getWindow());
+    	if (fichero != null) {
+    		enSegundoPlano(DAOProductoAsync.ejecutar(() -> {
+    			try {
+    				return Metricas.volcar(fichero.toPath());
+    			} catch (IOException e) {
+    				throw new ProductosException(e);
+    			}
+    		}))
+    			.thenAcceptAsync(jfr -> mostrarInfo("Métricas volcadas en " + fichero
+    					+ (jfr != null ? "\nGrabación de Flight Recorder en " + jfr : "")), FX)
+    			.exceptionally(this::manejarError);
+    	}
+    }
+    
     /**
      * Método para validar el formulario de producto.
      * @return Verdadero si el formulario es válido, falso en caso contrario.
      */
     private boolean validarFormulario() {
-    	StringBuilder errores = new StringBuilder();
-    	errores.append(checkCampoStrNotNullStr(tfCodigo) + "\n");
-    	
-    	errores.append(checkCampoStrMinLengthStr(tfCodigo, 5) + "\n");
-    	errores.append(checkCampoStrMaxLengthStr(tfCodigo, 5) + "\n");
-    	
-    	errores.append(checkCampoStrNotNullStr(tfNombre) + "\n");
-    	
-    	errores.append(checkCampoStrNotNullStr(tfPrecio) + "\n");
-    	errores.append(checkCampoDoubleStr(tfPrecio) + "\n");
+    	valoresFormulario[ValidadorProducto.CODIGO] = tfCodigo.getText();
+    	valoresFormulario[ValidadorProducto.NOMBRE] = tfNombre.getText();
+    	valoresFormulario[ValidadorProducto.PRECIO] = tfPrecio.getText();
     	
-    	if (!StringUtils.isBlank(errores.toString())) {
-    		lanzarError(new ProductosException(errores.toString()));
+    	if (!validador.validar(valoresFormulario, errores)) {
+    		lanzarError(new ProductosException(errores.getMensajes()));
     		return false;
     	}
     	return true;
     }
     
+    /**
+     * Valida un campo mientras se escribe y lo marca si su contenido no es válido.
+     * Los campos vacíos no se marcan hasta que se envía el formulario.
+     * @param tf el campo a vigilar
+     * @param campo el índice del campo en el validador
+     */
+    private void validarAlEscribir(TextField tf, int campo) {
+    	tf.textProperty().addListener((obs, anterior, texto) -> 
+    		tf.pseudoClassStateChanged(ERROR, !StringUtils.isEmpty(texto) && !validador.esValido(campo, texto)));
+    }
+    
     /**
      * Método para construir un producto a partir de los datos del formulario.
      * @return Producto construido.
@@ -291,14 +947,67 @@ public class ProductosController implements Initializable {
 		tfNombre.setText(producto.getNombre());
 		tfPrecio.setText(num2str(producto.getPrecio()));
 		cbDisponible.setSelected(producto.isDisponible());
-		this.imgSeleccionada = producto.getImagen();
+		mostrarMiniatura(producto);
+		if (producto.isImagenCargada()) {
+			this.imgSeleccionada = producto.getImagen();
+		} else {
+			//LA IMAGEN SE CARGA FUERA DEL HILO DE JAVAFX
+			this.imgSeleccionada = null;
+			enSegundoPlano(DAOProductoAsync.ejecutar(producto::cargarImagen))
+				.thenAcceptAsync(imagen -> {
+					if (producto == enEdicion) {
+						this.imgSeleccionada = imagen;
+					}
+				}, FX)
+				.exceptionally(this::manejarError);
+		}
+    }
+    
+    /**
+     * Muestra la miniatura de un producto; se carga y decodifica fuera del hilo de JavaFX.
+     * @param producto el producto seleccionado
+     */
+    private void mostrarMiniatura(Producto producto) {
+    	//SI YA ESTÁ DECODIFICADA NO SE ACCEDE A LA BASE DE DATOS
+    	Image miniatura = CacheImagenes.buscar(producto.getCodigo(), Miniaturas.ANCHO_MINIATURA, Miniaturas.ALTO_MINIATURA);
+    	ivMiniatura.setImage(miniatura);
+    	if (miniatura != null) {
+    		return;
+    	}
+    	enSegundoPlano(DAOProductoAsync.ejecutar(() -> CacheImagenes.getImagen(producto.getCodigo(), codigo -> producto.cargarMiniatura(), 
+    			Miniaturas.ANCHO_MINIATURA, Miniaturas.ALTO_MINIATURA)))
+    		.thenAcceptAsync(imagen -> {
+    			if (producto == enEdicion) {
+    				ivMiniatura.setImage(imagen);
+    			}
+    		}, FX)
+    		.exceptionally(this::manejarError);
+    }
+    
+    /**
+     * Método para mostrar a tamaño completo la imagen del producto seleccionado.
+     * @param event Evento del ratón.
+     */
+    @FXML
+    void verImagen(MouseEvent event) {
+    	Producto producto = tvProductos.getSelectionModel().getSelectedItem();
+    	if (producto != null) {
+    		//LA IMAGEN SE CARGA Y SE DECODIFICA FUERA DEL HILO DE JAVAFX
+    		enSegundoPlano(DAOProductoAsync.ejecutar(() -> CacheImagenes.getImagen(producto.getCodigo(), codigo -> producto.cargarImagen(), 400, 400)))
+    			.thenAcceptAsync(imagen -> mostrarImagen(imagen, 400, 400, producto.getNombre()), FX)
+    			.exceptionally(this::manejarError);
+    	}
     }
     
     /**
      * Método para limpiar el formulario de producto.
      */
     private void limpiarFormulario() {
+    	this.enEdicion = null;
+    	this.recargarEdicion = false;
     	this.imgSeleccionada = null;
+    	marcarObsoleto(false);
+    	ivMiniatura.setImage(null);
     	tfCodigo.clear();
     	tfNombre.clear();
     	tfPrecio.clear();
@@ -318,56 +1027,54 @@ public class ProductosController implements Initializable {
 	public void initialize(URL location, ResourceBundle resources) {
 		
 		btnActualizar.setDisable(true);
+		
+		//LA TABLA MUESTRA LOS PRODUCTOS FILTRADOS POR EL ÍNDICE Y ORDENADOS SEGÚN SUS COLUMNAS
+		SortedList<Producto> ordenados = new SortedList<>(filtrados);
+		ordenados.comparatorProperty().bind(tvProductos.comparatorProperty());
+		tvProductos.setItems(ordenados);
+		productos.addListener(this::indexarCambios);
+		tfBuscar.textProperty().addListener((obs, anterior, texto) -> filtrar());
+		cbSoloDisponibles.selectedProperty().addListener((obs, anterior, seleccionado) -> filtrar());
+		
+		validarAlEscribir(tfCodigo, ValidadorProducto.CODIGO);
+		validarAlEscribir(tfNombre, ValidadorProducto.NOMBRE);
+		validarAlEscribir(tfPrecio, ValidadorProducto.PRECIO);
 
-        tcCodigo.setCellValueFactory(new PropertyValueFactory<Producto, String>("codigo"));
-        tcNombre.setCellValueFactory(new PropertyValueFactory<Producto, String>("nombre"));
-        tcPrecio.setCellValueFactory(new PropertyValueFactory<Producto, Double>("precio"));
+        //LAS CELDAS USAN LAS PROPIEDADES DEL PRODUCTO, QUE SE CREAN UNA VEZ: SIN REFLEXIÓN NI OBJETOS POR CELDA
+        tcCodigo.setCellValueFactory(f -> f.getValue().codigoProperty());
+        tcNombre.setCellValueFactory(f -> f.getValue().nombreProperty());
+        tcPrecio.setCellValueFactory(f -> f.getValue().precioProperty());
         tcDisponinbe.setCellFactory(tc -> new CheckBoxTableCell<Producto, Boolean>());
-        tcDisponinbe.setCellValueFactory(f -> new SimpleBooleanProperty(f.getValue().isDisponible()));
-        
-        tvProductos.getItems().addListener(new ListChangeListener<Producto>() {
-
-			@Override
-			public void onChanged(Change<? extends Producto> p) {
-				Producto producto = tvProductos.getSelectionModel().getSelectedItem();
-				
-				if (producto != null) {
-					btnCrear.setDisable(true);
-					btnActualizar.setDisable(false);
-					tfCodigo.setDisable(true);
-					rellenarEditor(producto);
-				} else {
-					btnCrear.setDisable(false);
-					btnActualizar.setDisable(true);
-					tfCodigo.setDisable(false);
-					limpiarFormulario();
-				}				
-			}
-        	
-        });
+        tcDisponinbe.setCellValueFactory(f -> f.getValue().disponibleProperty());
         
+        //EL FORMULARIO SOLO SE RELLENA CUANDO EL USUARIO ELIGE OTRO PRODUCTO: LOS CAMBIOS DE LA LISTA
+        //(SINCRONIZACIÓN, RECARGAS, BÚSQUEDAS) NO SOBRESCRIBEN LO QUE SE ESTÁ EDITANDO
         tvProductos.getSelectionModel().getSelectedItems().addListener(new ListChangeListener<Producto>() {
 
 			@Override
 			public void onChanged(Change<? extends Producto> c) {
 	        	Producto producto = tvProductos.getSelectionModel().getSelectedItem();
-	        	if (producto != null) {
-	        		btnCrear.setDisable(true);
-	        		btnActualizar.setDisable(false);
-	        		tfCodigo.setDisable(true);
-	        		rellenarEditor(producto);
-	        	} else {
-	        		btnCrear.setDisable(false);
-	        		btnActualizar.setDisable(true);
-	        		tfCodigo.setDisable(false);
-	        		limpiarFormulario();
+	        	if (aplicandoCambios || producto == null
+	        			|| (enEdicion != null && enEdicion.getCodigo().equals(producto.getCodigo()))) {
+	        		return;
 	        	}
+	        	enEdicion = producto;
+	        	recargarEdicion = false;
+	        	marcarObsoleto(false);
+	        	btnCrear.setDisable(true);
+	        	btnActualizar.setDisable(false);
+	        	tfCodigo.setDisable(true);
+	        	rellenarEditor(producto);
 			}
         	
         });
         
         MenuItem miCrearInforme = new MenuItem("Generar informe");
         MenuItem miEliminar = new MenuItem("Eliminar");
+        MenuItem miInformesLote = new MenuItem("Exportar informes a PDF...");
+        MenuItem miImportar = new MenuItem("Importar productos...");
+        MenuItem miExportar = new MenuItem("Exportar catálogo...");
+        MenuItem miMetricas = new MenuItem("Volcar métricas...");
         
         miCrearInforme.setOnAction(e -> {
         	Producto producto = tvProductos.getSelectionModel().getSelectedItem();
@@ -379,19 +1086,24 @@ public class ProductosController implements Initializable {
         });
         
         miEliminar.setOnAction(e -> {
-        	try {
-        		Producto producto = tvProductos.getSelectionModel().getSelectedItem();
-            	if (producto != null) {
-            		DAOProducto.borrarProducto(producto);
-            		limpiarFormulario();
-            		actualizarTabla();
-            	}
-        	} catch (ProductosException | SQLException ex) {
-        		lanzarError(ex);
+        	Producto producto = tvProductos.getSelectionModel().getSelectedItem();
+        	if (producto != null && comprobarConexion()) {
+        		enSegundoPlano(DAOProductoAsync.borrarProducto(producto))
+        			.thenRunAsync(() -> {
+        				CacheImagenes.invalidar(producto.getCodigo());
+        				limpiarFormulario();
+        				actualizarTabla();
+        			}, FX)
+        			.exceptionally(this::manejarError);
         	}
         });
         
-        ContextMenu cm = new ContextMenu(miCrearInforme, miEliminar);
+        miInformesLote.setOnAction(e -> exportarInformes());
+        miImportar.setOnAction(e -> importarProductos());
+        miExportar.setOnAction(e -> exportarCatalogo());
+        miMetricas.setOnAction(e -> volcarMetricas());
+        
+        ContextMenu cm = new ContextMenu(miCrearInforme, miEliminar, miInformesLote, miImportar, miExportar, miMetricas);
         
         //HAGO VISIBLES LOS BOTONES SEGÚN DISPONIBILIDAD
         cm.setOnShowing(e -> {
@@ -411,7 +1123,7 @@ public class ProductosController implements Initializable {
         tvProductos.setContextMenu(cm);
         
         
-        actualizarTabla();
+        cargarInicial();
 		
 	}
 
@@ -0,0 +1,94 @@
+package dao;
+
+import java.util.Collections;
+import java.util.List;
+
+import model.Producto;
+
+/**
+ * Cambios de la tabla de productos leídos del registro <code>productos_cambios</code> con
+ * {@link DAOProducto#getCambios(long, java.util.Collection, int)}.
+ *
+ * <p>
+ * Cada código aparece una sola vez, con su estado actual en la base de datos: en
+ * {@link #getModificados()} si el producto existe y en {@link #getBorrados()} si ya no existe.
+ * Aplicar los mismos cambios dos veces deja el mismo resultado.
+ * </p>
+ */
+public class CambiosProductos {
+
+	private final List<Producto> modificados;
+	private final List<String> borrados;
+	private final long[] ids;
+	private final long marca;
+	private final boolean completo;
+
+	CambiosProductos(List<Producto> modificados, List<String> borrados, long[] ids, long marca, boolean completo) {
+		this.modificados = Collections.unmodifiableList(modificados);
+		this.borrados = Collections.unmodifiableList(borrados);
+		this.ids = ids;
+		this.marca = marca;
+		this.completo = completo;
+	}
+
+	/**
+	 * Obtiene los productos dados de alta o modificados, sin imágenes.
+	 *
+	 * @return los productos, en el orden de su último cambio
+	 */
+	public List<Producto> getModificados() {
+		return modificados;
+	}
+
+	/**
+	 * Obtiene los códigos de los productos borrados.
+	 *
+	 * @return los códigos
+	 */
+	public List<String> getBorrados() {
+		return borrados;
+	}
+
+	/**
+	 * Obtiene los identificadores de las filas del registro leídas, en orden creciente.
+	 *
+	 * @return los identificadores
+	 */
+	public long[] getIds() {
+		return ids.clone();
+	}
+
+	/**
+	 * Obtiene la marca hasta la que se ha leído: el mayor identificador leído posterior a la
+	 * marca pedida, o la propia marca pedida si no hay cambios nuevos.
+	 *
+	 * @return la marca para la siguiente consulta
+	 */
+	public long getMarca() {
+		return marca;
+	}
+
+	/**
+	 * Indica si se han leído todos los cambios o se ha alcanzado el límite de filas.
+	 *
+	 * @return false si quedan cambios posteriores a {@link #getMarca()}
+	 */
+	public boolean isCompleto() {
+		return completo;
+	}
+
+	/**
+	 * Indica si no hay ningún producto modificado ni borrado.
+	 *
+	 * @return true si no hay cambios que aplicar
+	 */
+	public boolean isVacio() {
+		return modificados.isEmpty() && borrados.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "CambiosProductos [modificados=" + modificados.size() + ", borrados=" + borrados.size()
+				+ ", marca=" + marca + ", completo=" + completo + "]";
+	}
+}
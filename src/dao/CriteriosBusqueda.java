@@ -0,0 +1,233 @@
+package dao;
+
+/**
+ * Criterios de filtrado, orden y límite para {@link DAOProducto#buscarProductos(CriteriosBusqueda)}.
+ * Los criterios que no se establecen no filtran.
+ */
+public class CriteriosBusqueda {
+
+	/**
+	 * Columna por la que se ordenan los resultados. Los empates se deshacen por código.
+	 */
+	public static enum Orden {
+		/** Por código. */
+		CODIGO("codigo"),
+		/** Por nombre. */
+		NOMBRE("nombre"),
+		/** Por precio. */
+		PRECIO("precio"),
+		/** Por disponibilidad. */
+		DISPONIBLE("disponible");
+
+		private final String columna;
+
+		private Orden(String columna) {
+			this.columna = columna;
+		}
+
+		/**
+		 * Obtiene la columna de la tabla. Solo estos valores se concatenan al SQL.
+		 *
+		 * @return el nombre de la columna
+		 */
+		String getColumna() {
+			return columna;
+		}
+	}
+
+	private String prefijoCodigo;
+	private String nombreContiene;
+	private Double precioMinimo;
+	private Double precioMaximo;
+	private Boolean disponible;
+	private Orden orden = Orden.CODIGO;
+	private boolean descendente;
+	private int limite;
+	private int desplazamiento;
+
+	/**
+	 * Constructor por defecto: todos los productos ordenados por código.
+	 */
+	public CriteriosBusqueda() {
+	}
+
+	/**
+	 * Obtiene el prefijo del código.
+	 *
+	 * @return el prefijo, o null si no se filtra por código
+	 */
+	public String getPrefijoCodigo() {
+		return prefijoCodigo;
+	}
+
+	/**
+	 * Filtra los productos cuyo código empieza por un texto. Usa la clave primaria.
+	 *
+	 * @param prefijoCodigo el prefijo, o null para no filtrar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setPrefijoCodigo(String prefijoCodigo) {
+		this.prefijoCodigo = prefijoCodigo;
+		return this;
+	}
+
+	/**
+	 * Obtiene el texto que debe contener el nombre.
+	 *
+	 * @return el texto, o null si no se filtra por nombre
+	 */
+	public String getNombreContiene() {
+		return nombreContiene;
+	}
+
+	/**
+	 * Filtra los productos cuyo nombre contiene un texto, sin distinguir mayúsculas según la
+	 * intercalación de la tabla. Al buscar en cualquier posición no puede usar el índice del nombre.
+	 *
+	 * @param nombreContiene el texto, o null para no filtrar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setNombreContiene(String nombreContiene) {
+		this.nombreContiene = nombreContiene;
+		return this;
+	}
+
+	/**
+	 * Obtiene el precio mínimo.
+	 *
+	 * @return el precio mínimo incluido, o null
+	 */
+	public Double getPrecioMinimo() {
+		return precioMinimo;
+	}
+
+	/**
+	 * Filtra los productos con un precio igual o superior.
+	 *
+	 * @param precioMinimo el precio mínimo incluido, o null para no filtrar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setPrecioMinimo(Double precioMinimo) {
+		this.precioMinimo = precioMinimo;
+		return this;
+	}
+
+	/**
+	 * Obtiene el precio máximo.
+	 *
+	 * @return el precio máximo incluido, o null
+	 */
+	public Double getPrecioMaximo() {
+		return precioMaximo;
+	}
+
+	/**
+	 * Filtra los productos con un precio igual o inferior.
+	 *
+	 * @param precioMaximo el precio máximo incluido, o null para no filtrar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setPrecioMaximo(Double precioMaximo) {
+		this.precioMaximo = precioMaximo;
+		return this;
+	}
+
+	/**
+	 * Obtiene la disponibilidad buscada.
+	 *
+	 * @return true o false, o null si no se filtra por disponibilidad
+	 */
+	public Boolean getDisponible() {
+		return disponible;
+	}
+
+	/**
+	 * Filtra los productos por disponibilidad.
+	 *
+	 * @param disponible true para los disponibles, false para los no disponibles, o null para no filtrar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setDisponible(Boolean disponible) {
+		this.disponible = disponible;
+		return this;
+	}
+
+	/**
+	 * Obtiene la columna de ordenación.
+	 *
+	 * @return el orden
+	 */
+	public Orden getOrden() {
+		return orden;
+	}
+
+	/**
+	 * Indica si el orden es descendente.
+	 *
+	 * @return true si es descendente
+	 */
+	public boolean isDescendente() {
+		return descendente;
+	}
+
+	/**
+	 * Establece el orden de los resultados.
+	 *
+	 * @param orden la columna de ordenación
+	 * @param descendente true para ordenar de mayor a menor
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setOrden(Orden orden, boolean descendente) {
+		this.orden = orden != null ? orden : Orden.CODIGO;
+		this.descendente = descendente;
+		return this;
+	}
+
+	/**
+	 * Obtiene el número máximo de resultados.
+	 *
+	 * @return el límite, o 0 si no hay
+	 */
+	public int getLimite() {
+		return limite;
+	}
+
+	/**
+	 * Establece el número máximo de resultados.
+	 *
+	 * @param limite el límite, o 0 para no limitar
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setLimite(int limite) {
+		if (limite < 0) {
+			throw new IllegalArgumentException("El límite no puede ser negativo");
+		}
+		this.limite = limite;
+		return this;
+	}
+
+	/**
+	 * Obtiene el número de resultados que se saltan.
+	 *
+	 * @return el desplazamiento
+	 */
+	public int getDesplazamiento() {
+		return desplazamiento;
+	}
+
+	/**
+	 * Establece el número de resultados que se saltan antes de devolver el primero. Solo se
+	 * aplica con límite; para recorrer catálogos grandes es preferible
+	 * {@link DAOProducto#getPaginaProductos(String, int)}.
+	 *
+	 * @param desplazamiento el desplazamiento
+	 * @return la instancia actual de los criterios
+	 */
+	public CriteriosBusqueda setDesplazamiento(int desplazamiento) {
+		if (desplazamiento < 0) {
+			throw new IllegalArgumentException("El desplazamiento no puede ser negativo");
+		}
+		this.desplazamiento = desplazamiento;
+		return this;
+	}
+}
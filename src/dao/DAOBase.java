@@ -1,37 +1,84 @@
 package dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.ResourceBundle;
+
+import metricas.Medicion;
+import metricas.Metricas;
+import utilities.Configuracion;
 
 /**
  * Clase base para los DAO.
  * 
  * <p>
  * Esta clase proporciona una conexión a la base de datos y métodos comunes para los DAO.
+ * Las conexiones se obtienen de un {@link PoolConexiones} configurado en
+ * <code>properties/configuration.properties</code>.
  * </p>
  */
 public abstract class DAOBase {
-	private static final ResourceBundle BUNDLE; 
 	private static final String USUARIO;
 	private static final String CONTRASENA;
 	private static final String BASE_DE_DATOS;
+	private static final String HOST;
+	private static final int PUERTO;
+	private static final PoolConexiones POOL;
 	
 	static {
-		BUNDLE = ResourceBundle.getBundle("properties.configuration");
-		USUARIO = BUNDLE.getString("user");
-		CONTRASENA = BUNDLE.getString("password");
-		BASE_DE_DATOS = BUNDLE.getString("db");
+		USUARIO = Configuracion.getString("user");
+		CONTRASENA = Configuracion.getString("password");
+		BASE_DE_DATOS = Configuracion.getString("db");
+		HOST = Configuracion.getString("host", "localhost");
+		PUERTO = Configuracion.getInt("port", 3306);
+		// CON useAffectedRows UN GUARDADO EN LOTE QUE NO CAMBIA LA FILA CUENTA 0 Y NO 1, COMO UNA ALTA
+		POOL = new PoolConexiones(
+				String.format("jdbc:mariadb://%s:%d/%s?user=%s&password=%s&useServerPrepStmts=%b&useAffectedRows=true",
+						HOST, PUERTO, BASE_DE_DATOS, USUARIO, CONTRASENA, Configuracion.getBoolean("pool.useServerPrepStmts", true)),
+				Configuracion.getInt("pool.min", 1),
+				Configuracion.getInt("pool.max", 8),
+				Configuracion.getLong("pool.idleTimeout", 300_000),
+				Configuracion.getLong("pool.acquireTimeout", 10_000),
+				Configuracion.getInt("pool.validationTimeout", 2),
+				Configuracion.getInt("pool.statementsPorConexion", 32));
+	}
+	
+	/**
+	 * Carga la configuración y crea el pool, que abre sus conexiones mínimas en segundo plano.
+	 * Llamarlo al arrancar adelanta ese trabajo, que si no se hace en la primera consulta.
+	 */
+	public static void iniciar() {
+		// LA INICIALIZACIÓN ESTÁTICA DE LA CLASE YA HA CREADO EL POOL
 	}
 	
 	/**
 	 * Obtiene una conexión a la base de datos.
 	 * 
+	 * <p>
+	 * La conexión procede del pool; al cerrarla se devuelve al pool en lugar de cerrarse. La
+	 * espera se mide con {@link Metricas} como <code>pool.obtener</code>.
+	 * </p>
+	 * 
 	 * @return la conexión a la base de datos
 	 * @throws SQLException si ocurre un error al obtener la conexión
 	 */
 	public static Connection getConexion() throws SQLException {
-		return DriverManager.getConnection(String.format("jdbc:mariadb://localhost:3306/%s?user=%s&password=%s", BASE_DE_DATOS, USUARIO, CONTRASENA));
+		Medicion m = Metricas.medir("pool.obtener");
+		try {
+			return POOL.obtener();
+		} catch (SQLException e) {
+			Metricas.fallo("pool.obtener", e);
+			throw e;
+		} finally {
+			m.close();
+		}
+	}
+	
+	/**
+	 * Obtiene las estadísticas del pool de conexiones.
+	 * 
+	 * @return las estadísticas actuales del pool
+	 */
+	public static EstadisticasPool getEstadisticasPool() {
+		return POOL.getEstadisticas();
 	}
 }
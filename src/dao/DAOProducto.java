@@ -1,25 +1,111 @@
 package dao;
 
+import java.io.IOException;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import excepciones.ConflictoVersionException;
 import excepciones.ProductosException;
+import metricas.Medicion;
+import metricas.Metricas;
 import model.Producto;
+import utilities.Configuracion;
+import utilities.Miniaturas;
 import utilities.StringUtils;
 
 
 /**
  * Esta clase proporciona métodos para interactuar con la tabla de productos en la base de datos.
+ * Cada operación se mide con {@link Metricas} con el nombre <code>dao.</code> y el del método.
  */
 public class DAOProducto extends DAOBase {
 	
 	private static final String TABLA = "productos";
 	
+	/**
+	 * Columnas del listado de productos; la imagen se carga bajo demanda.
+	 */
+	private static final String COLUMNAS_LISTADO = "codigo, nombre, precio, disponible, version";
+	
+	/*
+	 * SENTENCIAS: SE CONSTRUYEN UNA SOLA VEZ Y EL POOL REUTILIZA SU PREPAREDSTATEMENT EN CADA CONEXIÓN
+	 */
+	private static final String SQL_LISTADO = "SELECT " + COLUMNAS_LISTADO + " FROM " + TABLA + " ORDER BY codigo";
+	private static final String SQL_PRIMERA_PAGINA = "SELECT " + COLUMNAS_LISTADO + " FROM " + TABLA + " ORDER BY codigo LIMIT ?";
+	private static final String SQL_PAGINA = "SELECT " + COLUMNAS_LISTADO + " FROM " + TABLA + " WHERE codigo > ? ORDER BY codigo LIMIT ?";
+	private static final String SQL_RECORRER_CON_IMAGENES = "SELECT " + COLUMNAS_LISTADO
+			+ ", OCTET_LENGTH(imagen) AS longitud_imagen, imagen FROM " + TABLA + " ORDER BY codigo";
+	private static final String SQL_IMAGEN = "SELECT imagen FROM " + TABLA + " WHERE codigo = ?";
+	private static final String SQL_MINIATURA = "SELECT miniatura FROM " + TABLA + " WHERE codigo = ?";
+	private static final String SQL_PRODUCTO = "SELECT " + COLUMNAS_LISTADO + ", imagen, miniatura FROM " + TABLA + " WHERE codigo = ?";
+	private static final String SQL_ANADIR = "INSERT INTO " + TABLA + " (nombre, precio, imagen, miniatura, disponible, codigo) VALUES (?,?,?,?,?,?)";
+	private static final String SQL_MODIFICAR = "UPDATE " + TABLA + " SET nombre = ?, precio = ?, imagen = ?, miniatura = ?, disponible = ?, "
+			+ "version = version + 1 WHERE codigo = ?";
+	private static final String SQL_MODIFICAR_VERSION = SQL_MODIFICAR + " AND version = ?";
+	// EN LOS LOTES LA SENTENCIA ES LA MISMA PARA TODAS LAS FILAS: LA VERSIÓN 0 NO SE COMPRUEBA
+	private static final String SQL_MODIFICAR_LOTE = SQL_MODIFICAR + " AND ? IN (0, version)";
+	private static final String SQL_VERSION = "SELECT version FROM " + TABLA + " WHERE codigo = ?";
+	private static final String SQL_BORRAR = "DELETE FROM " + TABLA + " WHERE codigo = ?";
+	private static final String SQL_GUARDAR = SQL_ANADIR + guardarSiVigente("VALUES(imagen)", "VALUES(miniatura)");
+	private static final String SQL_GUARDAR_CONSERVANDO_IMAGENES = SQL_ANADIR
+			+ guardarSiVigente("COALESCE(VALUES(imagen), imagen)", "COALESCE(VALUES(miniatura), miniatura)");
+	private static final int PARAMETROS_VERSION_GUARDAR = 6;
+	private static final String SQL_MARCA_CAMBIOS = "SELECT COALESCE(MAX(id), 0) FROM productos_cambios";
+	private static final String SQL_RANGO_CAMBIOS = "SELECT MIN(id), MAX(id) FROM productos_cambios";
+	private static final String SQL_CAMBIOS = "SELECT c.id, c.codigo, p.nombre, p.precio, p.disponible, p.version, p.codigo IS NOT NULL AS existe"
+			+ " FROM productos_cambios c LEFT JOIN " + TABLA + " p ON p.codigo = c.codigo WHERE c.id > ?";
+	
+	/**
+	 * Construye la parte ON DUPLICATE KEY UPDATE de los guardados en lote. Cada columna solo toma
+	 * el valor nuevo si la fila conserva la versión del producto o si esta es 0; hay un parámetro
+	 * de versión por columna. La versión se asigna la última para que todas las condiciones
+	 * comparen con la anterior, y si no coincide la fila no cambia y el driver cuenta 0.
+	 */
+	private static String guardarSiVigente(String imagen, String miniatura) {
+		String vigente = "? IN (0, version)";
+		return " ON DUPLICATE KEY UPDATE "
+				+ "nombre = IF(" + vigente + ", VALUES(nombre), nombre), "
+				+ "precio = IF(" + vigente + ", VALUES(precio), precio), "
+				+ "imagen = IF(" + vigente + ", " + imagen + ", imagen), "
+				+ "miniatura = IF(" + vigente + ", " + miniatura + ", miniatura), "
+				+ "disponible = IF(" + vigente + ", VALUES(disponible), disponible), "
+				+ "version = IF(" + vigente + ", version + 1, version)";
+	}
+	
+	/**
+	 * Tamaño de página por defecto de {@link #getPaginaProductos(String, int)}.
+	 */
+	public static final int TAMANO_PAGINA = Configuracion.getInt("paginacion.tamano", 100);
+	
+	/**
+	 * Filas que el driver trae en cada viaje al recorrer el listado en streaming.
+	 */
+	private static final int FETCH_SIZE = Configuracion.getInt("listado.fetchSize", 500);
+	
+	/**
+	 * Margen con el que se comparan los precios, guardados como FLOAT.
+	 */
+	private static final double TOLERANCIA_PRECIO = 0.005;
+	
 	/**
 	 * Este método mapea un ResultSet a un objeto Producto.
 	 * @param rs el ResultSet a mapear
@@ -31,29 +117,494 @@ public class DAOProducto extends DAOBase {
 				.setCodigo(rs.getString("codigo"))
 				.setDisponible(rs.getBoolean("disponible"))
 				.setImagen(rs.getBytes("imagen"))
+				.setMiniatura(rs.getBytes("miniatura"))
 				.setNombre(rs.getString("nombre"))
-				.setPrecio(rs.getDouble("precio"));
+				.setPrecio(rs.getDouble("precio"))
+				.setVersion(rs.getLong("version"));
+	}
+	
+	/**
+	 * Este método mapea un ResultSet del listado (sin la columna imagen) a un objeto Producto.
+	 * La imagen se cargará de la base de datos la primera vez que se pida.
+	 * @param rs el ResultSet a mapear
+	 * @return un objeto Producto
+	 * @throws SQLException si ocurre un error al acceder a los datos
+	 */
+	public static Producto mapProductoListado(ResultSet rs) throws SQLException {
+		return new Producto()
+				.setCodigo(rs.getString("codigo"))
+				.setDisponible(rs.getBoolean("disponible"))
+				.setNombre(rs.getString("nombre"))
+				.setPrecio(rs.getDouble("precio"))
+				.setVersion(rs.getLong("version"))
+				.setCargadorImagen(DAOProducto::getImagen)
+				.setCargadorMiniatura(DAOProducto::getMiniatura);
 	}
 	
 	/**
 	 * Este método devuelve una lista de todos los productos en la base de datos.
-	 * @return una lista de objetos Producto
+	 * Las imágenes no se recuperan en el listado, se cargan al pedirlas.
+	 * @return una lista de objetos Producto ordenada por código
 	 * @throws ProductosException si ocurre un error al recuperar los productos
 	 */
 	public static List<Producto> getProductos() throws ProductosException {
-		List<Producto> productos = new LinkedList<>();
-		try (Connection con = getConexion()) {
-			Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("SELECT * FROM " + TABLA);
+		List<Producto> productos = new ArrayList<>();
+		Medicion m = Metricas.medir("dao.getProductos");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(SQL_LISTADO);
+				ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				productos.add(mapProductoListado(rs));
+			}
+		} catch (SQLException e) {
+			throw error("dao.getProductos", e);
+		} finally {
+			m.close();
+		}
+		return productos;
+	}
+	
+	/**
+	 * Este método devuelve una página de productos ordenada por código (paginación por clave).
+	 * Para obtener la primera página se pasa null como código; para las siguientes, el código
+	 * del último producto de la página anterior.
+	 * @param despuesDe el código a partir del cual empieza la página (excluido), o null
+	 * @param tamano el número máximo de productos de la página; si no es positivo se usa {@link #TAMANO_PAGINA}
+	 * @return los productos de la página; si tiene menos de <code>tamano</code> elementos es la última
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	public static List<Producto> getPaginaProductos(String despuesDe, int tamano) throws ProductosException {
+		int limite = tamano > 0 ? tamano : TAMANO_PAGINA;
+		List<Producto> productos = new ArrayList<>(limite);
+		Medicion m = Metricas.medir("dao.getPaginaProductos");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(despuesDe != null ? SQL_PAGINA : SQL_PRIMERA_PAGINA)) {
+			int i = 1;
+			if (despuesDe != null) {
+				ps.setString(i++, despuesDe);
+			}
+			ps.setInt(i, limite);
+			try (ResultSet rs = ps.executeQuery()) {
 				while (rs.next()) {
-					productos.add(mapProducto(rs));
+					productos.add(mapProductoListado(rs));
 				}
+			}
 		} catch (SQLException e) {
-			throw new ProductosException(e);
+			throw error("dao.getPaginaProductos", e);
+		} finally {
+			m.close();
+		}
+		return productos;
+	}
+	
+	/**
+	 * Este método devuelve los productos que cumplen unos criterios, filtrados, ordenados y
+	 * limitados por la base de datos. La consulta siempre es parametrizada: los textos de los
+	 * criterios nunca se concatenan al SQL y la columna de orden sale de una lista cerrada.
+	 * <p>
+	 * El prefijo del código usa la clave primaria y los filtros de precio y disponibilidad los
+	 * índices <code>idx_productos_precio</code> e <code>idx_productos_disponible_precio</code>
+	 * (ver <code>examen2.sql</code>).
+	 * </p>
+	 * @param criterios los criterios de búsqueda; null devuelve todos los productos
+	 * @return los productos encontrados, sin imágenes
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	public static List<Producto> buscarProductos(CriteriosBusqueda criterios) throws ProductosException {
+		CriteriosBusqueda c = criterios != null ? criterios : new CriteriosBusqueda();
+		StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNAS_LISTADO).append(" FROM ").append(TABLA);
+		List<Object> parametros = new ArrayList<>();
+		String union = " WHERE ";
+		if (!StringUtils.isBlank(c.getPrefijoCodigo())) {
+			sql.append(union).append("codigo LIKE ? ESCAPE '!'");
+			parametros.add(escaparLike(c.getPrefijoCodigo()) + "%");
+			union = " AND ";
+		}
+		if (!StringUtils.isBlank(c.getNombreContiene())) {
+			sql.append(union).append("nombre LIKE ? ESCAPE '!'");
+			parametros.add("%" + escaparLike(c.getNombreContiene()) + "%");
+			union = " AND ";
+		}
+		if (c.getDisponible() != null) {
+			sql.append(union).append("disponible = ?");
+			parametros.add(c.getDisponible());
+			union = " AND ";
+		}
+		// EL PRECIO ES FLOAT: SE AMPLÍA EL RANGO MEDIO CÉNTIMO PARA QUE 1.89 ENCUENTRE EL 1.8899999 GUARDADO
+		if (c.getPrecioMinimo() != null) {
+			sql.append(union).append("precio >= ?");
+			parametros.add(c.getPrecioMinimo() - TOLERANCIA_PRECIO);
+			union = " AND ";
+		}
+		if (c.getPrecioMaximo() != null) {
+			sql.append(union).append("precio <= ?");
+			parametros.add(c.getPrecioMaximo() + TOLERANCIA_PRECIO);
+		}
+		String sentido = c.isDescendente() ? " DESC" : "";
+		sql.append(" ORDER BY ").append(c.getOrden().getColumna()).append(sentido);
+		if (c.getOrden() != CriteriosBusqueda.Orden.CODIGO) {
+			sql.append(", codigo").append(sentido);
+		}
+		if (c.getLimite() > 0) {
+			sql.append(" LIMIT ? OFFSET ?");
+			parametros.add(c.getLimite());
+			parametros.add(c.getDesplazamiento());
+		}
+		
+		List<Producto> productos = new ArrayList<>();
+		Medicion m = Metricas.medir("dao.buscarProductos");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(sql.toString())) {
+			for (int i = 0; i < parametros.size(); i++) {
+				ps.setObject(i + 1, parametros.get(i));
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					productos.add(mapProductoListado(rs));
+				}
+			}
+		} catch (SQLException e) {
+			throw error("dao.buscarProductos", e);
+		} finally {
+			m.close();
 		}
 		return productos;
 	}
 	
+	/**
+	 * Este método devuelve la marca actual del registro de cambios: el identificador del último
+	 * cambio. Para no perder cambios, se obtiene antes de cargar el listado que se va a sincronizar.
+	 * @return la marca, o 0 si el registro está vacío
+	 * @throws ProductosException si ocurre un error al consultar el registro
+	 */
+	public static long getMarcaCambios() throws ProductosException {
+		Medicion m = Metricas.medir("dao.getMarcaCambios");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(SQL_MARCA_CAMBIOS);
+				ResultSet rs = ps.executeQuery()) {
+			return rs.next() ? rs.getLong(1) : 0;
+		} catch (SQLException e) {
+			throw error("dao.getMarcaCambios", e);
+		} finally {
+			m.close();
+		}
+	}
+	
+	/**
+	 * Este método indica si el registro de cambios conserva todos los cambios posteriores a una
+	 * marca, de modo que basta con {@link #getCambios(long, Collection, int)} para poner al día
+	 * un listado guardado con ella. No los conserva si se han purgado filas posteriores a la
+	 * marca, si el registro está vacío o si la marca es de otra base de datos (mayor que el
+	 * último cambio).
+	 * @param marca la marca con la que se guardó el listado
+	 * @return true si se pueden pedir los cambios desde la marca
+	 * @throws ProductosException si ocurre un error al consultar el registro
+	 */
+	public static boolean isCambiosDisponibles(long marca) throws ProductosException {
+		Medicion m = Metricas.medir("dao.isCambiosDisponibles");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(SQL_RANGO_CAMBIOS);
+				ResultSet rs = ps.executeQuery()) {
+			if (!rs.next()) {
+				return false;
+			}
+			long primero = rs.getLong(1);
+			boolean vacio = rs.wasNull();
+			long ultimo = rs.getLong(2);
+			return !vacio && marca > 0 && primero <= marca + 1 && marca <= ultimo;
+		} catch (SQLException e) {
+			throw error("dao.isCambiosDisponibles", e);
+		} finally {
+			m.close();
+		}
+	}
+	
+	/**
+	 * Este método devuelve los productos cambiados después de una marca, con su estado actual.
+	 * Solo se leen las filas nuevas del registro <code>productos_cambios</code> y las de los
+	 * productos afectados, nunca la tabla entera.
+	 * <p>
+	 * Un identificador menor que otro ya leído puede aparecer más tarde si su transacción tarda
+	 * más en confirmarse; por eso se pueden pedir de nuevo, en <code>pendientes</code>, los
+	 * identificadores que faltaban en consultas anteriores.
+	 * </p>
+	 * @param desde la marca de la consulta anterior (excluida)
+	 * @param pendientes identificadores anteriores a la marca que se vuelven a pedir, o null
+	 * @param limite el número máximo de filas del registro que se leen
+	 * @return los cambios y la nueva marca
+	 * @throws ProductosException si ocurre un error al consultar el registro
+	 */
+	public static CambiosProductos getCambios(long desde, Collection<Long> pendientes, int limite) throws ProductosException {
+		StringBuilder sql = new StringBuilder(SQL_CAMBIOS);
+		int numPendientes = pendientes != null ? pendientes.size() : 0;
+		if (numPendientes > 0) {
+			sql.append(" OR c.id IN (?").append(",?".repeat(numPendientes - 1)).append(')');
+		}
+		sql.append(" ORDER BY c.id LIMIT ?");
+		
+		// CADA CÓDIGO QUEDA UNA SOLA VEZ: TODAS SUS FILAS TRAEN EL MISMO ESTADO ACTUAL
+		Map<String, Producto> modificados = new LinkedHashMap<>();
+		Set<String> borrados = new LinkedHashSet<>();
+		long[] ids = new long[Math.min(limite, 1024)];
+		int filas = 0;
+		long marca = desde;
+		Medicion m = Metricas.medir("dao.getCambios");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(sql.toString())) {
+			int i = 1;
+			ps.setLong(i++, desde);
+			if (numPendientes > 0) {
+				for (Long id : pendientes) {
+					ps.setLong(i++, id);
+				}
+			}
+			ps.setInt(i, limite);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					long id = rs.getLong("id");
+					if (filas == ids.length) {
+						ids = Arrays.copyOf(ids, filas * 2);
+					}
+					ids[filas++] = id;
+					marca = Math.max(marca, id);
+					String codigo = rs.getString("codigo");
+					modificados.remove(codigo);
+					borrados.remove(codigo);
+					if (rs.getBoolean("existe")) {
+						modificados.put(codigo, mapProductoListado(rs));
+					} else {
+						borrados.add(codigo);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw error("dao.getCambios", e);
+		} finally {
+			m.close();
+		}
+		// LAS FILAS PENDIENTES OCUPAN PARTE DEL LÍMITE: SI SE HA LLENADO PUEDE QUEDAR ALGUNA NUEVA
+		boolean completo = filas < limite;
+		return new CambiosProductos(new ArrayList<>(modificados.values()), new ArrayList<>(borrados),
+				Arrays.copyOf(ids, filas), marca, completo);
+	}
+	
+	/**
+	 * Registra el error de una operación en las métricas y lo envuelve en una ProductosException.
+	 */
+	private static ProductosException error(String operacion, SQLException e) {
+		Metricas.fallo(operacion, e);
+		return new ProductosException(e);
+	}
+	
+	/**
+	 * Escapa los comodines de LIKE con el carácter de escape <code>!</code>.
+	 */
+	private static String escaparLike(String texto) {
+		StringBuilder sb = new StringBuilder(texto.length() + 4);
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c == '!' || c == '%' || c == '_') {
+				sb.append('!');
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Este método recorre todos los productos ordenados por código sin cargarlos en memoria a la vez.
+	 * El ResultSet es de solo avance y el driver trae las filas por bloques.
+	 * @param consumidor la acción a ejecutar con cada producto
+	 * @return el número de productos recorridos
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	public static long recorrerProductos(Consumer<Producto> consumidor) throws ProductosException {
+		Medicion m = Metricas.medir("dao.recorrerProductos");
+		try (Stream<Producto> productos = streamProductos()) {
+			long[] total = new long[1];
+			productos.forEach(p -> {
+				consumidor.accept(p);
+				total[0]++;
+			});
+			return total[0];
+		} catch (UncheckedSQLException e) {
+			throw error("dao.recorrerProductos", e.getCause());
+		} finally {
+			m.close();
+		}
+	}
+	
+	/**
+	 * Este método recorre todas las filas de productos ordenadas por código, con un ResultSet de
+	 * solo avance, entregando el ResultSet posicionado en cada fila en lugar de un Producto.
+	 * <p>
+	 * Las columnas son <code>codigo</code>, <code>nombre</code>, <code>precio</code> y
+	 * <code>disponible</code>; con imágenes, además <code>imagen</code> y <code>longitud_imagen</code>
+	 * (su tamaño en bytes, o NULL), de modo que la imagen se puede copiar con
+	 * <code>getBinaryStream</code> sin crear un array por fila.
+	 * </p>
+	 * @param conImagenes true para incluir las imágenes
+	 * @param procesador la acción a ejecutar con cada fila
+	 * @return el número de filas recorridas
+	 * @throws ProductosException si ocurre un error al recuperar las filas
+	 * @throws IOException si el procesador lanza un error de entrada/salida
+	 */
+	public static long recorrerFilas(boolean conImagenes, ProcesadorFila procesador) throws ProductosException, IOException {
+		long total = 0;
+		Medicion m = Metricas.medir("dao.recorrerFilas");
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(conImagenes ? SQL_RECORRER_CON_IMAGENES : SQL_LISTADO,
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			ps.setFetchSize(FETCH_SIZE);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					procesador.procesar(rs);
+					total++;
+				}
+			}
+		} catch (SQLException e) {
+			throw error("dao.recorrerFilas", e);
+		} finally {
+			m.close();
+		}
+		return total;
+	}
+	
+	/**
+	 * Interfaz funcional para procesar la fila actual de un recorrido con {@link DAOProducto#recorrerFilas}.
+	 */
+	@FunctionalInterface
+	public static interface ProcesadorFila {
+		/**
+		 * Procesa la fila actual.
+		 * @param rs el ResultSet posicionado en la fila; no debe moverse ni cerrarse
+		 * @throws SQLException si ocurre un error al acceder a los datos
+		 * @throws IOException si ocurre un error al escribir la fila
+		 */
+		void procesar(ResultSet rs) throws SQLException, IOException;
+	}
+	
+	/**
+	 * Este método devuelve un Stream perezoso con todos los productos ordenados por código.
+	 * <p>
+	 * El Stream mantiene abierta una conexión hasta que se cierra, por lo que debe usarse en
+	 * un try-with-resources. Los errores de lectura durante el recorrido se lanzan como
+	 * {@link UncheckedSQLException}.
+	 * </p>
+	 * @return el Stream de productos
+	 * @throws ProductosException si ocurre un error al lanzar la consulta
+	 */
+	public static Stream<Producto> streamProductos() throws ProductosException {
+		Medicion m = Metricas.medir("dao.streamProductos");
+		try {
+			return streamConsulta(SQL_LISTADO, DAOProducto::mapProductoListado);
+		} finally {
+			m.close();
+		}
+	}
+	
+	/**
+	 * Ejecuta una consulta con un ResultSet de solo avance y devuelve sus filas como un Stream perezoso.
+	 * @param sql la consulta a ejecutar
+	 * @param mapeador la función que convierte cada fila
+	 * @return el Stream de filas, que libera la conexión al cerrarse
+	 * @throws ProductosException si ocurre un error al lanzar la consulta
+	 */
+	static <T> Stream<T> streamConsulta(String sql, MapeadorFila<T> mapeador) throws ProductosException {
+		Connection con = null;
+		try {
+			con = getConexion();
+			PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(FETCH_SIZE);
+			ResultSet rs = ps.executeQuery();
+			Connection conexion = con;
+			Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super T> accion) {
+					try {
+						if (!rs.next()) {
+							return false;
+						}
+						accion.accept(mapeador.mapear(rs));
+						return true;
+					} catch (SQLException e) {
+						throw new UncheckedSQLException(e);
+					}
+				}
+			};
+			return StreamSupport.stream(filas, false).onClose(() -> {
+				try {
+					conexion.close();
+				} catch (SQLException e) {
+					throw new UncheckedSQLException(e);
+				}
+			});
+		} catch (SQLException e) {
+			if (con != null) {
+				try {
+					con.close();
+				} catch (SQLException ex) {
+					e.addSuppressed(ex);
+				}
+			}
+			throw new ProductosException(e);
+		}
+	}
+	
+	/**
+	 * Interfaz funcional para convertir la fila actual de un ResultSet.
+	 */
+	@FunctionalInterface
+	static interface MapeadorFila<T> {
+		/**
+		 * Convierte la fila actual.
+		 * @param rs el ResultSet posicionado en la fila
+		 * @return el objeto resultante
+		 * @throws SQLException si ocurre un error al acceder a los datos
+		 */
+		T mapear(ResultSet rs) throws SQLException;
+	}
+	
+	/**
+	 * Este método devuelve la imagen de un producto.
+	 * @param codigo el código del producto
+	 * @return la imagen del producto, o null si no tiene o no existe
+	 * @throws ProductosException si ocurre un error al recuperar la imagen
+	 */
+	public static byte[] getImagen(String codigo) throws ProductosException {
+		return getColumnaBinaria("dao.getImagen", SQL_IMAGEN, codigo);
+	}
+	
+	/**
+	 * Este método devuelve la miniatura de la imagen de un producto.
+	 * @param codigo el código del producto
+	 * @return la miniatura del producto, o null si no tiene o no existe
+	 * @throws ProductosException si ocurre un error al recuperar la miniatura
+	 */
+	public static byte[] getMiniatura(String codigo) throws ProductosException {
+		return getColumnaBinaria("dao.getMiniatura", SQL_MINIATURA, codigo);
+	}
+	
+	private static byte[] getColumnaBinaria(String operacion, String sql, String codigo) throws ProductosException {
+		if (codigo != null && !StringUtils.isBlank(codigo)) {
+			Medicion m = Metricas.medir(operacion);
+			try (Connection con = getConexion();
+					PreparedStatement ps = con.prepareStatement(sql)) {
+				ps.setString(1, codigo);
+				try (ResultSet rs = ps.executeQuery()) {
+					if (rs.next()) {
+						return rs.getBytes(1);
+					}
+				}
+			} catch (SQLException e) {
+				throw error(operacion, e);
+			} finally {
+				m.close();
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Este método devuelve un producto específico de la base de datos.
 	 * @param codigo el código del producto a recuperar
@@ -62,16 +613,19 @@ public class DAOProducto extends DAOBase {
 	 */
 	public static Producto getProducto(String codigo) throws ProductosException {
 		if (codigo != null && !StringUtils.isBlank(codigo)) {
-			String sql = "SELECT * FROM " + TABLA + " WHERE codigo = ?";
-			try(Connection con = getConexion()) {
-				PreparedStatement ps = con.prepareStatement(sql);
+			Medicion m = Metricas.medir("dao.getProducto");
+			try (Connection con = getConexion();
+					PreparedStatement ps = con.prepareStatement(SQL_PRODUCTO)) {
 				ps.setString(1, codigo);
-				ResultSet rs = ps.executeQuery();
-				if (rs.first()) {
-					return mapProducto(rs);
+				try (ResultSet rs = ps.executeQuery()) {
+					if (rs.next()) {
+						return mapProducto(rs);
+					}
 				}
 			} catch (SQLException e) {
-				throw new ProductosException(e);
+				throw error("dao.getProducto", e);
+			} finally {
+				m.close();
 			}
 		}
 		return null;
@@ -85,36 +639,32 @@ public class DAOProducto extends DAOBase {
 	 */
 	public static void anadirProducto(Producto producto) throws ProductosException, SQLException {
 		if (producto != null) {
-			
-			String sql = "INSERT INTO " + TABLA + " ("
-					+ "nombre, "
-					+ "precio, "
-					+ "imagen, "
-					+ "disponible, "
-					+ "codigo) "
-					+ "VALUES (?,?,?,?,?)";
-			
+			Miniaturas.prepararProducto(producto);
+			Medicion m = Metricas.medir("dao.anadirProducto");
 			Connection con = null;
 			try {
 				con = getConexion();
 				con.setAutoCommit(false);
 				
-				try (PreparedStatement ps = con.prepareStatement(sql)) {
-					ps.setString(1, producto.getNombre());
-					ps.setDouble(2, producto.getPrecio());
-					ps.setBytes(3, producto.getImagen());
-					ps.setBoolean(4, producto.isDisponible());
-					ps.setString(5, producto.getCodigo());
+				try (PreparedStatement ps = con.prepareStatement(SQL_ANADIR)) {
+					parametrosCompletos(ps, producto);
 					
 					ps.executeUpdate();
 				}
 				con.commit();
+				producto.setVersion(1);
 			} catch (SQLException e) {
-				e.printStackTrace();
-				con.rollback();
+				Metricas.fallo("dao.anadirProducto", e);
+				//SIN CONEXIÓN (POR EJEMPLO, SI EL POOL ESTÁ AGOTADO) NO HAY NADA QUE DESHACER
+				if (con != null) {
+					con.rollback();
+				}
 				throw new ProductosException(e);
 			} finally {
-				con.close();
+				m.close();
+				if (con != null) {
+					con.close();
+				}
 			}			
 		} else {			
 			throw new ProductosException("Los datos introducidos están incompletos");
@@ -122,45 +672,180 @@ public class DAOProducto extends DAOBase {
 	}
 	
 	/**
-	 * Este método modifica un producto existente en la base de datos.
+	 * Este método modifica todas las columnas de un producto en la base de datos.
+	 * <p>
+	 * Si el producto tiene versión ({@link Producto#getVersion()}), solo se modifica si la fila
+	 * sigue teniendo esa versión; si otro usuario lo ha modificado o eliminado se lanza una
+	 * {@link ConflictoVersionException}. Sin versión la fila se sobrescribe. Al terminar, el
+	 * producto queda con la nueva versión.
+	 * </p>
 	 * @param producto el producto a modificar
+	 * @throws ConflictoVersionException si el producto ha cambiado desde que se leyó
 	 * @throws ProductosException si ocurre un error al modificar el producto
 	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 * @see #modificarProducto(Producto, Producto)
 	 */
 	public static void modificarProducto(Producto producto) throws ProductosException, SQLException {
 		if (producto != null && !StringUtils.isBlank(producto.getCodigo())) {
+			Miniaturas.prepararProducto(producto);
+			long version = producto.getVersion();
+			ejecutarModificacion("dao.modificarProducto", version > 0 ? SQL_MODIFICAR_VERSION : SQL_MODIFICAR, producto, version, ps -> {
+				parametrosCompletos(ps, producto);
+				if (version > 0) {
+					ps.setLong(7, version);
+				}
+			});
+		} else {			
+			throw new ProductosException("Los datos introducidos están incompletos");
+		}
+	}
+	
+	/**
+	 * Este método modifica solo las columnas de un producto que han cambiado respecto a como
+	 * se leyó. La imagen y la miniatura no se envían si la imagen no ha cambiado o no llegó a
+	 * cargarse, y si no ha cambiado nada no se accede a la base de datos.
+	 * <p>
+	 * La versión que se comprueba es la del producto leído, igual que en
+	 * {@link #modificarProducto(Producto)}. Al terminar, el producto modificado queda con la
+	 * nueva versión.
+	 * </p>
+	 * @param anterior el producto tal como se leyó; si es null se modifican todas las columnas
+	 * @param producto el producto modificado, con el mismo código
+	 * @throws ConflictoVersionException si el producto ha cambiado desde que se leyó
+	 * @throws ProductosException si ocurre un error al modificar el producto
+	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 */
+	public static void modificarProducto(Producto anterior, Producto producto) throws ProductosException, SQLException {
+		if (anterior == null) {
+			modificarProducto(producto);
+			return;
+		}
+		if (producto == null || StringUtils.isBlank(producto.getCodigo()) || !producto.getCodigo().equals(anterior.getCodigo())) {
+			throw new ProductosException("Los datos introducidos están incompletos");
+		}
+		long version = anterior.getVersion();
+		StringBuilder sql = new StringBuilder("UPDATE ").append(TABLA).append(" SET ");
+		List<Object> parametros = new ArrayList<>();
+		if (!Objects.equals(anterior.getNombre(), producto.getNombre())) {
+			sql.append("nombre = ?, ");
+			parametros.add(producto.getNombre());
+		}
+		// LA COLUMNA ES FLOAT: LEÍDA COMO DOUBLE NO COINCIDE CON EL PRECIO TECLEADO AUNQUE NO HAYA CAMBIADO
+		if (Float.compare((float) anterior.getPrecio(), (float) producto.getPrecio()) != 0) {
+			sql.append("precio = ?, ");
+			parametros.add(producto.getPrecio());
+		}
+		if (anterior.isDisponible() != producto.isDisponible()) {
+			sql.append("disponible = ?, ");
+			parametros.add(producto.isDisponible());
+		}
+		if (imagenCambiada(anterior, producto)) {
+			Miniaturas.prepararProducto(producto);
+			sql.append("imagen = ?, miniatura = ?, ");
+			parametros.add(new ImagenParametro(producto.getImagen()));
+			parametros.add(new ImagenParametro(producto.getMiniatura()));
+		}
+		if (parametros.isEmpty()) {
+			producto.setVersion(version);
+			return;
+		}
+		sql.append("version = version + 1 WHERE codigo = ?");
+		parametros.add(producto.getCodigo());
+		if (version > 0) {
+			sql.append(" AND version = ?");
+			parametros.add(version);
+		}
+		ejecutarModificacion("dao.modificarProductoParcial", sql.toString(), producto, version, ps -> {
+			for (int i = 0; i < parametros.size(); i++) {
+				Object valor = parametros.get(i);
+				if (valor instanceof ImagenParametro) {
+					ps.setBytes(i + 1, ((ImagenParametro) valor).bytes);
+				} else {
+					ps.setObject(i + 1, valor);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Imagen como parámetro de una modificación parcial, para asignarla con setBytes aunque sea null.
+	 */
+	private static final class ImagenParametro {
+		private final byte[] bytes;
+		
+		private ImagenParametro(byte[] bytes) {
+			this.bytes = bytes;
+		}
+	}
+	
+	/**
+	 * Indica si hay que escribir la imagen: no si no llegó a cargarse o es la misma que se leyó.
+	 */
+	private static boolean imagenCambiada(Producto anterior, Producto producto) {
+		if (!producto.isImagenCargada()) {
+			return false;
+		}
+		if (!anterior.isImagenCargada()) {
+			return true;
+		}
+		byte[] original = anterior.getImagen();
+		byte[] nueva = producto.getImagen();
+		return original != nueva && !Arrays.equals(original, nueva);
+	}
+	
+	/**
+	 * Interfaz funcional para asignar los parámetros de una modificación.
+	 */
+	@FunctionalInterface
+	private static interface ParametrosSentencia {
+		void asignar(PreparedStatement ps) throws SQLException;
+	}
+	
+	/**
+	 * Ejecuta en una transacción la modificación de un producto. Si la sentencia comprueba la
+	 * versión (mayor que 0) y no modifica ninguna fila, se lee la versión actual para lanzar la
+	 * {@link ConflictoVersionException}; si no, el producto queda con la versión siguiente.
+	 */
+	private static void ejecutarModificacion(String operacion, String sql, Producto producto, long version,
+			ParametrosSentencia parametros) throws ProductosException, SQLException {
+		Medicion m = Metricas.medir(operacion);
+		Connection con = null;
+		try {
+			con = getConexion();
+			con.setAutoCommit(false);
 			
-			String sql = "UPDATE " + TABLA +" SET "
-					+ "nombre = ?, "
-					+ "precio= ?, "
-					+ "imagen = ?, "
-					+ "disponible = ? "
-					+ "WHERE codigo = ?";
-			
-			Connection con = null;
-			try {
-				con = getConexion();
-				con.setAutoCommit(false);
+			int filas;
+			try (PreparedStatement ps = con.prepareStatement(sql)) {
+				parametros.asignar(ps);
 				
-				try (PreparedStatement ps = con.prepareStatement(sql)) {
-					ps.setString(1, producto.getNombre());
-					ps.setDouble(2, producto.getPrecio());
-					ps.setBytes(3, producto.getImagen());
-					ps.setBoolean(4, producto.isDisponible());
-					ps.setString(5, producto.getCodigo());
-					
-					ps.executeUpdate();
+				filas = ps.executeUpdate();
+			}
+			if (version > 0 && filas == 0) {
+				long actual = 0;
+				try (PreparedStatement ps = con.prepareStatement(SQL_VERSION)) {
+					ps.setString(1, producto.getCodigo());
+					try (ResultSet rs = ps.executeQuery()) {
+						actual = rs.next() ? rs.getLong(1) : 0;
+					}
 				}
-				con.commit();
-			} catch (SQLException e) {
-				e.printStackTrace();
 				con.rollback();
-				throw new ProductosException(e);
-			} finally {
+				ConflictoVersionException conflicto = new ConflictoVersionException(producto.getCodigo(), version, actual);
+				Metricas.fallo(operacion, conflicto);
+				throw conflicto;
+			}
+			con.commit();
+			producto.setVersion(version > 0 ? version + 1 : 0);
+		} catch (SQLException e) {
+			Metricas.fallo(operacion, e);
+			if (con != null) {
+				con.rollback();
+			}
+			throw new ProductosException(e);
+		} finally {
+			m.close();
+			if (con != null) {
 				con.close();
-			}			
-		} else {			
-			throw new ProductosException("Los datos introducidos están incompletos");
+			}
 		}
 	}
 	
@@ -172,24 +857,245 @@ public class DAOProducto extends DAOBase {
 	 */
 	public static void borrarProducto(Producto producto) throws SQLException, ProductosException {
 		if (producto != null && !StringUtils.isBlank(producto.getCodigo())) {			
-			String sql = "DELETE FROM " + TABLA +" WHERE codigo = ?";
+			Medicion m = Metricas.medir("dao.borrarProducto");
 			Connection con = null;
 			try {
 				con = getConexion();
 				con.setAutoCommit(false);
-				PreparedStatement ps = con.prepareStatement(sql);
-				ps.setString(1, producto.getCodigo());
-				ps.executeUpdate();
+				try (PreparedStatement ps = con.prepareStatement(SQL_BORRAR)) {
+					ps.setString(1, producto.getCodigo());
+					ps.executeUpdate();
+				}
 				con.commit();
 			} catch (SQLException e) {
-				con.rollback();
+				Metricas.fallo("dao.borrarProducto", e);
+				if (con != null) {
+					con.rollback();
+				}
 				throw new ProductosException(e);
 			} finally {
-				con.close();
+				m.close();
+				if (con != null) {
+					con.close();
+				}
 			}
 		}
 		
 	}
 	
 	
+	/**
+	 * Este método añade varios productos usando lotes JDBC.
+	 * @param productos los productos a añadir
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 */
+	public static ResultadoLote anadirProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		return ejecutarLote("dao.anadirProductos", SQL_ANADIR, productos, opciones, false, DAOProducto::parametrosConImagenes);
+	}
+	
+	/**
+	 * Este método modifica varios productos usando lotes JDBC.
+	 * Los productos con versión solo se modifican si la fila sigue teniendo esa versión, como en
+	 * {@link #modificarProducto(Producto)}; si no, su fila queda como fallida.
+	 * @param productos los productos a modificar
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 */
+	public static ResultadoLote modificarProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		return ejecutarLote("dao.modificarProductos", SQL_MODIFICAR_LOTE, productos, opciones, true, (ps, producto) -> {
+			parametrosConImagenes(ps, producto);
+			ps.setLong(7, producto.getVersion());
+		});
+	}
+	
+	/**
+	 * Este método añade o modifica varios productos según exista ya su código, usando lotes JDBC.
+	 * Las imágenes nulas borran las guardadas salvo que se indique {@link OpcionesLote#setConservarImagenes(boolean)}.
+	 * Un producto con versión que ya existe solo se modifica si la fila sigue teniendo esa versión;
+	 * si no, su fila queda como fallida.
+	 * @param productos los productos a guardar
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 */
+	public static ResultadoLote guardarProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		String sql = opciones != null && opciones.isConservarImagenes() ? SQL_GUARDAR_CONSERVANDO_IMAGENES : SQL_GUARDAR;
+		return ejecutarLote("dao.guardarProductos", sql, productos, opciones, true, (ps, producto) -> {
+			parametrosConImagenes(ps, producto);
+			for (int i = 1; i <= PARAMETROS_VERSION_GUARDAR; i++) {
+				ps.setLong(6 + i, producto.getVersion());
+			}
+		});
+	}
+	
+	/**
+	 * Este método elimina varios productos usando lotes JDBC.
+	 * @param productos los productos a eliminar
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 */
+	public static ResultadoLote borrarProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		return ejecutarLote("dao.borrarProductos", SQL_BORRAR, productos, opciones, false, (ps, producto) -> ps.setString(1, producto.getCodigo()));
+	}
+	
+	/**
+	 * Interfaz funcional para asignar los parámetros de una fila del lote.
+	 */
+	@FunctionalInterface
+	private static interface ParametrosFila {
+		void asignar(PreparedStatement ps, Producto producto) throws SQLException, ProductosException;
+	}
+	
+	/**
+	 * Prepara la miniatura del producto y asigna todos sus parámetros.
+	 */
+	private static void parametrosConImagenes(PreparedStatement ps, Producto producto) throws SQLException, ProductosException {
+		Miniaturas.prepararProducto(producto);
+		parametrosCompletos(ps, producto);
+	}
+	
+	/**
+	 * Asigna los parámetros nombre, precio, imagen, miniatura, disponible y código, en ese orden.
+	 */
+	private static void parametrosCompletos(PreparedStatement ps, Producto producto) throws SQLException {
+		ps.setString(1, producto.getNombre());
+		ps.setDouble(2, producto.getPrecio());
+		ps.setBytes(3, producto.getImagen());
+		ps.setBytes(4, producto.getMiniatura());
+		ps.setBoolean(5, producto.isDisponible());
+		ps.setString(6, producto.getCodigo());
+	}
+	
+	/**
+	 * Ejecuta una sentencia en lotes sobre una colección de productos.
+	 * <p>
+	 * Las filas sin código se marcan como fallidas sin enviarse. Si un lote falla y se confirma
+	 * por lotes, solo se deshace ese lote y se sigue con el siguiente; si todo va en una única
+	 * transacción, se deshace todo y las filas restantes se marcan como deshechas sin enviarse.
+	 * Si la sentencia comprueba la versión, las filas con versión que no cambian nada se marcan
+	 * como fallidas por conflicto. El resultado tiene siempre una fila por producto, en el orden
+	 * de la colección.
+	 * </p>
+	 */
+	private static ResultadoLote ejecutarLote(String operacion, String sql, Collection<Producto> productos, OpcionesLote opciones,
+			boolean conVersion, ParametrosFila parametros) throws ProductosException {
+		OpcionesLote opc = opciones != null ? opciones : new OpcionesLote();
+		long inicio = System.nanoTime();
+		ResultadoLote resultado = new ResultadoLote(productos.size());
+		List<ResultadoLote.Fila> pendientes = new ArrayList<>(opc.getTamanoLote());
+		List<ResultadoLote.Fila> aplicadas = new ArrayList<>();
+		
+		Medicion m = Metricas.medir(operacion);
+		try (Connection con = getConexion();
+				PreparedStatement ps = con.prepareStatement(sql)) {
+			con.setAutoCommit(false);
+			boolean abortado = false;
+			Iterator<Producto> it = productos.iterator();
+			while (it.hasNext() && !abortado) {
+				Producto producto = it.next();
+				ResultadoLote.Fila fila = resultado.anadir(producto);
+				if (producto == null || StringUtils.isBlank(producto.getCodigo())) {
+					fila.setEstado(ResultadoLote.Estado.FALLIDO, "Los datos introducidos están incompletos");
+					continue;
+				}
+				try {
+					parametros.asignar(ps, producto);
+				} catch (ProductosException e) {
+					fila.setEstado(ResultadoLote.Estado.FALLIDO, e.getMessage());
+					continue;
+				}
+				ps.addBatch();
+				pendientes.add(fila);
+				if (pendientes.size() >= opc.getTamanoLote() || !it.hasNext()) {
+					abortado = !enviarLote(con, ps, pendientes, aplicadas, opc.isCommitPorLote(), conVersion);
+				}
+			}
+			if (!pendientes.isEmpty() && !abortado) {
+				abortado = !enviarLote(con, ps, pendientes, aplicadas, opc.isCommitPorLote(), conVersion);
+			}
+			// LAS FILAS QUE QUEDAN TRAS UN LOTE FALLIDO NO SE ENVÍAN, PERO TAMBIÉN TIENEN RESULTADO
+			while (it.hasNext()) {
+				resultado.anadir(it.next()).setEstado(ResultadoLote.Estado.DESHECHO, "No se ha enviado por un error en un lote anterior");
+			}
+			if (!opc.isCommitPorLote()) {
+				if (abortado) {
+					con.rollback();
+					for (ResultadoLote.Fila fila : aplicadas) {
+						fila.setEstado(ResultadoLote.Estado.DESHECHO, null);
+					}
+				} else {
+					con.commit();
+				}
+			}
+		} catch (SQLException e) {
+			throw error(operacion, e);
+		} finally {
+			m.close();
+		}
+		if (resultado.getFilas().size() != productos.size()) {
+			throw new IllegalStateException("El resultado del lote tiene " + resultado.getFilas().size()
+					+ " filas para " + productos.size() + " productos");
+		}
+		resultado.setDuracionNanos(System.nanoTime() - inicio);
+		return resultado;
+	}
+	
+	/**
+	 * Envía el lote pendiente y anota el estado de sus filas.
+	 * @return false si el lote ha fallado
+	 */
+	private static boolean enviarLote(Connection con, PreparedStatement ps, List<ResultadoLote.Fila> pendientes,
+			List<ResultadoLote.Fila> aplicadas, boolean commitPorLote, boolean conVersion) throws SQLException {
+		int[] cuentas;
+		String error = null;
+		try {
+			cuentas = ps.executeBatch();
+		} catch (BatchUpdateException e) {
+			cuentas = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+			error = e.getMessage();
+		}
+		// SI EL DRIVER SE DETIENE EN EL ERROR, LA FILA QUE FALLA ES LA ÚLTIMA DE LAS CUENTAS SI VIENE
+		// MARCADA COMO FALLIDA, O SI NO LA SIGUIENTE; LAS POSTERIORES NO LLEGARON A EJECUTARSE
+		int fallida = cuentas.length > 0 && cuentas[cuentas.length - 1] == Statement.EXECUTE_FAILED
+				? cuentas.length - 1 : cuentas.length;
+		for (int i = 0; i < pendientes.size(); i++) {
+			ResultadoLote.Fila fila = pendientes.get(i);
+			if (i < cuentas.length ? cuentas[i] == Statement.EXECUTE_FAILED : i == fallida) {
+				fila.setEstado(ResultadoLote.Estado.FALLIDO, error);
+			} else if (i >= cuentas.length) {
+				fila.setEstado(ResultadoLote.Estado.DESHECHO, "No se ha ejecutado por un error en otra fila del lote");
+			} else if (cuentas[i] == 0 && conVersion && fila.getProducto().getVersion() > 0) {
+				// LA VERSIÓN SIEMPRE SE INCREMENTA: SI NO CAMBIA NADA, OTRO USUARIO HA CAMBIADO O BORRADO LA FILA
+				fila.setEstado(ResultadoLote.Estado.FALLIDO,
+						"Otro usuario ha modificado o eliminado el producto " + fila.getProducto().getCodigo() + " desde que se leyó");
+			} else {
+				fila.setEstado(cuentas[i] == 0 ? ResultadoLote.Estado.SIN_CAMBIOS : ResultadoLote.Estado.CORRECTO, null);
+				aplicadas.add(fila);
+			}
+		}
+		pendientes.clear();
+		ps.clearBatch();
+		
+		if (error == null) {
+			if (commitPorLote) {
+				con.commit();
+				aplicadas.clear();
+			}
+			return true;
+		}
+		if (commitPorLote) {
+			con.rollback();
+			for (ResultadoLote.Fila fila : aplicadas) {
+				fila.setEstado(ResultadoLote.Estado.DESHECHO, null);
+			}
+			aplicadas.clear();
+			return true;
+		}
+		return false;
+	}
+	
 }
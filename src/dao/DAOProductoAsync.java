@@ -0,0 +1,151 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import excepciones.ProductosException;
+import model.Producto;
+import utilities.Hilos;
+
+/**
+ * Versión asíncrona de {@link DAOProducto}, a través de la caché de {@link DAOProductoCacheado}.
+ * 
+ * <p>
+ * Cada operación se ejecuta en un hilo en segundo plano y devuelve un {@link CompletableFuture}.
+ * Los errores llegan envueltos en una {@link CompletionException} cuya causa es la
+ * {@link ProductosException} o {@link SQLException} original. Para volver al hilo de JavaFX
+ * basta con encadenar las etapas con <code>Platform::runLater</code> como ejecutor.
+ * </p>
+ */
+public class DAOProductoAsync {
+	
+	private static final ExecutorService EJECUTOR = Hilos.ejecutorPorTarea("dao-producto");
+	
+	private DAOProductoAsync() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Interfaz funcional para una operación del DAO que devuelve un valor.
+	 */
+	@FunctionalInterface
+	public static interface Operacion<T> {
+		/**
+		 * Ejecuta la operación.
+		 * 
+		 * @return el resultado de la operación
+		 * @throws ProductosException si ocurre un error en la operación
+		 * @throws SQLException si ocurre un error al acceder a la base de datos
+		 */
+		T ejecutar() throws ProductosException, SQLException;
+	}
+	
+	/**
+	 * Ejecuta una operación de acceso a datos en segundo plano.
+	 * 
+	 * @param operacion la operación a ejecutar
+	 * @return el futuro con el resultado de la operación
+	 */
+	public static <T> CompletableFuture<T> ejecutar(Operacion<T> operacion) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return operacion.ejecutar();
+			} catch (ProductosException | SQLException e) {
+				throw new CompletionException(e);
+			}
+		}, EJECUTOR);
+	}
+	
+	/**
+	 * Obtiene en segundo plano todos los productos.
+	 * 
+	 * @return el futuro con la lista de productos
+	 * @see DAOProductoCacheado#getProductos()
+	 */
+	public static CompletableFuture<List<Producto>> getProductos() {
+		return ejecutar(DAOProductoCacheado::getProductos);
+	}
+	
+	/**
+	 * Obtiene en segundo plano un producto.
+	 * 
+	 * @param codigo el código del producto
+	 * @return el futuro con el producto, o con null si no existe
+	 * @see DAOProductoCacheado#getProducto(String)
+	 */
+	public static CompletableFuture<Producto> getProducto(String codigo) {
+		return ejecutar(() -> DAOProductoCacheado.getProducto(codigo));
+	}
+	
+	/**
+	 * Busca en segundo plano los productos que cumplen unos criterios. La búsqueda no pasa por
+	 * la caché: se filtra y ordena siempre en la base de datos.
+	 *
+	 * @param criterios los criterios de búsqueda
+	 * @return el futuro con la lista de productos encontrados
+	 * @see DAOProducto#buscarProductos(CriteriosBusqueda)
+	 */
+	public static CompletableFuture<List<Producto>> buscarProductos(CriteriosBusqueda criterios) {
+		return ejecutar(() -> DAOProducto.buscarProductos(criterios));
+	}
+
+	/**
+	 * Añade en segundo plano un producto.
+	 * 
+	 * @param producto el producto a añadir
+	 * @return el futuro que se completa al terminar
+	 * @see DAOProductoCacheado#anadirProducto(Producto)
+	 */
+	public static CompletableFuture<Void> anadirProducto(Producto producto) {
+		return ejecutar(() -> {
+			DAOProductoCacheado.anadirProducto(producto);
+			return null;
+		});
+	}
+	
+	/**
+	 * Modifica en segundo plano un producto.
+	 * 
+	 * @param producto el producto a modificar
+	 * @return el futuro que se completa al terminar
+	 * @see DAOProductoCacheado#modificarProducto(Producto)
+	 */
+	public static CompletableFuture<Void> modificarProducto(Producto producto) {
+		return ejecutar(() -> {
+			DAOProductoCacheado.modificarProducto(producto);
+			return null;
+		});
+	}
+	
+	/**
+	 * Modifica en segundo plano solo las columnas que han cambiado de un producto.
+	 * 
+	 * @param anterior el producto tal como se leyó
+	 * @param producto el producto modificado
+	 * @return el futuro que se completa al terminar
+	 * @see DAOProductoCacheado#modificarProducto(Producto, Producto)
+	 */
+	public static CompletableFuture<Void> modificarProducto(Producto anterior, Producto producto) {
+		return ejecutar(() -> {
+			DAOProductoCacheado.modificarProducto(anterior, producto);
+			return null;
+		});
+	}
+	
+	/**
+	 * Elimina en segundo plano un producto.
+	 * 
+	 * @param producto el producto a eliminar
+	 * @return el futuro que se completa al terminar
+	 * @see DAOProductoCacheado#borrarProducto(Producto)
+	 */
+	public static CompletableFuture<Void> borrarProducto(Producto producto) {
+		return ejecutar(() -> {
+			DAOProductoCacheado.borrarProducto(producto);
+			return null;
+		});
+	}
+}
@@ -0,0 +1,262 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import excepciones.ProductosException;
+import model.Producto;
+import utilities.CacheLRU;
+import utilities.Configuracion;
+import utilities.EstadisticasCache;
+
+/**
+ * Caché de escritura directa delante de {@link DAOProducto}.
+ * 
+ * <p>
+ * Los productos consultados por código y el listado completo se guardan en memoria durante
+ * el tiempo configurado (<code>cache.ttl</code> y <code>cache.ttlListado</code>). Las
+ * escrituras se hacen siempre en la base de datos y, si terminan bien, actualizan o invalidan
+ * la caché. Los productos devueltos son compartidos: no deben modificarse.
+ * </p>
+ */
+public class DAOProductoCacheado {
+	
+	private static final String CLAVE_LISTADO = "*";
+	
+	private static final CacheLRU<String, Producto> PRODUCTOS = new CacheLRU<>(
+			Configuracion.getInt("cache.tamano", 1000), 
+			Configuracion.getLong("cache.ttl", 60_000));
+	
+	private static final CacheLRU<String, List<Producto>> LISTADO = new CacheLRU<>(
+			1, 
+			Configuracion.getLong("cache.ttlListado", 10_000));
+	
+	/**
+	 * Se incrementa en cada escritura para no guardar un listado leído antes de ella.
+	 */
+	private static final AtomicLong GENERACION = new AtomicLong();
+	
+	private DAOProductoCacheado() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Devuelve todos los productos, desde la caché si el listado sigue vigente.
+	 * @return una nueva lista con los productos ordenados por código
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 * @see DAOProducto#getProductos()
+	 */
+	public static List<Producto> getProductos() throws ProductosException {
+		List<Producto> productos = LISTADO.get(CLAVE_LISTADO);
+		if (productos == null) {
+			long generacion = GENERACION.get();
+			productos = DAOProducto.getProductos();
+			synchronized (GENERACION) {
+				if (generacion == GENERACION.get()) {
+					LISTADO.put(CLAVE_LISTADO, productos);
+				}
+			}
+		}
+		return new ArrayList<>(productos);
+	}
+	
+	/**
+	 * Devuelve un producto, desde la caché si está.
+	 * @param codigo el código del producto
+	 * @return el producto, o null si no existe
+	 * @throws ProductosException si ocurre un error al recuperar el producto
+	 * @see DAOProducto#getProducto(String)
+	 */
+	public static Producto getProducto(String codigo) throws ProductosException {
+		if (codigo == null) {
+			return null;
+		}
+		Producto producto = PRODUCTOS.get(codigo);
+		if (producto == null) {
+			long generacion = GENERACION.get();
+			producto = DAOProducto.getProducto(codigo);
+			synchronized (GENERACION) {
+				if (generacion == GENERACION.get()) {
+					PRODUCTOS.put(codigo, producto);
+				}
+			}
+		}
+		return producto;
+	}
+	
+	/**
+	 * Añade un producto y lo guarda en la caché.
+	 * @param producto el producto a añadir
+	 * @throws ProductosException si ocurre un error al añadir el producto
+	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 * @see DAOProducto#anadirProducto(Producto)
+	 */
+	public static void anadirProducto(Producto producto) throws ProductosException, SQLException {
+		DAOProducto.anadirProducto(producto);
+		escrito(producto.getCodigo(), producto);
+	}
+	
+	/**
+	 * Modifica un producto y actualiza la caché.
+	 * @param producto el producto a modificar
+	 * @throws ProductosException si ocurre un error al modificar el producto
+	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 * @see DAOProducto#modificarProducto(Producto)
+	 */
+	public static void modificarProducto(Producto producto) throws ProductosException, SQLException {
+		try {
+			DAOProducto.modificarProducto(producto);
+			escrito(producto.getCodigo(), producto);
+		} catch (ProductosException | SQLException e) {
+			invalidar(producto != null ? producto.getCodigo() : null);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Modifica solo las columnas que han cambiado de un producto y actualiza la caché.
+	 * @param anterior el producto tal como se leyó
+	 * @param producto el producto modificado
+	 * @throws ProductosException si ocurre un error al modificar el producto o ha cambiado desde que se leyó
+	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 * @see DAOProducto#modificarProducto(Producto, Producto)
+	 */
+	public static void modificarProducto(Producto anterior, Producto producto) throws ProductosException, SQLException {
+		try {
+			DAOProducto.modificarProducto(anterior, producto);
+			escrito(producto.getCodigo(), producto);
+		} catch (ProductosException | SQLException e) {
+			invalidar(producto != null ? producto.getCodigo() : null);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Elimina un producto y lo quita de la caché.
+	 * @param producto el producto a eliminar
+	 * @throws SQLException si ocurre un error al acceder a la base de datos
+	 * @throws ProductosException si ocurre un error al eliminar el producto
+	 * @see DAOProducto#borrarProducto(Producto)
+	 */
+	public static void borrarProducto(Producto producto) throws SQLException, ProductosException {
+		DAOProducto.borrarProducto(producto);
+		invalidar(producto != null ? producto.getCodigo() : null);
+	}
+	
+	/**
+	 * Añade o modifica varios productos e invalida sus entradas en la caché.
+	 * @param productos los productos a guardar
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 * @see DAOProducto#guardarProductos(Collection, OpcionesLote)
+	 */
+	public static ResultadoLote guardarProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		try {
+			return DAOProducto.guardarProductos(productos, opciones);
+		} finally {
+			invalidar(productos);
+		}
+	}
+	
+	/**
+	 * Elimina varios productos e invalida sus entradas en la caché.
+	 * @param productos los productos a eliminar
+	 * @param opciones el tamaño de lote y el modo de transacción
+	 * @return el resultado de cada fila
+	 * @throws ProductosException si no se puede obtener la conexión
+	 * @see DAOProducto#borrarProductos(Collection, OpcionesLote)
+	 */
+	public static ResultadoLote borrarProductos(Collection<Producto> productos, OpcionesLote opciones) throws ProductosException {
+		try {
+			return DAOProducto.borrarProductos(productos, opciones);
+		} finally {
+			invalidar(productos);
+		}
+	}
+	
+	/**
+	 * Invalida un producto y el listado.
+	 * @param codigo el código del producto, o null para invalidar solo el listado
+	 */
+	public static void invalidar(String codigo) {
+		escrito(codigo, null);
+	}
+	
+	/**
+	 * Invalida varios productos y el listado.
+	 * @param productos los productos a invalidar
+	 */
+	public static void invalidar(Collection<Producto> productos) {
+		synchronized (GENERACION) {
+			GENERACION.incrementAndGet();
+			for (Producto producto : productos) {
+				if (producto != null && producto.getCodigo() != null) {
+					PRODUCTOS.invalidar(producto.getCodigo());
+				}
+			}
+			LISTADO.invalidarTodo();
+		}
+	}
+	
+	/**
+	 * Invalida los productos cambiados desde otros clientes y el listado.
+	 * @param cambios los cambios leídos del registro de cambios
+	 * @see SincronizadorProductos
+	 */
+	public static void invalidar(CambiosProductos cambios) {
+		synchronized (GENERACION) {
+			GENERACION.incrementAndGet();
+			for (Producto producto : cambios.getModificados()) {
+				PRODUCTOS.invalidar(producto.getCodigo());
+			}
+			for (String codigo : cambios.getBorrados()) {
+				PRODUCTOS.invalidar(codigo);
+			}
+			LISTADO.invalidarTodo();
+		}
+	}
+	
+	/**
+	 * Vacía la caché por completo.
+	 */
+	public static void invalidarTodo() {
+		synchronized (GENERACION) {
+			GENERACION.incrementAndGet();
+			PRODUCTOS.invalidarTodo();
+			LISTADO.invalidarTodo();
+		}
+	}
+	
+	/**
+	 * Obtiene las estadísticas de la caché de productos por código.
+	 * @return las estadísticas de la caché
+	 */
+	public static EstadisticasCache getEstadisticasProductos() {
+		return PRODUCTOS.getEstadisticas();
+	}
+	
+	/**
+	 * Obtiene las estadísticas de la caché del listado.
+	 * @return las estadísticas de la caché
+	 */
+	public static EstadisticasCache getEstadisticasListado() {
+		return LISTADO.getEstadisticas();
+	}
+	
+	/**
+	 * Registra una escritura: invalida el listado y actualiza (o invalida, si es null) el producto.
+	 */
+	private static void escrito(String codigo, Producto producto) {
+		synchronized (GENERACION) {
+			GENERACION.incrementAndGet();
+			if (codigo != null) {
+				PRODUCTOS.put(codigo, producto);
+			}
+			LISTADO.invalidarTodo();
+		}
+	}
+}
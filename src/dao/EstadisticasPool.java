@@ -0,0 +1,141 @@
+package dao;
+
+/**
+ * Instantánea de las estadísticas de un {@link PoolConexiones}.
+ */
+public class EstadisticasPool {
+
+	private final int activas;
+	private final int inactivas;
+	private final int enEspera;
+	private final long prestamos;
+	private final long timeouts;
+	private final long esperaTotalNanos;
+	private final long esperaMaximaNanos;
+	private final long statementsReutilizados;
+	private final long statementsPreparados;
+	private final long statementsExpulsados;
+
+	EstadisticasPool(int activas, int inactivas, int enEspera, long prestamos, long timeouts,
+			long esperaTotalNanos, long esperaMaximaNanos,
+			long statementsReutilizados, long statementsPreparados, long statementsExpulsados) {
+		this.activas = activas;
+		this.inactivas = inactivas;
+		this.enEspera = enEspera;
+		this.prestamos = prestamos;
+		this.timeouts = timeouts;
+		this.esperaTotalNanos = esperaTotalNanos;
+		this.esperaMaximaNanos = esperaMaximaNanos;
+		this.statementsReutilizados = statementsReutilizados;
+		this.statementsPreparados = statementsPreparados;
+		this.statementsExpulsados = statementsExpulsados;
+	}
+
+	/**
+	 * Obtiene el número de conexiones prestadas en este momento.
+	 * 
+	 * @return las conexiones activas
+	 */
+	public int getActivas() {
+		return activas;
+	}
+
+	/**
+	 * Obtiene el número de conexiones abiertas y ociosas en el pool.
+	 * 
+	 * @return las conexiones inactivas
+	 */
+	public int getInactivas() {
+		return inactivas;
+	}
+
+	/**
+	 * Obtiene el número aproximado de hilos esperando una conexión.
+	 * 
+	 * @return los hilos en espera
+	 */
+	public int getEnEspera() {
+		return enEspera;
+	}
+
+	/**
+	 * Obtiene el número total de conexiones prestadas desde que se creó el pool.
+	 * 
+	 * @return los préstamos realizados
+	 */
+	public long getPrestamos() {
+		return prestamos;
+	}
+
+	/**
+	 * Obtiene el número de peticiones que agotaron el tiempo de espera.
+	 * 
+	 * @return los timeouts
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Obtiene el tiempo medio de espera para obtener una conexión.
+	 * 
+	 * @return la espera media en milisegundos
+	 */
+	public double getEsperaMediaMs() {
+		return prestamos == 0 ? 0 : esperaTotalNanos / 1_000_000.0 / prestamos;
+	}
+
+	/**
+	 * Obtiene el tiempo máximo de espera para obtener una conexión.
+	 * 
+	 * @return la espera máxima en milisegundos
+	 */
+	public double getEsperaMaximaMs() {
+		return esperaMaximaNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Obtiene el número de PreparedStatement reutilizados de la caché de las conexiones.
+	 * 
+	 * @return los aciertos de la caché de statements
+	 */
+	public long getStatementsReutilizados() {
+		return statementsReutilizados;
+	}
+
+	/**
+	 * Obtiene el número de PreparedStatement preparados y guardados en la caché de las conexiones.
+	 * 
+	 * @return los fallos de la caché de statements
+	 */
+	public long getStatementsPreparados() {
+		return statementsPreparados;
+	}
+
+	/**
+	 * Obtiene el número de PreparedStatement cerrados para dejar sitio en la caché.
+	 * 
+	 * @return los statements expulsados
+	 */
+	public long getStatementsExpulsados() {
+		return statementsExpulsados;
+	}
+
+	/**
+	 * Obtiene la proporción de PreparedStatement que se han reutilizado.
+	 * 
+	 * @return la tasa de aciertos, entre 0 y 1
+	 */
+	public double getTasaAciertosStatements() {
+		long total = statementsReutilizados + statementsPreparados;
+		return total == 0 ? 0 : (double) statementsReutilizados / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("activas=%d, inactivas=%d, en espera=%d, préstamos=%d, timeouts=%d, espera media=%.3f ms, espera máxima=%.3f ms, "
+				+ "statements reutilizados=%d, preparados=%d, expulsados=%d (aciertos %.1f%%)",
+				activas, inactivas, enEspera, prestamos, timeouts, getEsperaMediaMs(), getEsperaMaximaMs(),
+				statementsReutilizados, statementsPreparados, statementsExpulsados, getTasaAciertosStatements() * 100);
+	}
+}
@@ -0,0 +1,89 @@
+package dao;
+
+import utilities.Configuracion;
+
+/**
+ * Opciones de las operaciones masivas de {@link DAOProducto}.
+ */
+public class OpcionesLote {
+
+	/**
+	 * Tamaño de lote por defecto, configurable con <code>lote.tamano</code>.
+	 */
+	public static final int TAMANO_LOTE = Configuracion.getInt("lote.tamano", 500);
+
+	private int tamanoLote = TAMANO_LOTE;
+	private boolean commitPorLote;
+	private boolean conservarImagenes;
+
+	/**
+	 * Constructor por defecto: lotes de {@link #TAMANO_LOTE} filas en una única transacción.
+	 */
+	public OpcionesLote() {
+	}
+
+	/**
+	 * Obtiene el número de filas que se envían en cada lote.
+	 * 
+	 * @return el tamaño del lote
+	 */
+	public int getTamanoLote() {
+		return tamanoLote;
+	}
+
+	/**
+	 * Establece el número de filas que se envían en cada lote.
+	 * 
+	 * @param tamanoLote el tamaño del lote, mayor que cero
+	 * @return la instancia actual de las opciones
+	 */
+	public OpcionesLote setTamanoLote(int tamanoLote) {
+		if (tamanoLote < 1) {
+			throw new IllegalArgumentException("El tamaño de lote debe ser mayor que cero");
+		}
+		this.tamanoLote = tamanoLote;
+		return this;
+	}
+
+	/**
+	 * Indica si se confirma la transacción al terminar cada lote.
+	 * 
+	 * @return true si se confirma cada lote, false si todo va en una única transacción
+	 */
+	public boolean isCommitPorLote() {
+		return commitPorLote;
+	}
+
+	/**
+	 * Establece si se confirma la transacción al terminar cada lote. Si es así, un lote fallido
+	 * solo deshace sus propias filas; si no, deshace la operación completa.
+	 * 
+	 * @param commitPorLote true para confirmar cada lote
+	 * @return la instancia actual de las opciones
+	 */
+	public OpcionesLote setCommitPorLote(boolean commitPorLote) {
+		this.commitPorLote = commitPorLote;
+		return this;
+	}
+
+	/**
+	 * Indica si al guardar productos existentes se conservan sus imágenes cuando la fila no trae.
+	 * 
+	 * @return true si las imágenes nulas no sobrescriben las guardadas
+	 */
+	public boolean isConservarImagenes() {
+		return conservarImagenes;
+	}
+
+	/**
+	 * Establece si al guardar productos existentes se conservan sus imágenes cuando la fila no
+	 * trae. Solo afecta a {@link DAOProducto#guardarProductos}.
+	 * 
+	 * @param conservarImagenes true para no borrar las imágenes guardadas con valores nulos
+	 * @return la instancia actual de las opciones
+	 */
+	public OpcionesLote setConservarImagenes(boolean conservarImagenes) {
+		this.conservarImagenes = conservarImagenes;
+		return this;
+	}
+}
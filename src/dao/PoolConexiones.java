@@ -0,0 +1,485 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool acotado de conexiones a la base de datos.
+ *
+ * <p>
+ * Mantiene entre <code>minimo</code> y <code>maximo</code> conexiones físicas abiertas.
+ * Las conexiones prestadas se devuelven al pool al llamar a {@link Connection#close()};
+ * en ese momento se cierran los statements que hayan quedado abiertos, se deshacen los
+ * cambios sin confirmar y se restaura el autocommit. Las conexiones se validan al
+ * prestarse y las que superan el tiempo de inactividad se cierran periódicamente.
+ * </p>
+ *
+ * <p>
+ * Cada conexión física guarda además una caché LRU de sus PreparedStatement, indexada por el
+ * SQL. Al preparar una sentencia ya preparada en esa conexión se reutiliza la existente, y al
+ * cerrarla se limpian sus parámetros y se devuelve a la caché en lugar de cerrarse. Con
+ * <code>useServerPrepStmts</code> en la URL, MariaDB no vuelve a analizar la sentencia.
+ * </p>
+ */
+public class PoolConexiones {
+
+	private final String url;
+	private final int minimo;
+	private final int maximo;
+	private final long inactividadMaxima;
+	private final long esperaMaxima;
+	private final int timeoutValidacion;
+	private final int statementsPorConexion;
+
+	private final Semaphore permisos;
+	private final ConcurrentLinkedDeque<ConexionFisica> inactivas = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger abiertas = new AtomicInteger();
+	private final ScheduledExecutorService limpiador;
+
+	private final AtomicLong prestamos = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong esperaTotalNanos = new AtomicLong();
+	private final AtomicLong esperaMaximaNanos = new AtomicLong();
+	private final AtomicLong statementsReutilizados = new AtomicLong();
+	private final AtomicLong statementsPreparados = new AtomicLong();
+	private final AtomicLong statementsExpulsados = new AtomicLong();
+
+	private volatile boolean cerrado;
+
+	/**
+	 * Crea el pool. Las conexiones mínimas se abren en segundo plano para no bloquear al llamante.
+	 *
+	 * @param url la URL JDBC de la base de datos
+	 * @param minimo número de conexiones que se mantienen abiertas aunque estén ociosas
+	 * @param maximo número máximo de conexiones prestadas a la vez
+	 * @param inactividadMaxima milisegundos que puede estar ociosa una conexión por encima del mínimo
+	 * @param esperaMaxima milisegundos máximos de espera para obtener una conexión
+	 * @param timeoutValidacion segundos para validar una conexión al prestarla
+	 * @param statementsPorConexion PreparedStatement que se guardan por conexión física; 0 para no guardarlos
+	 */
+	public PoolConexiones(String url, int minimo, int maximo, long inactividadMaxima, long esperaMaxima, int timeoutValidacion,
+			int statementsPorConexion) {
+		if (maximo < 1 || minimo < 0 || minimo > maximo) {
+			throw new IllegalArgumentException("Tamaño de pool incorrecto: mínimo " + minimo + ", máximo " + maximo);
+		}
+		this.url = url;
+		this.minimo = minimo;
+		this.maximo = maximo;
+		this.inactividadMaxima = inactividadMaxima;
+		this.esperaMaxima = esperaMaxima;
+		this.timeoutValidacion = timeoutValidacion;
+		this.statementsPorConexion = Math.max(0, statementsPorConexion);
+		this.permisos = new Semaphore(maximo, true);
+
+		this.limpiador = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread hilo = new Thread(r, "pool-conexiones-limpiador");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		long periodo = Math.max(1000, inactividadMaxima / 2);
+		limpiador.execute(this::rellenarMinimo);
+		limpiador.scheduleWithFixedDelay(this::expulsarInactivas, periodo, periodo, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Obtiene una conexión del pool, esperando como máximo el tiempo configurado.
+	 *
+	 * @return una conexión que vuelve al pool al cerrarla
+	 * @throws SQLException si no se puede abrir la conexión o se agota el tiempo de espera
+	 */
+	public Connection obtener() throws SQLException {
+		if (cerrado) {
+			throw new SQLException("El pool de conexiones está cerrado");
+		}
+		long inicio = System.nanoTime();
+		try {
+			if (!permisos.tryAcquire(esperaMaxima, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLTimeoutException("No se ha obtenido una conexión en " + esperaMaxima + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrumpido esperando una conexión", e);
+		}
+		registrarEspera(System.nanoTime() - inicio);
+
+		try {
+			ConexionFisica fisica;
+			while ((fisica = inactivas.pollFirst()) != null) {
+				if (fisica.conexion.isValid(timeoutValidacion)) {
+					break;
+				}
+				cerrarFisica(fisica);
+			}
+			if (fisica == null) {
+				fisica = abrirFisica();
+			}
+			prestamos.incrementAndGet();
+			return envolver(fisica);
+		} catch (SQLException | RuntimeException e) {
+			permisos.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Devuelve las estadísticas actuales del pool.
+	 *
+	 * @return una instantánea de las estadísticas
+	 */
+	public EstadisticasPool getEstadisticas() {
+		int ociosas = inactivas.size();
+		return new EstadisticasPool(
+				maximo - permisos.availablePermits(),
+				ociosas,
+				permisos.getQueueLength(),
+				prestamos.get(),
+				timeouts.get(),
+				esperaTotalNanos.get(),
+				esperaMaximaNanos.get(),
+				statementsReutilizados.get(),
+				statementsPreparados.get(),
+				statementsExpulsados.get());
+	}
+
+	/**
+	 * Cierra todas las conexiones ociosas y rechaza nuevos préstamos.
+	 * Las conexiones prestadas se cierran al devolverse.
+	 */
+	public void cerrar() {
+		cerrado = true;
+		limpiador.shutdownNow();
+		ConexionFisica fisica;
+		while ((fisica = inactivas.pollFirst()) != null) {
+			cerrarFisica(fisica);
+		}
+	}
+
+	private ConexionFisica abrirFisica() throws SQLException {
+		Connection con = DriverManager.getConnection(url);
+		abiertas.incrementAndGet();
+		return new ConexionFisica(con);
+	}
+
+	private void cerrarFisica(ConexionFisica fisica) {
+		abiertas.decrementAndGet();
+		// LOS STATEMENTS SE CIERRAN CON LA CONEXIÓN
+		fisica.cache.clear();
+		try {
+			fisica.conexion.close();
+		} catch (SQLException e) {/*LA CONEXIÓN SE DESCARTA IGUALMENTE*/}
+	}
+
+	private void devolver(ConexionFisica fisica, List<Statement> statements, List<StatementPrestado> prestados) {
+		boolean valida = true;
+		for (Statement st : statements) {
+			try {
+				st.close();
+			} catch (SQLException e) {/*SE CIERRA IGUALMENTE*/}
+		}
+		// LOS STATEMENTS DE LA CACHÉ QUE NO SE CERRARON VUELVEN A ELLA
+		for (StatementPrestado prestado : prestados) {
+			prestado.cerrar();
+		}
+		try {
+			if (!fisica.conexion.getAutoCommit()) {
+				fisica.conexion.rollback();
+				fisica.conexion.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			valida = false;
+		}
+		if (valida && !cerrado) {
+			fisica.ultimoUso = System.currentTimeMillis();
+			inactivas.offerFirst(fisica);
+		} else {
+			cerrarFisica(fisica);
+		}
+		permisos.release();
+	}
+
+	private void rellenarMinimo() {
+		try {
+			while (!cerrado && abiertas.get() < minimo) {
+				ConexionFisica fisica = abrirFisica();
+				fisica.ultimoUso = System.currentTimeMillis();
+				inactivas.offerLast(fisica);
+			}
+		} catch (SQLException e) {/*SE REINTENTARÁ EN LA SIGUIENTE PASADA*/}
+	}
+
+	private void expulsarInactivas() {
+		long limite = System.currentTimeMillis() - inactividadMaxima;
+		Iterator<ConexionFisica> it = inactivas.descendingIterator();
+		while (it.hasNext() && abiertas.get() > minimo) {
+			ConexionFisica fisica = it.next();
+			if (fisica.ultimoUso < limite && inactivas.remove(fisica)) {
+				cerrarFisica(fisica);
+			}
+		}
+		rellenarMinimo();
+	}
+
+	private void registrarEspera(long nanos) {
+		esperaTotalNanos.addAndGet(nanos);
+		esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	private Connection envolver(ConexionFisica fisica) {
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class },
+				new ConexionPrestada(fisica));
+	}
+
+	/**
+	 * Conexión física abierta contra la base de datos.
+	 */
+	private static class ConexionFisica {
+		private final Connection conexion;
+		private final LinkedHashMap<String, StatementCacheado> cache = new LinkedHashMap<>(16, 0.75f, true);
+		private volatile long ultimoUso;
+
+		private ConexionFisica(Connection conexion) {
+			this.conexion = conexion;
+		}
+	}
+
+	/**
+	 * PreparedStatement guardado en la caché de una conexión física. Solo lo usa quien tiene
+	 * prestada la conexión, por lo que no necesita sincronización.
+	 */
+	private static class StatementCacheado {
+		private final PreparedStatement statement;
+		private final int fetchSizeInicial;
+		private boolean enUso;
+		private boolean expulsado;
+
+		private StatementCacheado(PreparedStatement statement) throws SQLException {
+			this.statement = statement;
+			this.fetchSizeInicial = statement.getFetchSize();
+		}
+
+		private void cerrar() {
+			try {
+				statement.close();
+			} catch (SQLException e) {/*SE DESCARTA IGUALMENTE*/}
+		}
+	}
+
+	/**
+	 * Obtiene un PreparedStatement de la caché de la conexión o lo prepara y lo guarda.
+	 *
+	 * @return el statement prestado, o null si no se puede guardar porque el mismo SQL ya está en uso
+	 */
+	private StatementCacheado tomarStatement(ConexionFisica fisica, String clave, Method method, Object[] args) throws Throwable {
+		StatementCacheado cacheado = fisica.cache.get(clave);
+		if (cacheado != null) {
+			if (cacheado.enUso) {
+				return null;
+			}
+			statementsReutilizados.incrementAndGet();
+			cacheado.enUso = true;
+			return cacheado;
+		}
+		statementsPreparados.incrementAndGet();
+		cacheado = new StatementCacheado((PreparedStatement) invocar(fisica.conexion, method, args));
+		cacheado.enUso = true;
+		fisica.cache.put(clave, cacheado);
+		Iterator<StatementCacheado> it = fisica.cache.values().iterator();
+		while (fisica.cache.size() > statementsPorConexion && it.hasNext()) {
+			StatementCacheado antiguo = it.next();
+			it.remove();
+			statementsExpulsados.incrementAndGet();
+			// SI EL EXPULSADO ESTÁ EN USO, SE CIERRA CUANDO LO CIERRE QUIEN LO TIENE
+			if (antiguo.enUso) {
+				antiguo.expulsado = true;
+			} else {
+				antiguo.cerrar();
+			}
+		}
+		return cacheado;
+	}
+
+	/**
+	 * Clave de la caché: el SQL y, si se indican, el tipo y la concurrencia del ResultSet.
+	 *
+	 * @return la clave, o null si el método no es un prepareStatement que se pueda guardar
+	 */
+	private static String claveStatement(Method method, Object[] args) {
+		if (!"prepareStatement".equals(method.getName()) || args == null || !(args[0] instanceof String)) {
+			return null;
+		}
+		if (args.length == 1) {
+			return ResultSet.TYPE_FORWARD_ONLY + ":" + ResultSet.CONCUR_READ_ONLY + ":" + args[0];
+		}
+		if (args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer) {
+			return args[1] + ":" + args[2] + ":" + args[0];
+		}
+		return null;
+	}
+
+	private static Object invocar(Object destino, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(destino, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Manejador de la conexión que recibe el DAO: delega en la conexión física,
+	 * registra los statements creados y devuelve la conexión al pool al cerrarla.
+	 */
+	private class ConexionPrestada implements InvocationHandler {
+		private final ConexionFisica fisica;
+		private final List<Statement> statements = new ArrayList<>();
+		private final List<StatementPrestado> prestados = new ArrayList<>();
+		private boolean devuelta;
+
+		private ConexionPrestada(ConexionFisica fisica) {
+			this.fisica = fisica;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!devuelta) {
+					devuelta = true;
+					devolver(fisica, statements, prestados);
+				}
+				return null;
+			case "isClosed":
+				return devuelta || fisica.conexion.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "ConexionPrestada[" + fisica.conexion + "]";
+			default:
+				break;
+			}
+			if (devuelta) {
+				throw new SQLException("La conexión ya se ha devuelto al pool");
+			}
+			String clave = statementsPorConexion > 0 ? claveStatement(method, args) : null;
+			if (clave != null) {
+				StatementCacheado cacheado = tomarStatement(fisica, clave, method, args);
+				if (cacheado != null) {
+					StatementPrestado prestado = new StatementPrestado(fisica, cacheado, (Connection) proxy);
+					prestados.add(prestado);
+					return Proxy.newProxyInstance(
+							PreparedStatement.class.getClassLoader(),
+							new Class<?>[] { PreparedStatement.class },
+							prestado);
+				}
+			}
+			Object resultado = invocar(fisica.conexion, method, args);
+			if (resultado instanceof Statement) {
+				statements.add((Statement) resultado);
+			}
+			return resultado;
+		}
+	}
+
+	/**
+	 * Manejador del PreparedStatement de la caché que recibe el DAO: al cerrarlo cierra sus
+	 * ResultSet, limpia los parámetros y lo devuelve a la caché de la conexión.
+	 */
+	private class StatementPrestado implements InvocationHandler {
+		private final ConexionFisica fisica;
+		private final StatementCacheado cacheado;
+		private final Connection conexion;
+		private final List<ResultSet> resultados = new ArrayList<>(1);
+		private boolean cerrado;
+
+		private StatementPrestado(ConexionFisica fisica, StatementCacheado cacheado, Connection conexion) {
+			this.fisica = fisica;
+			this.cacheado = cacheado;
+			this.conexion = conexion;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				cerrar();
+				return null;
+			case "isClosed":
+				return cerrado;
+			case "getConnection":
+				return conexion;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "StatementPrestado[" + cacheado.statement + "]";
+			default:
+				break;
+			}
+			if (cerrado) {
+				throw new SQLException("El statement ya está cerrado");
+			}
+			Object resultado = invocar(cacheado.statement, method, args);
+			if (resultado instanceof ResultSet) {
+				resultados.add((ResultSet) resultado);
+			}
+			return resultado;
+		}
+
+		private void cerrar() {
+			if (cerrado) {
+				return;
+			}
+			cerrado = true;
+			boolean reutilizable = !cacheado.expulsado;
+			for (ResultSet rs : resultados) {
+				try {
+					rs.close();
+				} catch (SQLException e) {/*SE CIERRA IGUALMENTE*/}
+			}
+			resultados.clear();
+			if (reutilizable) {
+				try {
+					cacheado.statement.clearParameters();
+					cacheado.statement.clearBatch();
+					cacheado.statement.clearWarnings();
+					// EL SIGUIENTE USO PUEDE NO FIJAR EL TAMAÑO DE BLOQUE, COMO getProductos TRAS recorrerFilas
+					if (cacheado.statement.getFetchSize() != cacheado.fetchSizeInicial) {
+						cacheado.statement.setFetchSize(cacheado.fetchSizeInicial);
+					}
+				} catch (SQLException e) {
+					reutilizable = false;
+				}
+			}
+			cacheado.enUso = false;
+			if (!reutilizable) {
+				cacheado.cerrar();
+				fisica.cache.values().remove(cacheado);
+			}
+		}
+	}
+}
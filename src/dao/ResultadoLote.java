@@ -0,0 +1,144 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Producto;
+
+/**
+ * Resultado de una operación masiva de {@link DAOProducto}, con el estado de cada fila.
+ */
+public class ResultadoLote {
+
+	/**
+	 * Estado final de una fila de la operación.
+	 */
+	public static enum Estado {
+		/** La fila se ha aplicado y confirmado. */
+		CORRECTO,
+		/** La sentencia no ha afectado a ninguna fila (por ejemplo, el código no existe). */
+		SIN_CAMBIOS,
+		/** La fila ha producido un error. */
+		FALLIDO,
+		/** La fila no ha fallado, pero su transacción se ha deshecho o no se ha llegado a enviar. */
+		DESHECHO
+	}
+
+	/**
+	 * Resultado de una fila de la operación.
+	 */
+	public static class Fila {
+		private final Producto producto;
+		private Estado estado;
+		private String mensaje;
+
+		Fila(Producto producto) {
+			this.producto = producto;
+			this.estado = Estado.DESHECHO;
+		}
+
+		/**
+		 * Obtiene el producto de la fila.
+		 * 
+		 * @return el producto
+		 */
+		public Producto getProducto() {
+			return producto;
+		}
+
+		/**
+		 * Obtiene el estado final de la fila.
+		 * 
+		 * @return el estado
+		 */
+		public Estado getEstado() {
+			return estado;
+		}
+
+		/**
+		 * Obtiene el mensaje de error de la fila, si lo hay.
+		 * 
+		 * @return el mensaje o null
+		 */
+		public String getMensaje() {
+			return mensaje;
+		}
+
+		void setEstado(Estado estado, String mensaje) {
+			this.estado = estado;
+			this.mensaje = mensaje;
+		}
+	}
+
+	private final List<Fila> filas;
+	private long duracionNanos;
+
+	ResultadoLote(int capacidad) {
+		this.filas = new ArrayList<>(capacidad);
+	}
+
+	Fila anadir(Producto producto) {
+		Fila fila = new Fila(producto);
+		filas.add(fila);
+		return fila;
+	}
+
+	void setDuracionNanos(long duracionNanos) {
+		this.duracionNanos = duracionNanos;
+	}
+
+	/**
+	 * Obtiene los resultados de cada fila, en el mismo orden que la colección de entrada.
+	 * 
+	 * @return la lista inmodificable de filas
+	 */
+	public List<Fila> getFilas() {
+		return Collections.unmodifiableList(filas);
+	}
+
+	/**
+	 * Obtiene el número de filas con un estado concreto.
+	 * 
+	 * @param estado el estado a contar
+	 * @return el número de filas
+	 */
+	public int contar(Estado estado) {
+		int total = 0;
+		for (Fila fila : filas) {
+			if (fila.estado == estado) {
+				total++;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Indica si todas las filas se han aplicado sin errores.
+	 * 
+	 * @return true si ninguna fila ha fallado ni se ha deshecho
+	 */
+	public boolean isCorrecto() {
+		return contar(Estado.FALLIDO) == 0 && contar(Estado.DESHECHO) == 0;
+	}
+
+	/**
+	 * Obtiene la duración total de la operación.
+	 * 
+	 * @return la duración en milisegundos
+	 */
+	public double getDuracionMs() {
+		return duracionNanos / 1_000_000.0;
+	}
+
+	@Override
+	public String toString() {
+		Map<Estado, Integer> resumen = new EnumMap<>(Estado.class);
+		for (Estado estado : Estado.values()) {
+			resumen.put(estado, contar(estado));
+		}
+		return String.format("%d filas en %.1f ms %s", filas.size(), getDuracionMs(), resumen);
+	}
+}
@@ -0,0 +1,199 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import excepciones.ProductosException;
+import metricas.Metricas;
+import utilities.Configuracion;
+import utilities.Hilos;
+
+/**
+ * Sondea en segundo plano el registro de cambios de la base de datos y entrega a un destino
+ * solo los productos cambiados desde la última consulta, para mantener al día un listado ya
+ * cargado sin volver a leer la tabla entera.
+ *
+ * <p>
+ * El intervalo entre consultas se configura con <code>sincronizacion.intervalo</code> (en
+ * milisegundos) y las filas leídas por consulta con <code>sincronizacion.lote</code>. Antes de
+ * entregar los cambios se invalidan en {@link DAOProductoCacheado}. Si una consulta falla, la
+ * espera hasta la siguiente se duplica en cada fallo seguido, hasta
+ * <code>sincronizacion.esperaMaxima</code> milisegundos.
+ * </p>
+ *
+ * <p>
+ * Los identificadores del registro se asignan al insertar, pero las transacciones pueden
+ * confirmarse en otro orden: si entre dos identificadores leídos falta alguno, se vuelve a pedir
+ * en las siguientes consultas durante <code>sincronizacion.esperaHuecos</code> milisegundos. Los
+ * huecos que no aparecen en ese tiempo son de transacciones deshechas.
+ * </p>
+ *
+ * <p>
+ * Por la misma razón, al leer la marca inicial puede haber transacciones sin confirmar con un
+ * identificador menor. Por eso la primera consulta empieza <code>sincronizacion.margenInicial</code>
+ * identificadores antes de la marca: los cambios que ya estaban en el listado se vuelven a
+ * entregar con el estado actual del producto, y los que faltan se tratan como huecos.
+ * </p>
+ */
+public class SincronizadorProductos {
+
+	/**
+	 * Milisegundos entre consultas, configurable con <code>sincronizacion.intervalo</code>.
+	 */
+	public static final long INTERVALO = Configuracion.getLong("sincronizacion.intervalo", 2_000);
+
+	private static final int LOTE = Configuracion.getInt("sincronizacion.lote", 500);
+	private static final long ESPERA_HUECOS = Configuracion.getLong("sincronizacion.esperaHuecos", 60_000);
+	private static final long ESPERA_MAXIMA = Math.max(INTERVALO, Configuracion.getLong("sincronizacion.esperaMaxima", 60_000));
+	private static final long MARGEN_INICIAL = Math.max(0, Configuracion.getLong("sincronizacion.margenInicial", 100));
+	private static final int MAX_HUECOS_CONSULTA = 100;
+	private static final int MAX_HUECOS = 10_000;
+
+	private final Consumer<CambiosProductos> destino;
+	private final Executor ejecutorDestino;
+	private final ScheduledExecutorService planificador;
+
+	/*
+	 * ESTADO DE LAS CONSULTAS: SOLO LO MODIFICA EL HILO DEL PLANIFICADOR
+	 */
+	private volatile long marca;
+	private volatile long marcaSegura;
+	private final TreeMap<Long, Long> huecos = new TreeMap<>();
+	private int fallosSeguidos;
+
+	/**
+	 * Crea un sincronizador detenido.
+	 *
+	 * @param marca la marca del registro obtenida con {@link DAOProducto#getMarcaCambios()}
+	 *              antes de cargar el listado
+	 * @param destino quien aplica los cambios
+	 * @param ejecutorDestino el ejecutor en el que se llama al destino, por ejemplo
+	 *                        <code>Platform::runLater</code>
+	 */
+	public SincronizadorProductos(long marca, Consumer<CambiosProductos> destino, Executor ejecutorDestino) {
+		// SE EMPIEZA ANTES DE LA MARCA PARA NO PERDER LAS TRANSACCIONES QUE AÚN NO SE HABÍAN CONFIRMADO
+		this.marca = Math.max(0, marca - MARGEN_INICIAL);
+		this.marcaSegura = this.marca;
+		this.destino = destino;
+		this.ejecutorDestino = ejecutorDestino;
+		this.planificador = Executors.newSingleThreadScheduledExecutor(Hilos.factoriaDaemon("sincronizacion"));
+	}
+
+	/**
+	 * Empieza a consultar los cambios cada {@link #INTERVALO} milisegundos.
+	 */
+	public void iniciar() {
+		planificador.schedule(this::sondearYProgramar, INTERVALO, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Deja de consultar los cambios. No se puede volver a iniciar.
+	 */
+	public void detener() {
+		planificador.shutdownNow();
+	}
+
+	/**
+	 * Consulta los cambios una vez, sin esperar al siguiente intervalo.
+	 */
+	public void sondearAhora() {
+		planificador.execute(this::sondear);
+	}
+
+	/**
+	 * Consulta los cambios y programa la siguiente consulta, más tarde si las últimas han fallado.
+	 */
+	private void sondearYProgramar() {
+		sondear();
+		if (!planificador.isShutdown()) {
+			long espera = Math.min(INTERVALO << Math.min(fallosSeguidos, 16), ESPERA_MAXIMA);
+			planificador.schedule(this::sondearYProgramar, espera, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void sondear() {
+		try {
+			CambiosProductos cambios;
+			do {
+				cambios = DAOProducto.getCambios(marca, huecosPendientes(), LOTE);
+				anotarHuecos(cambios);
+				marca = cambios.getMarca();
+				marcaSegura = huecos.isEmpty() ? marca : huecos.firstKey() - 1;
+				if (!cambios.isVacio()) {
+					DAOProductoCacheado.invalidar(cambios);
+					CambiosProductos entregados = cambios;
+					ejecutorDestino.execute(() -> destino.accept(entregados));
+				}
+			} while (!cambios.isCompleto() && !Thread.currentThread().isInterrupted());
+			fallosSeguidos = 0;
+		} catch (ProductosException | RuntimeException e) {
+			// SIN CONEXIÓN SE REINTENTA MÁS TARDE; UNA EXCEPCIÓN SIN CAPTURAR DETENDRÍA LAS CONSULTAS
+			Metricas.fallo("sincronizacion.sondear", e);
+			fallosSeguidos++;
+		}
+	}
+
+	/**
+	 * Descarta los huecos caducados y devuelve los más antiguos de los que quedan.
+	 */
+	private List<Long> huecosPendientes() {
+		long limite = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ESPERA_HUECOS);
+		huecos.values().removeIf(detectado -> detectado - limite < 0);
+		List<Long> pendientes = new ArrayList<>(Math.min(huecos.size(), MAX_HUECOS_CONSULTA));
+		Iterator<Long> it = huecos.keySet().iterator();
+		while (it.hasNext() && pendientes.size() < MAX_HUECOS_CONSULTA) {
+			pendientes.add(it.next());
+		}
+		return pendientes;
+	}
+
+	/**
+	 * Quita de los huecos los identificadores recibidos y añade los que faltan entre la marca
+	 * anterior y los nuevos.
+	 */
+	private void anotarHuecos(CambiosProductos cambios) {
+		long ahora = System.nanoTime();
+		long anterior = marca;
+		for (long id : cambios.getIds()) {
+			if (id <= marca) {
+				huecos.remove(id);
+				continue;
+			}
+			for (long falta = anterior + 1; falta < id && huecos.size() < MAX_HUECOS; falta++) {
+				huecos.put(falta, ahora);
+			}
+			anterior = id;
+		}
+	}
+
+	/**
+	 * Obtiene la marca hasta la que se han leído los cambios.
+	 *
+	 * @return la marca
+	 */
+	public long getMarca() {
+		return marca;
+	}
+
+	/**
+	 * Obtiene la marca desde la que se puede volver a sincronizar sin perder cambios: la anterior
+	 * al primer identificador que falta, o la marca si no falta ninguno.
+	 *
+	 * @return la marca segura, menor o igual que {@link #getMarca()}
+	 */
+	public long getMarcaSegura() {
+		return marcaSegura;
+	}
+
+	@Override
+	public String toString() {
+		return "SincronizadorProductos [marca=" + marca + "]";
+	}
+}
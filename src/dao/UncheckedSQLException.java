@@ -0,0 +1,25 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * Envuelve una {@link SQLException} producida mientras se recorre un Stream de resultados.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+	private static final long serialVersionUID = -4113805240826934727L;
+
+	/**
+	 * Constructor de la excepción con causa.
+	 * 
+	 * @param cause la excepción SQL original
+	 */
+	public UncheckedSQLException(SQLException cause) {
+		super(cause);
+	}
+
+	@Override
+	public synchronized SQLException getCause() {
+		return (SQLException) super.getCause();
+	}
+}
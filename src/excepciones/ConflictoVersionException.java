@@ -0,0 +1,66 @@
+package excepciones;
+
+/**
+ * Excepción que indica que otro usuario ha modificado o eliminado un producto después de que
+ * se leyera, de modo que la modificación no se ha aplicado.
+ */
+public class ConflictoVersionException extends ProductosException {
+
+	private static final long serialVersionUID = -3528174640958213907L;
+
+	private final String codigo;
+	private final long versionEsperada;
+	private final long versionActual;
+
+	/**
+	 * Constructor de la excepción.
+	 *
+	 * @param codigo el código del producto
+	 * @param versionEsperada la versión con la que se leyó el producto
+	 * @param versionActual la versión que tiene ahora, o 0 si ya no existe
+	 */
+	public ConflictoVersionException(String codigo, long versionEsperada, long versionActual) {
+		super(versionActual > 0
+				? "Otro usuario ha modificado el producto " + codigo + " mientras lo editaba"
+				: "Otro usuario ha eliminado el producto " + codigo + " mientras lo editaba");
+		this.codigo = codigo;
+		this.versionEsperada = versionEsperada;
+		this.versionActual = versionActual;
+	}
+
+	/**
+	 * Obtiene el código del producto.
+	 *
+	 * @return el código del producto
+	 */
+	public String getCodigo() {
+		return codigo;
+	}
+
+	/**
+	 * Obtiene la versión con la que se leyó el producto.
+	 *
+	 * @return la versión esperada
+	 */
+	public long getVersionEsperada() {
+		return versionEsperada;
+	}
+
+	/**
+	 * Obtiene la versión que tiene el producto en la base de datos.
+	 *
+	 * @return la versión actual, o 0 si el producto ya no existe
+	 */
+	public long getVersionActual() {
+		return versionActual;
+	}
+
+	/**
+	 * Indica si el producto se ha eliminado.
+	 *
+	 * @return true si el producto ya no existe
+	 */
+	public boolean isBorrado() {
+		return versionActual <= 0;
+	}
+}
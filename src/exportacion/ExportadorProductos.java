@@ -0,0 +1,343 @@
+package exportacion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Locale;
+
+import dao.DAOProducto;
+import excepciones.ProductosException;
+import utilities.Configuracion;
+import utilities.Json;
+
+/**
+ * Exporta el catálogo de productos a CSV, JSON-lines o {@link FormatoBinario}.
+ *
+ * <p>
+ * Las filas se leen con un cursor de solo avance ({@link DAOProducto#recorrerFilas}) y se
+ * escriben en un {@link FileChannel} a través de un único buffer, sin crear un objeto por
+ * producto. Las imágenes, si se piden, se copian desde el flujo del ResultSet: en binario tal
+ * cual y en texto en Base64 (columna <code>imagen_base64</code>). El fichero se escribe con
+ * un nombre temporal y se renombra al terminar, para que nunca quede a medias.
+ * </p>
+ *
+ * <p>
+ * Uso sin interfaz: <code>java exportacion.ExportadorProductos destino [--formato csv|jsonl|binario] [--imagenes]</code>.
+ * </p>
+ */
+public class ExportadorProductos {
+
+	/**
+	 * Tamaño del buffer de escritura, configurable con <code>exportacion.buffer</code>.
+	 */
+	public static final int TAMANO_BUFFER = Configuracion.getInt("exportacion.buffer", 256 * 1024);
+
+	/**
+	 * Formato del fichero exportado.
+	 */
+	public static enum Formato {
+		/** Valores separados por comas con cabecera. */
+		CSV,
+		/** Un objeto JSON por línea. */
+		JSONL,
+		/** Formato binario con prefijos de longitud, ver {@link FormatoBinario}. */
+		BINARIO;
+
+		/**
+		 * Deduce el formato por la extensión del fichero.
+		 *
+		 * @param fichero el fichero
+		 * @return {@link #JSONL} para <code>.jsonl</code>, <code>.ndjson</code> y <code>.json</code>,
+		 *         {@link #BINARIO} para <code>.prdx</code> y <code>.bin</code>; {@link #CSV} en otro caso
+		 */
+		public static Formato deFichero(Path fichero) {
+			String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+			if (nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") || nombre.endsWith(".json")) {
+				return JSONL;
+			}
+			return nombre.endsWith(".prdx") || nombre.endsWith(".bin") ? BINARIO : CSV;
+		}
+	}
+
+	/**
+	 * Resumen de una exportación.
+	 */
+	public static class Resumen {
+		private final long filas;
+		private final long bytes;
+		private final long duracionNanos;
+
+		private Resumen(long filas, long bytes, long duracionNanos) {
+			this.filas = filas;
+			this.bytes = bytes;
+			this.duracionNanos = duracionNanos;
+		}
+
+		/**
+		 * Obtiene el número de productos exportados.
+		 *
+		 * @return las filas
+		 */
+		public long getFilas() {
+			return filas;
+		}
+
+		/**
+		 * Obtiene el tamaño del fichero exportado.
+		 *
+		 * @return los bytes escritos
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Obtiene la duración de la exportación.
+		 *
+		 * @return la duración en segundos
+		 */
+		public double getDuracionSegundos() {
+			return duracionNanos / 1_000_000_000.0;
+		}
+
+		/**
+		 * Obtiene el rendimiento medio de la exportación.
+		 *
+		 * @return las filas por segundo
+		 */
+		public double getFilasPorSegundo() {
+			double segundos = getDuracionSegundos();
+			return segundos > 0 ? filas / segundos : 0;
+		}
+
+		@Override
+		public String toString() {
+			double segundos = getDuracionSegundos();
+			return String.format(Locale.ROOT, "%d productos exportados (%.1f MB) en %.1f s (%.0f filas/s, %.1f MB/s)",
+					filas, bytes / 1_048_576.0, segundos, getFilasPorSegundo(), segundos > 0 ? bytes / 1_048_576.0 / segundos : 0);
+		}
+	}
+
+	private final Formato formato;
+	private final boolean conImagenes;
+
+	/**
+	 * Crea un exportador.
+	 *
+	 * @param formato el formato del fichero
+	 * @param conImagenes true para incluir las imágenes
+	 */
+	public ExportadorProductos(Formato formato, boolean conImagenes) {
+		this.formato = formato;
+		this.conImagenes = conImagenes;
+	}
+
+	/**
+	 * Exporta todos los productos, ordenados por código.
+	 *
+	 * @param destino el fichero de destino; si existe se reemplaza al terminar
+	 * @return el resumen de la exportación
+	 * @throws ProductosException si ocurre un error al leer los productos o al escribir el fichero
+	 */
+	public Resumen exportar(Path destino) throws ProductosException {
+		long inicio = System.nanoTime();
+		Path absoluto = destino.toAbsolutePath();
+		Path temporal = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+		long filas;
+		long bytes;
+		try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			SalidaCanal salida = new SalidaCanal(canal, TAMANO_BUFFER);
+			switch (formato) {
+			case CSV:
+				filas = exportarCsv(salida);
+				break;
+			case JSONL:
+				filas = exportarJsonl(salida);
+				break;
+			default:
+				filas = exportarBinario(salida);
+			}
+			salida.close();
+			bytes = salida.getEscritos();
+			canal.force(false);
+		} catch (IOException | ProductosException e) {
+			try {
+				Files.deleteIfExists(temporal);
+			} catch (IOException ex) {
+				e.addSuppressed(ex);
+			}
+			throw e instanceof ProductosException ? (ProductosException) e : new ProductosException(e);
+		}
+		try {
+			Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new ProductosException(e);
+		}
+		return new Resumen(filas, bytes, System.nanoTime() - inicio);
+	}
+
+	private long exportarCsv(SalidaCanal salida) throws ProductosException, IOException {
+		salida.escribirTexto(conImagenes ? "codigo,nombre,precio,disponible,imagen_base64\n" : "codigo,nombre,precio,disponible\n");
+		StringBuilder sb = new StringBuilder(128);
+		return DAOProducto.recorrerFilas(conImagenes, rs -> {
+			sb.setLength(0);
+			campoCsv(sb, rs.getString("codigo")).append(',');
+			campoCsv(sb, rs.getString("nombre")).append(',');
+			sb.append(rs.getDouble("precio")).append(',');
+			sb.append(rs.getBoolean("disponible") ? '1' : '0');
+			if (conImagenes) {
+				sb.append(',');
+			}
+			salida.escribirTexto(sb);
+			if (conImagenes) {
+				copiarBase64(rs, salida);
+			}
+			salida.write('\n');
+		});
+	}
+
+	private long exportarJsonl(SalidaCanal salida) throws ProductosException, IOException {
+		StringBuilder sb = new StringBuilder(160);
+		return DAOProducto.recorrerFilas(conImagenes, rs -> {
+			sb.setLength(0);
+			Json.cadena(sb.append("{\"codigo\":"), rs.getString("codigo"));
+			Json.cadena(sb.append(",\"nombre\":"), rs.getString("nombre"));
+			sb.append(",\"precio\":").append(rs.getDouble("precio"));
+			sb.append(",\"disponible\":").append(rs.getBoolean("disponible"));
+			if (conImagenes) {
+				sb.append(",\"imagen_base64\":");
+				if (rs.getObject("longitud_imagen") == null) {
+					sb.append("null");
+					salida.escribirTexto(sb);
+				} else {
+					salida.escribirTexto(sb.append('"'));
+					copiarBase64(rs, salida);
+					salida.write('"');
+				}
+				salida.write('}');
+			} else {
+				salida.escribirTexto(sb.append('}'));
+			}
+			salida.write('\n');
+		});
+	}
+
+	private long exportarBinario(SalidaCanal salida) throws ProductosException, IOException {
+		short indicadores = (short) (FormatoBinario.CON_VERSIONES | (conImagenes ? FormatoBinario.CON_IMAGENES : 0));
+		FormatoBinario.escribirCabecera(salida, indicadores, System.currentTimeMillis());
+		long filas = DAOProducto.recorrerFilas(conImagenes, rs -> {
+			salida.write(FormatoBinario.REGISTRO);
+			FormatoBinario.escribirTexto(salida, rs.getString("codigo"));
+			FormatoBinario.escribirTexto(salida, rs.getString("nombre"));
+			salida.escribirDouble(rs.getDouble("precio"));
+			salida.write(rs.getBoolean("disponible") ? 1 : 0);
+			salida.escribirLong(rs.getLong("version"));
+			if (conImagenes) {
+				long longitud = rs.getLong("longitud_imagen");
+				if (rs.wasNull()) {
+					salida.escribirInt(-1);
+				} else {
+					salida.escribirInt((int) longitud);
+					try (InputStream imagen = rs.getBinaryStream("imagen")) {
+						if (salida.copiar(imagen) != longitud) {
+							throw new IOException("La imagen de " + rs.getString("codigo") + " no tiene la longitud esperada");
+						}
+					}
+				}
+			}
+		});
+		FormatoBinario.escribirFin(salida, filas);
+		return filas;
+	}
+
+	/**
+	 * Copia la imagen de la fila actual en Base64, sin cargarla entera en memoria.
+	 */
+	private static void copiarBase64(ResultSet rs, SalidaCanal salida) throws SQLException, IOException {
+		try (InputStream imagen = rs.getBinaryStream("imagen")) {
+			if (imagen == null) {
+				return;
+			}
+			// EL CODIFICADOR CIERRA EL FLUJO QUE ENVUELVE AL TERMINAR, PERO LA SALIDA DEBE SEGUIR ABIERTA
+			OutputStream sinCerrar = new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					salida.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					salida.write(b, off, len);
+				}
+			};
+			try (OutputStream base64 = Base64.getEncoder().wrap(sinCerrar)) {
+				imagen.transferTo(base64);
+			}
+		}
+	}
+
+	private static StringBuilder campoCsv(StringBuilder sb, String valor) {
+		if (valor == null) {
+			return sb;
+		}
+		boolean comillas = false;
+		for (int i = 0; i < valor.length() && !comillas; i++) {
+			char c = valor.charAt(i);
+			comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!comillas) {
+			return sb.append(valor);
+		}
+		sb.append('"');
+		for (int i = 0; i < valor.length(); i++) {
+			char c = valor.charAt(i);
+			if (c == '"') {
+				sb.append('"');
+			}
+			sb.append(c);
+		}
+		return sb.append('"');
+	}
+
+	/**
+	 * Punto de entrada para exportar sin interfaz, por ejemplo desde una tarea programada.
+	 *
+	 * @param args el fichero de destino y, opcionalmente, <code>--formato</code> e <code>--imagenes</code>
+	 */
+	public static void main(String[] args) {
+		Path destino = null;
+		Formato formato = null;
+		boolean imagenes = false;
+		for (int i = 0; i < args.length; i++) {
+			if ("--formato".equals(args[i]) && i + 1 < args.length) {
+				formato = Formato.valueOf(args[++i].toUpperCase(Locale.ROOT));
+			} else if ("--imagenes".equals(args[i])) {
+				imagenes = true;
+			} else {
+				destino = Paths.get(args[i]);
+			}
+		}
+		if (destino == null) {
+			System.err.println("Uso: java exportacion.ExportadorProductos destino [--formato csv|jsonl|binario] [--imagenes]");
+			System.exit(2);
+		}
+		try {
+			Resumen resumen = new ExportadorProductos(formato != null ? formato : Formato.deFichero(destino), imagenes).exportar(destino);
+			System.out.println(resumen);
+			System.exit(0);
+		} catch (ProductosException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
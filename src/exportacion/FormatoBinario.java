@@ -0,0 +1,235 @@
+package exportacion;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import excepciones.ProductosException;
+import model.Producto;
+
+/**
+ * Formato binario compacto del catálogo de productos.
+ *
+ * <p>
+ * Todos los números son big-endian. El fichero empieza con una cabecera de 16 bytes:
+ * </p>
+ * <ul>
+ * <li>4 bytes: la firma <code>PRDX</code>.</li>
+ * <li>2 bytes: la versión del formato, {@link #VERSION}.</li>
+ * <li>2 bytes: indicadores; {@link #CON_IMAGENES} si los registros incluyen la imagen y
+ * {@link #CON_VERSIONES} si incluyen la versión de la fila.</li>
+ * <li>8 bytes: la marca de agua; en las exportaciones, el instante de la exportación en
+ * milisegundos, y en la instantánea local ({@link InstantaneaProductos}), el último cambio de
+ * <code>productos_cambios</code> incluido.</li>
+ * </ul>
+ * <p>
+ * Cada registro empieza con el byte {@link #REGISTRO} y sigue con el código y el nombre (2 bytes
+ * de longitud y sus bytes en UTF-8), el precio (double), la disponibilidad (1 byte), con
+ * versiones la versión (long) y, con imágenes, la longitud de la imagen (int, -1 si no tiene) y
+ * sus bytes. El fichero termina con el byte {@link #FIN} y el número de registros (long).
+ * </p>
+ * <p>
+ * La versión 1 del formato no tenía el indicador {@link #CON_VERSIONES}; sus ficheros se
+ * siguen pudiendo leer.
+ * </p>
+ */
+public class FormatoBinario {
+
+	/** Firma del fichero. */
+	public static final int FIRMA = 0x50524458; // "PRDX"
+	/** Versión actual del formato. */
+	public static final short VERSION = 2;
+	/** Indicador de registros con imagen. */
+	public static final short CON_IMAGENES = 0x1;
+	/** Indicador de registros con la versión de la fila. */
+	public static final short CON_VERSIONES = 0x2;
+	/** Tamaño de la cabecera en bytes. */
+	public static final int TAMANO_CABECERA = 16;
+	/** Byte que precede a cada registro. */
+	public static final byte REGISTRO = 1;
+	/** Byte que marca el final de los registros. */
+	public static final byte FIN = 0;
+
+	private FormatoBinario() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+
+	/**
+	 * Cabecera de un fichero en formato binario.
+	 */
+	public static class Cabecera {
+		private final short version;
+		private final short indicadores;
+		private final long marcaDeAgua;
+
+		Cabecera(short version, short indicadores, long marcaDeAgua) {
+			this.version = version;
+			this.indicadores = indicadores;
+			this.marcaDeAgua = marcaDeAgua;
+		}
+
+		/**
+		 * Obtiene la versión del formato.
+		 *
+		 * @return la versión
+		 */
+		public short getVersion() {
+			return version;
+		}
+
+		/**
+		 * Indica si los registros incluyen la imagen.
+		 *
+		 * @return true si hay imágenes
+		 */
+		public boolean isConImagenes() {
+			return (indicadores & CON_IMAGENES) != 0;
+		}
+
+		/**
+		 * Indica si los registros incluyen la versión de la fila.
+		 *
+		 * @return true si hay versiones
+		 */
+		public boolean isConVersiones() {
+			return (indicadores & CON_VERSIONES) != 0;
+		}
+
+		/**
+		 * Obtiene la marca de agua del fichero.
+		 *
+		 * @return el instante de la exportación en milisegundos, o en la instantánea local el
+		 *         último cambio incluido
+		 */
+		public long getMarcaDeAgua() {
+			return marcaDeAgua;
+		}
+	}
+
+	/**
+	 * Lee la cabecera desde la posición actual del buffer.
+	 *
+	 * @param buffer el buffer, por ejemplo un fichero proyectado en memoria
+	 * @return la cabecera
+	 * @throws ProductosException si no es un fichero en este formato o su versión no está soportada
+	 */
+	public static Cabecera leerCabecera(ByteBuffer buffer) throws ProductosException {
+		if (buffer.remaining() < TAMANO_CABECERA || buffer.getInt() != FIRMA) {
+			throw new ProductosException("El fichero no tiene el formato binario de productos");
+		}
+		short version = buffer.getShort();
+		if (version > VERSION) {
+			throw new ProductosException("Versión del formato binario no soportada: " + version);
+		}
+		return new Cabecera(version, buffer.getShort(), buffer.getLong());
+	}
+
+	/**
+	 * Lee el siguiente registro desde la posición actual del buffer.
+	 *
+	 * @param buffer el buffer, posicionado al principio de un registro
+	 * @param cabecera la cabecera del fichero
+	 * @return el producto, o null si se ha llegado al final de los registros
+	 * @throws ProductosException si el registro está incompleto o dañado
+	 */
+	public static Producto leerRegistro(ByteBuffer buffer, Cabecera cabecera) throws ProductosException {
+		try {
+			byte tipo = buffer.get();
+			if (tipo == FIN) {
+				return null;
+			}
+			if (tipo != REGISTRO) {
+				throw new ProductosException("Registro dañado en la posición " + (buffer.position() - 1));
+			}
+			Producto producto = new Producto()
+					.setCodigo(leerTexto(buffer))
+					.setNombre(leerTexto(buffer))
+					.setPrecio(buffer.getDouble())
+					.setDisponible(buffer.get() != 0);
+			if (cabecera.isConVersiones()) {
+				producto.setVersion(buffer.getLong());
+			}
+			if (cabecera.isConImagenes()) {
+				int longitud = buffer.getInt();
+				if (longitud >= 0) {
+					// SE COMPRUEBA LA LONGITUD ANTES DE RESERVAR, PARA QUE UN FICHERO DAÑADO NO AGOTE LA MEMORIA
+					comprobarRestantes(buffer, longitud);
+					byte[] imagen = new byte[longitud];
+					buffer.get(imagen);
+					producto.setImagen(imagen);
+				}
+			}
+			return producto;
+		} catch (BufferUnderflowException e) {
+			throw new ProductosException("Fichero binario incompleto", e);
+		}
+	}
+
+	private static void comprobarRestantes(ByteBuffer buffer, int longitud) {
+		if (longitud > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+	}
+
+	private static String leerTexto(ByteBuffer buffer) {
+		int longitud = buffer.getShort() & 0xFFFF;
+		comprobarRestantes(buffer, longitud);
+		if (buffer.hasArray()) {
+			String texto = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), longitud, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + longitud);
+			return texto;
+		}
+		byte[] bytes = new byte[longitud];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void escribirCabecera(SalidaCanal salida, short indicadores, long marcaDeAgua) throws IOException {
+		salida.escribirInt(FIRMA);
+		salida.escribirShort(VERSION);
+		salida.escribirShort(indicadores);
+		salida.escribirLong(marcaDeAgua);
+	}
+
+	/**
+	 * Escribe un texto precedido de su longitud en UTF-8 en 2 bytes.
+	 */
+	static void escribirTexto(SalidaCanal salida, String texto) throws IOException {
+		String valor = texto != null ? texto : "";
+		int longitud = longitudUtf8(valor);
+		if (longitud > 0xFFFF) {
+			throw new IOException("Texto demasiado largo para el formato binario");
+		}
+		salida.escribirShort(longitud);
+		salida.escribirTexto(valor);
+	}
+
+	static void escribirFin(SalidaCanal salida, long registros) throws IOException {
+		salida.write(FIN);
+		salida.escribirLong(registros);
+	}
+
+	/**
+	 * Calcula la longitud en UTF-8 de un texto con la misma codificación que {@link SalidaCanal}.
+	 */
+	private static int longitudUtf8(String texto) {
+		int longitud = 0;
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c < 0x80) {
+				longitud++;
+			} else if (c < 0x800) {
+				longitud += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+				longitud += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				longitud++;
+			} else {
+				longitud += 3;
+			}
+		}
+		return longitud;
+	}
+}
@@ -0,0 +1,168 @@
+package exportacion;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import dao.DAOProducto;
+import excepciones.ProductosException;
+import metricas.Medicion;
+import metricas.Metricas;
+import model.Producto;
+import utilities.Configuracion;
+
+/**
+ * Copia local del listado de productos en {@link FormatoBinario}, para mostrar la tabla al
+ * arrancar sin esperar a la base de datos y consultarla cuando no hay conexión.
+ *
+ * <p>
+ * El fichero (<code>instantanea.fichero</code>, por defecto <code>productos.prdx</code> en la
+ * carpeta <code>.examendein</code> del usuario) guarda los productos sin imágenes, con su
+ * versión, y como marca de agua el último cambio de <code>productos_cambios</code> incluido. Así
+ * basta con pedir a la base de datos los cambios posteriores para ponerlo al día. Se lee
+ * proyectado en memoria y se escribe en un fichero temporal que se renombra al terminar, de
+ * modo que nunca queda a medias.
+ * </p>
+ */
+public class InstantaneaProductos {
+
+	/**
+	 * Fichero de la instantánea, configurable con <code>instantanea.fichero</code>; vacío si está desactivada.
+	 */
+	public static final String FICHERO = Configuracion.getString("instantanea.fichero",
+			Paths.get(System.getProperty("user.home"), ".examendein", "productos.prdx").toString());
+
+	private final List<Producto> productos;
+	private final long marca;
+	private final long instante;
+
+	private InstantaneaProductos(List<Producto> productos, long marca, long instante) {
+		this.productos = productos;
+		this.marca = marca;
+		this.instante = instante;
+	}
+
+	/**
+	 * Obtiene el fichero de la instantánea configurado.
+	 *
+	 * @return el fichero, o null si la instantánea está desactivada
+	 */
+	public static Path getFichero() {
+		return FICHERO.isBlank() ? null : Paths.get(FICHERO);
+	}
+
+	/**
+	 * Lee una instantánea. Las imágenes de los productos se cargarán de la base de datos la
+	 * primera vez que se pidan.
+	 *
+	 * @param fichero el fichero de la instantánea
+	 * @return la instantánea, o null si el fichero no existe
+	 * @throws ProductosException si el fichero no se puede leer o está dañado
+	 */
+	public static InstantaneaProductos leer(Path fichero) throws ProductosException {
+		Medicion m = Metricas.medir("instantanea.leer");
+		try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+			FormatoBinario.Cabecera cabecera = FormatoBinario.leerCabecera(buffer);
+			if (!cabecera.isConVersiones()) {
+				throw new ProductosException("La instantánea no incluye las versiones de los productos");
+			}
+			List<Producto> productos = new ArrayList<>();
+			Producto producto;
+			while ((producto = FormatoBinario.leerRegistro(buffer, cabecera)) != null) {
+				productos.add(producto
+						.setCargadorImagen(DAOProducto::getImagen)
+						.setCargadorMiniatura(DAOProducto::getMiniatura));
+			}
+			long instante = Files.getLastModifiedTime(fichero).toMillis();
+			return new InstantaneaProductos(productos, cabecera.getMarcaDeAgua(), instante);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			Metricas.fallo("instantanea.leer", e);
+			throw new ProductosException(e);
+		} finally {
+			m.close();
+		}
+	}
+
+	/**
+	 * Escribe una instantánea, sin imágenes, reemplazando la anterior al terminar.
+	 *
+	 * @param fichero el fichero de la instantánea
+	 * @param productos los productos
+	 * @param marca el último cambio de <code>productos_cambios</code> incluido en los productos
+	 * @throws ProductosException si no se puede escribir el fichero
+	 */
+	public static void escribir(Path fichero, Collection<Producto> productos, long marca) throws ProductosException {
+		Path absoluto = fichero.toAbsolutePath();
+		Path temporal = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+		Medicion m = Metricas.medir("instantanea.escribir");
+		try {
+			Files.createDirectories(absoluto.getParent());
+			try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				SalidaCanal salida = new SalidaCanal(canal, Math.min(ExportadorProductos.TAMANO_BUFFER, 64 + productos.size() * 64));
+				FormatoBinario.escribirCabecera(salida, FormatoBinario.CON_VERSIONES, marca);
+				for (Producto producto : productos) {
+					salida.write(FormatoBinario.REGISTRO);
+					FormatoBinario.escribirTexto(salida, producto.getCodigo());
+					FormatoBinario.escribirTexto(salida, producto.getNombre());
+					salida.escribirDouble(producto.getPrecio());
+					salida.write(producto.isDisponible() ? 1 : 0);
+					salida.escribirLong(producto.getVersion());
+				}
+				FormatoBinario.escribirFin(salida, productos.size());
+				salida.close();
+			}
+			Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Metricas.fallo("instantanea.escribir", e);
+			try {
+				Files.deleteIfExists(temporal);
+			} catch (IOException ex) {
+				e.addSuppressed(ex);
+			}
+			throw new ProductosException(e);
+		} finally {
+			m.close();
+		}
+	}
+
+	/**
+	 * Obtiene los productos de la instantánea, en el orden en que se escribieron.
+	 *
+	 * @return los productos
+	 */
+	public List<Producto> getProductos() {
+		return Collections.unmodifiableList(productos);
+	}
+
+	/**
+	 * Obtiene el último cambio de <code>productos_cambios</code> incluido en la instantánea.
+	 *
+	 * @return la marca, a partir de la cual se piden los cambios para ponerla al día
+	 */
+	public long getMarca() {
+		return marca;
+	}
+
+	/**
+	 * Obtiene el instante en que se escribió la instantánea.
+	 *
+	 * @return el instante en milisegundos
+	 */
+	public long getInstante() {
+		return instante;
+	}
+}
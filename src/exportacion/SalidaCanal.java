@@ -0,0 +1,150 @@
+package exportacion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Flujo de salida que escribe en un {@link FileChannel} a través de un único buffer reutilizable.
+ *
+ * <p>
+ * Los números se escriben en binario big-endian directamente en el buffer y los textos se
+ * codifican en UTF-8 carácter a carácter, sin crear arrays intermedios. Cerrar el flujo vacía
+ * el buffer pero no cierra el canal.
+ * </p>
+ */
+class SalidaCanal extends OutputStream {
+
+	private final FileChannel canal;
+	private final ByteBuffer buffer;
+	private long escritos;
+
+	SalidaCanal(FileChannel canal, int capacidad) {
+		this.canal = canal;
+		this.buffer = ByteBuffer.allocate(Math.max(64, capacidad));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		asegurar(1);
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (!buffer.hasRemaining()) {
+				vaciar();
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	void escribirShort(int valor) throws IOException {
+		asegurar(2);
+		buffer.putShort((short) valor);
+	}
+
+	void escribirInt(int valor) throws IOException {
+		asegurar(4);
+		buffer.putInt(valor);
+	}
+
+	void escribirLong(long valor) throws IOException {
+		asegurar(8);
+		buffer.putLong(valor);
+	}
+
+	void escribirDouble(double valor) throws IOException {
+		asegurar(8);
+		buffer.putDouble(valor);
+	}
+
+	/**
+	 * Escribe un texto en UTF-8.
+	 */
+	void escribirTexto(CharSequence texto) throws IOException {
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c < 0x80) {
+				asegurar(1);
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				asegurar(2);
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, texto.charAt(++i));
+				asegurar(4);
+				buffer.put((byte) (0xF0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (cp & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				asegurar(1);
+				buffer.put((byte) '?');
+			} else {
+				asegurar(3);
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	/**
+	 * Copia un flujo leyendo directamente sobre el buffer.
+	 *
+	 * @return el número de bytes copiados
+	 */
+	long copiar(InputStream entrada) throws IOException {
+		long total = 0;
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				vaciar();
+			}
+			int n = entrada.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			if (n < 0) {
+				return total;
+			}
+			buffer.position(buffer.position() + n);
+			total += n;
+		}
+	}
+
+	/**
+	 * Obtiene el número de bytes escritos, incluidos los que siguen en el buffer.
+	 */
+	long getEscritos() {
+		return escritos + buffer.position();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		vaciar();
+	}
+
+	@Override
+	public void close() throws IOException {
+		vaciar();
+	}
+
+	private void asegurar(int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			vaciar();
+		}
+	}
+
+	private void vaciar() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			escritos += canal.write(buffer);
+		}
+		buffer.clear();
+	}
+}
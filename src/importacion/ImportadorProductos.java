@@ -0,0 +1,325 @@
+package importacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import dao.DAOProductoCacheado;
+import dao.OpcionesLote;
+import dao.ResultadoLote;
+import excepciones.ProductosException;
+import model.Producto;
+import utilities.Configuracion;
+import utilities.ErroresValidacion;
+import utilities.Json;
+import utilities.StringUtils;
+import utilities.Validador;
+import utilities.ValidadorProducto;
+
+/**
+ * Importa productos desde ficheros CSV o JSON-lines.
+ *
+ * <p>
+ * El fichero se lee en streaming y las filas válidas se guardan en lotes con
+ * {@link DAOProductoCacheado#guardarProductos}, confirmando cada lote por separado: en memoria
+ * nunca hay más de un lote, y un lote que falla no deshace los anteriores. Cada fila se valida
+ * con las mismas reglas que el formulario ({@link ValidadorProducto}); las que no las cumplen
+ * se rechazan sin detener la importación.
+ * </p>
+ *
+ * <p>
+ * Las columnas, o campos en JSON-lines, son <code>codigo</code>, <code>nombre</code>,
+ * <code>precio</code>, <code>disponible</code> (opcional: <code>1</code>, <code>true</code>,
+ * <code>si</code> o <code>sí</code>) e <code>imagen</code> (opcional: ruta del fichero de imagen,
+ * relativa al fichero importado). Los códigos que ya existen se actualizan; si la fila no trae
+ * imagen se conserva la que tuviera.
+ * </p>
+ */
+public class ImportadorProductos {
+
+	/**
+	 * Máximo de rechazos que se detallan en el resultado, configurable con
+	 * <code>importacion.maxRechazos</code>.
+	 */
+	public static final int MAX_RECHAZOS = Configuracion.getInt("importacion.maxRechazos", 1000);
+
+	/**
+	 * Formato del fichero a importar.
+	 */
+	public static enum Formato {
+		/** Valores separados por comas o por punto y coma, con cabecera. */
+		CSV,
+		/** Un objeto JSON por línea. */
+		JSONL;
+
+		/**
+		 * Deduce el formato por la extensión del fichero.
+		 *
+		 * @param fichero el fichero
+		 * @return {@link #JSONL} para <code>.jsonl</code>, <code>.ndjson</code> y <code>.json</code>; {@link #CSV} en otro caso
+		 */
+		public static Formato deFichero(Path fichero) {
+			String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+			return nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") || nombre.endsWith(".json") ? JSONL : CSV;
+		}
+	}
+
+	/**
+	 * Interfaz funcional para recibir el progreso de la importación.
+	 * Se invoca desde el hilo que importa cada vez que se guarda un lote.
+	 */
+	@FunctionalInterface
+	public static interface Progreso {
+		/**
+		 * Notifica el progreso de la importación.
+		 *
+		 * @param filas las filas leídas hasta ahora
+		 * @param bytesLeidos los bytes del fichero leídos hasta ahora, aproximadamente
+		 * @param bytesTotales el tamaño del fichero
+		 * @param filasPorSegundo el rendimiento medio desde el inicio
+		 */
+		void actualizar(long filas, long bytesLeidos, long bytesTotales, double filasPorSegundo);
+	}
+
+	private static final String[] COLUMNAS = { "codigo", "nombre", "precio", "disponible", "imagen" };
+	private static final int CODIGO = 0;
+	private static final int NOMBRE = 1;
+	private static final int PRECIO = 2;
+	private static final int DISPONIBLE = 3;
+	private static final int IMAGEN = 4;
+
+	private OpcionesLote opciones = new OpcionesLote().setCommitPorLote(true).setConservarImagenes(true);
+	private int maxRechazos = MAX_RECHAZOS;
+
+	/**
+	 * Establece el tamaño de lote y el modo de transacción. Por defecto se confirma cada lote
+	 * y se conservan las imágenes de las filas que no traen.
+	 *
+	 * @param opciones las opciones de los lotes
+	 * @return la instancia actual del importador
+	 */
+	public ImportadorProductos setOpciones(OpcionesLote opciones) {
+		this.opciones = opciones;
+		return this;
+	}
+
+	/**
+	 * Establece el máximo de rechazos que se detallan en el resultado.
+	 *
+	 * @param maxRechazos el máximo de rechazos
+	 * @return la instancia actual del importador
+	 */
+	public ImportadorProductos setMaxRechazos(int maxRechazos) {
+		this.maxRechazos = maxRechazos;
+		return this;
+	}
+
+	/**
+	 * Importa un fichero deduciendo el formato por su extensión.
+	 *
+	 * @param fichero el fichero a importar
+	 * @param progreso el receptor del progreso, o null
+	 * @return el resultado de la importación
+	 * @throws ProductosException si no se puede leer el fichero, le faltan columnas o falla la conexión
+	 * @see Formato#deFichero(Path)
+	 */
+	public ResultadoImportacion importar(Path fichero, Progreso progreso) throws ProductosException {
+		return importar(fichero, Formato.deFichero(fichero), progreso);
+	}
+
+	/**
+	 * Importa un fichero.
+	 *
+	 * @param fichero el fichero a importar
+	 * @param formato el formato del fichero
+	 * @param progreso el receptor del progreso, o null
+	 * @return el resultado de la importación
+	 * @throws ProductosException si no se puede leer el fichero, le faltan columnas o falla la conexión
+	 */
+	public ResultadoImportacion importar(Path fichero, Formato formato, Progreso progreso) throws ProductosException {
+		Importacion importacion = new Importacion(fichero, progreso);
+		try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ);
+				BufferedReader lector = new BufferedReader(new InputStreamReader(Channels.newInputStream(canal), StandardCharsets.UTF_8))) {
+			importacion.canal = canal;
+			importacion.bytesTotales = canal.size();
+			if (formato == Formato.CSV) {
+				importarCsv(lector, importacion);
+			} else {
+				importarJsonl(lector, importacion);
+			}
+			importacion.guardarLote();
+		} catch (IOException e) {
+			throw new ProductosException("No se puede leer el fichero " + fichero + ": " + e.getMessage(), e);
+		}
+		importacion.resultado.setDuracionNanos(System.nanoTime() - importacion.inicio);
+		return importacion.resultado;
+	}
+
+	private void importarCsv(BufferedReader lector, Importacion importacion) throws IOException, ProductosException {
+		LectorCsv csv = new LectorCsv(lector);
+		String[] cabecera = csv.leerCabecera();
+		if (cabecera == null) {
+			return;
+		}
+		int[] posiciones = new int[COLUMNAS.length];
+		for (int c = 0; c < COLUMNAS.length; c++) {
+			posiciones[c] = -1;
+			for (int i = 0; i < cabecera.length; i++) {
+				if (COLUMNAS[c].equalsIgnoreCase(cabecera[i].trim())) {
+					posiciones[c] = i;
+				}
+			}
+			if (posiciones[c] < 0 && c <= PRECIO) {
+				throw new ProductosException("Falta la columna " + COLUMNAS[c]);
+			}
+		}
+		String[] valores = new String[COLUMNAS.length];
+		String[] registro;
+		while ((registro = csv.leer()) != null) {
+			for (int c = 0; c < COLUMNAS.length; c++) {
+				valores[c] = posiciones[c] >= 0 && posiciones[c] < registro.length ? registro[posiciones[c]] : null;
+			}
+			importacion.fila(csv.getLinea(), valores);
+		}
+	}
+
+	private void importarJsonl(BufferedReader lector, Importacion importacion) throws IOException, ProductosException {
+		String[] valores = new String[COLUMNAS.length];
+		String texto;
+		long linea = 0;
+		while ((texto = lector.readLine()) != null) {
+			linea++;
+			if (StringUtils.isBlank(texto)) {
+				continue;
+			}
+			Map<String, Object> campos;
+			try {
+				campos = Json.leerObjeto(texto);
+			} catch (IllegalArgumentException e) {
+				importacion.resultado.leida();
+				importacion.resultado.rechazar(linea, null, e.getMessage());
+				continue;
+			}
+			for (int c = 0; c < COLUMNAS.length; c++) {
+				Object valor = campos.get(COLUMNAS[c]);
+				valores[c] = valor != null ? valor.toString() : null;
+			}
+			importacion.fila(linea, valores);
+		}
+	}
+
+	/**
+	 * Estado de una importación en curso.
+	 */
+	private final class Importacion {
+		private final Path directorio;
+		private final Progreso progreso;
+		private final ResultadoImportacion resultado = new ResultadoImportacion(maxRechazos);
+		private final Validador validador = ValidadorProducto.crear();
+		private final ErroresValidacion errores = validador.crearErrores();
+		private final CharSequence[] validables = new CharSequence[3];
+		private final List<Producto> lote = new ArrayList<>(opciones.getTamanoLote());
+		private final List<Long> lineas = new ArrayList<>(opciones.getTamanoLote());
+		private final long inicio = System.nanoTime();
+		private FileChannel canal;
+		private long bytesTotales;
+
+		Importacion(Path fichero, Progreso progreso) {
+			Path padre = fichero.toAbsolutePath().getParent();
+			this.directorio = padre != null ? padre : fichero.toAbsolutePath();
+			this.progreso = progreso;
+		}
+
+		/**
+		 * Valida una fila y la añade al lote, que se guarda al llenarse.
+		 */
+		void fila(long linea, String[] valores) throws ProductosException {
+			resultado.leida();
+			String codigo = valores[CODIGO];
+			validables[ValidadorProducto.CODIGO] = codigo;
+			validables[ValidadorProducto.NOMBRE] = valores[NOMBRE];
+			validables[ValidadorProducto.PRECIO] = valores[PRECIO] != null ? valores[PRECIO].trim() : null;
+			if (!validador.validar(validables, errores)) {
+				resultado.rechazar(linea, codigo, errores.getMensajes().replace('\n', ' '));
+				return;
+			}
+			Producto producto = new Producto()
+					.setCodigo(codigo.trim())
+					.setNombre(valores[NOMBRE].trim())
+					.setPrecio(Double.parseDouble(valores[PRECIO].trim().replace(',', '.')))
+					.setDisponible(esVerdadero(valores[DISPONIBLE]));
+			if (!StringUtils.isBlank(valores[IMAGEN])) {
+				Path imagen = directorio.resolve(valores[IMAGEN].trim());
+				try {
+					producto.setImagen(Files.readAllBytes(imagen));
+				} catch (IOException e) {
+					resultado.rechazar(linea, codigo, "No se puede leer la imagen " + imagen);
+					return;
+				}
+			}
+			lote.add(producto);
+			lineas.add(linea);
+			if (lote.size() >= opciones.getTamanoLote()) {
+				guardarLote();
+			}
+		}
+
+		/**
+		 * Guarda el lote pendiente y anota las filas que no se han podido guardar.
+		 */
+		void guardarLote() throws ProductosException {
+			if (lote.isEmpty()) {
+				return;
+			}
+			ResultadoLote guardado = DAOProductoCacheado.guardarProductos(lote, opciones);
+			List<ResultadoLote.Fila> filas = guardado.getFilas();
+			for (int i = 0; i < filas.size(); i++) {
+				ResultadoLote.Fila fila = filas.get(i);
+				switch (fila.getEstado()) {
+				case CORRECTO:
+				case SIN_CAMBIOS:
+					resultado.importada();
+					break;
+				case FALLIDO:
+					resultado.rechazar(lineas.get(i), fila.getProducto().getCodigo(), fila.getMensaje());
+					break;
+				default:
+					resultado.rechazar(lineas.get(i), fila.getProducto().getCodigo(), "Lote deshecho por un error en otra fila");
+				}
+			}
+			lote.clear();
+			lineas.clear();
+			if (progreso != null) {
+				double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+				progreso.actualizar(resultado.getLeidas(), posicion(), bytesTotales,
+						segundos > 0 ? resultado.getLeidas() / segundos : 0);
+			}
+		}
+
+		private long posicion() {
+			try {
+				return canal.position();
+			} catch (IOException e) {
+				return 0;
+			}
+		}
+	}
+
+	private static boolean esVerdadero(String valor) {
+		if (valor == null) {
+			return false;
+		}
+		String v = valor.trim().toLowerCase(Locale.ROOT);
+		return v.equals("1") || v.equals("true") || v.equals("si") || v.equals("sí") || v.equals("s");
+	}
+}
@@ -0,0 +1,117 @@
+package importacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de registros CSV línea a línea.
+ *
+ * <p>
+ * Admite campos entre comillas dobles con el separador, comillas duplicadas y saltos de línea
+ * dentro. El separador se deduce de la cabecera: punto y coma si aparece antes que la coma.
+ * </p>
+ */
+class LectorCsv {
+
+	private final BufferedReader lector;
+	private final List<String> campos = new ArrayList<>();
+	private final StringBuilder campo = new StringBuilder();
+	private char separador = ',';
+	private long linea;
+	private long inicio;
+
+	LectorCsv(BufferedReader lector) {
+		this.lector = lector;
+	}
+
+	/**
+	 * Lee la cabecera y deduce el separador.
+	 *
+	 * @return los nombres de las columnas, o null si el fichero está vacío
+	 */
+	String[] leerCabecera() throws IOException {
+		lector.mark(64 * 1024);
+		String primera = lector.readLine();
+		if (primera == null) {
+			return null;
+		}
+		int puntoYComa = primera.indexOf(';');
+		int coma = primera.indexOf(',');
+		separador = puntoYComa >= 0 && (coma < 0 || puntoYComa < coma) ? ';' : ',';
+		lector.reset();
+		String[] cabecera = leer();
+		// SE QUITA LA MARCA DE ORDEN DE BYTES QUE AÑADEN ALGUNAS HOJAS DE CÁLCULO
+		if (cabecera.length > 0 && !cabecera[0].isEmpty() && cabecera[0].charAt(0) == '\uFEFF') {
+			cabecera[0] = cabecera[0].substring(1);
+		}
+		return cabecera;
+	}
+
+	/**
+	 * Lee el siguiente registro, saltando las líneas en blanco.
+	 *
+	 * @return los campos del registro, o null al final del fichero
+	 */
+	String[] leer() throws IOException {
+		String texto;
+		do {
+			texto = lector.readLine();
+			if (texto == null) {
+				return null;
+			}
+			linea++;
+		} while (texto.isBlank());
+		inicio = linea;
+
+		campos.clear();
+		campo.setLength(0);
+		boolean comillas = false;
+		while (true) {
+			for (int i = 0; i < texto.length(); i++) {
+				char c = texto.charAt(i);
+				if (comillas) {
+					if (c == '"') {
+						if (i + 1 < texto.length() && texto.charAt(i + 1) == '"') {
+							campo.append('"');
+							i++;
+						} else {
+							comillas = false;
+						}
+					} else {
+						campo.append(c);
+					}
+				} else if (c == '"' && campo.length() == 0) {
+					comillas = true;
+				} else if (c == separador) {
+					campos.add(campo.toString());
+					campo.setLength(0);
+				} else {
+					campo.append(c);
+				}
+			}
+			if (!comillas) {
+				break;
+			}
+			// EL CAMPO ENTRE COMILLAS CONTINÚA EN LA LÍNEA SIGUIENTE
+			texto = lector.readLine();
+			if (texto == null) {
+				throw new IOException("Comillas sin cerrar en la línea " + linea);
+			}
+			linea++;
+			campo.append('\n');
+		}
+		campos.add(campo.toString());
+		return campos.toArray(new String[0]);
+	}
+
+	/**
+	 * Obtiene la línea en la que empieza el último registro leído.
+	 *
+	 * @return la línea, empezando en 1
+	 */
+	long getLinea() {
+		return inicio;
+	}
+}
@@ -0,0 +1,151 @@
+package importacion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resultado de una importación de productos.
+ */
+public class ResultadoImportacion {
+
+	/**
+	 * Una fila del fichero que no se ha importado.
+	 */
+	public static class Rechazo {
+		private final long linea;
+		private final String codigo;
+		private final String motivo;
+
+		Rechazo(long linea, String codigo, String motivo) {
+			this.linea = linea;
+			this.codigo = codigo;
+			this.motivo = motivo;
+		}
+
+		/**
+		 * Obtiene la línea del fichero en la que empieza la fila.
+		 * 
+		 * @return el número de línea, empezando en 1
+		 */
+		public long getLinea() {
+			return linea;
+		}
+
+		/**
+		 * Obtiene el código de producto de la fila, si se ha podido leer.
+		 * 
+		 * @return el código o null
+		 */
+		public String getCodigo() {
+			return codigo;
+		}
+
+		/**
+		 * Obtiene el motivo del rechazo.
+		 * 
+		 * @return el motivo
+		 */
+		public String getMotivo() {
+			return motivo;
+		}
+
+		@Override
+		public String toString() {
+			return "Línea " + linea + (codigo != null ? " (" + codigo + ")" : "") + ": " + motivo;
+		}
+	}
+
+	private final int maxRechazos;
+	private final List<Rechazo> rechazos = new ArrayList<>();
+	private long leidas;
+	private long importadas;
+	private long rechazadas;
+	private long duracionNanos;
+
+	ResultadoImportacion(int maxRechazos) {
+		this.maxRechazos = maxRechazos;
+	}
+
+	void leida() {
+		leidas++;
+	}
+
+	void importada() {
+		importadas++;
+	}
+
+	void rechazar(long linea, String codigo, String motivo) {
+		rechazadas++;
+		if (rechazos.size() < maxRechazos) {
+			rechazos.add(new Rechazo(linea, codigo, motivo));
+		}
+	}
+
+	void setDuracionNanos(long duracionNanos) {
+		this.duracionNanos = duracionNanos;
+	}
+
+	/**
+	 * Obtiene el número de filas leídas del fichero, sin contar la cabecera.
+	 * 
+	 * @return las filas leídas
+	 */
+	public long getLeidas() {
+		return leidas;
+	}
+
+	/**
+	 * Obtiene el número de filas guardadas en la base de datos.
+	 * 
+	 * @return las filas importadas
+	 */
+	public long getImportadas() {
+		return importadas;
+	}
+
+	/**
+	 * Obtiene el número de filas rechazadas, en la validación o al guardarlas.
+	 * 
+	 * @return las filas rechazadas
+	 */
+	public long getRechazadas() {
+		return rechazadas;
+	}
+
+	/**
+	 * Obtiene el detalle de las filas rechazadas. Para acotar la memoria solo se guardan las
+	 * primeras; {@link #getRechazadas()} da el total.
+	 * 
+	 * @return la lista inmodificable de rechazos, en el orden en que se detectan
+	 */
+	public List<Rechazo> getRechazos() {
+		return Collections.unmodifiableList(rechazos);
+	}
+
+	/**
+	 * Obtiene la duración de la importación.
+	 * 
+	 * @return la duración en segundos
+	 */
+	public double getDuracionSegundos() {
+		return duracionNanos / 1_000_000_000.0;
+	}
+
+	/**
+	 * Obtiene el rendimiento medio de la importación.
+	 * 
+	 * @return las filas leídas por segundo
+	 */
+	public double getFilasPorSegundo() {
+		double segundos = getDuracionSegundos();
+		return segundos > 0 ? leidas / segundos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d filas leídas, %d importadas, %d rechazadas en %.1f s (%.0f filas/s)",
+				leidas, importadas, rechazadas, getDuracionSegundos(), getFilasPorSegundo());
+	}
+}
@@ -1,50 +1,169 @@
 package jasper;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
+import javax.swing.SwingUtilities;
+
+import dao.DAOBase;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
+import metricas.Medicion;
+import metricas.Metricas;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.util.JRLoader;
 import net.sf.jasperreports.view.JasperViewer;
+import utilities.Configuracion;
+import utilities.Hilos;
 
+/**
+ * Motor de informes.
+ *
+ * <p>
+ * Cada informe se carga (o se compila a partir de su <code>.jrxml</code>) una sola vez y se
+ * guarda en memoria. El rellenado se hace en un pool de hilos en segundo plano con una
+ * conexión del pool de la aplicación, de modo que la interfaz solo recibe el informe terminado.
+ * La carga, el rellenado y la visualización se miden con {@link Metricas} como
+ * <code>informe.cargar</code>, <code>informe.rellenar</code> e <code>informe.mostrar</code>.
+ * </p>
+ */
 public class Creador {
+
+	private static final Map<String, JasperReport> INFORMES = new ConcurrentHashMap<>();
+
+	private static final ExecutorService EJECUTOR = Hilos.ejecutorFijo("informes", Configuracion.getInt("informes.hilos", 2));
+
+	/**
+	 * Obtiene un informe compilado, cargándolo la primera vez que se pide.
+	 *
+	 * <p>
+	 * Se busca el recurso <code>.jasper</code> relativo a esta clase; si no existe, se compila el
+	 * <code>.jrxml</code> con el mismo nombre.
+	 * </p>
+	 *
+	 * @param ruta la ruta del archivo Jasper
+	 * @return el informe compilado
+	 * @throws JRException si el informe no existe o no se puede cargar o compilar
+	 */
+	public static JasperReport getInforme(String ruta) throws JRException {
+		JasperReport report = INFORMES.get(ruta);
+		if (report == null) {
+			Medicion m = Metricas.medir("informe.cargar");
+			try {
+				report = cargarInforme(ruta);
+			} catch (JRException e) {
+				Metricas.fallo("informe.cargar", e);
+				throw e;
+			} finally {
+				m.close();
+			}
+			JasperReport anterior = INFORMES.putIfAbsent(ruta, report);
+			if (anterior != null) {
+				report = anterior;
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Rellena un informe en segundo plano.
+	 *
+	 * @param ruta la ruta del archivo Jasper
+	 * @param parameters los parámetros a utilizar en el informe
+	 * @return el futuro con el informe relleno; los errores llegan envueltos en una {@link CompletionException}
+	 */
+	public static CompletableFuture<JasperPrint> rellenarInforme(String ruta, Map<String, Object> parameters) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return rellenar(ruta, parameters);
+			} catch (JRException | SQLException e) {
+				throw new CompletionException(e);
+			}
+		}, EJECUTOR);
+	}
+
+	/**
+	 * Rellena un informe en el hilo actual con una conexión del pool de la aplicación.
+	 *
+	 * @param ruta la ruta del archivo Jasper
+	 * @param parameters los parámetros a utilizar en el informe
+	 * @return el informe relleno
+	 * @throws JRException si ocurre un error al cargar o rellenar el informe
+	 * @throws SQLException si no se puede obtener una conexión
+	 */
+	public static JasperPrint rellenar(String ruta, Map<String, Object> parameters) throws JRException, SQLException {
+		JasperReport report = getInforme(ruta);
+		Medicion m = Metricas.medir("informe.rellenar");
+		try (Connection con = DAOBase.getConexion()) {
+			// JASPER PUEDE AÑADIR PARÁMETROS AL MAPA, POR LO QUE SE USA UNA COPIA
+			return JasperFillManager.fillReport(report, parameters != null ? new HashMap<>(parameters) : new HashMap<String, Object>(), con);
+		} catch (JRException | SQLException e) {
+			Metricas.fallo("informe.rellenar", e);
+			throw e;
+		} finally {
+			m.close();
+		}
+	}
+
 	/**
      * Crea un informe a partir de un archivo Jasper y unos parámetros dados.
+     * El informe se rellena en segundo plano y se muestra al terminar.
      * @param ruta la ruta del archivo Jasper
      * @param parameters los parámetros a utilizar en el informe
      */
 	public static void crearInforme(String ruta, Map<String, Object> parameters) {
-	    try {
-	    	InputStream jasper = Creador.class
-	    		    .getResourceAsStream(ruta);
-	    	
-	    	
-	        
-	        Class.forName("org.mariadb.jdbc.Driver");
-	        Connection con = DriverManager.getConnection("jdbc:mariadb://localhost:3306/examen2", "root", "root");
-	        
-			try {
-				JasperReport report = (JasperReport) JRLoader.loadObject(jasper);
-		        JasperPrint jprint = JasperFillManager.fillReport(report, parameters != null ? parameters : new HashMap<String, Object>(), con);
-		        JasperViewer viewer = new JasperViewer(jprint, false);
-		        viewer.setVisible(true);
-			} catch (Exception e) {
-	            Alert alert = new Alert(Alert.AlertType.ERROR);
-	            alert.setHeaderText(null);
-	            alert.setTitle("ERROR");
-	            alert.setContentText("Ha ocurrido un error");
-	            alert.showAndWait();
-	            e.printStackTrace();
-	        }
-	        
-	    } catch (Exception e) {
-	    	e.printStackTrace();
-	    }
+		rellenarInforme(ruta, parameters).whenComplete((jprint, e) -> {
+			if (e == null) {
+				SwingUtilities.invokeLater(() -> {
+					Medicion m = Metricas.medir("informe.mostrar");
+					try {
+						JasperViewer viewer = new JasperViewer(jprint, false);
+						viewer.setVisible(true);
+					} finally {
+						m.close();
+					}
+				});
+			} else {
+				Metricas.fallo("informe.crear", e);
+				Platform.runLater(() -> {
+					Alert alert = new Alert(Alert.AlertType.ERROR);
+					alert.setHeaderText(null);
+					alert.setTitle("ERROR");
+					alert.setContentText("Ha ocurrido un error");
+					alert.showAndWait();
+				});
+			}
+		});
+	}
+
+	private static JasperReport cargarInforme(String ruta) throws JRException {
+		try (InputStream jasper = Creador.class.getResourceAsStream(ruta)) {
+			if (jasper != null) {
+				return (JasperReport) JRLoader.loadObject(jasper);
+			}
+		} catch (IOException e) {
+			throw new JRException(e);
+		}
+		String fuente = ruta.endsWith(".jasper") ? ruta.substring(0, ruta.length() - ".jasper".length()) + ".jrxml" : ruta;
+		try (InputStream jrxml = Creador.class.getResourceAsStream(fuente)) {
+			if (jrxml == null) {
+				throw new JRException("No se encuentra el informe " + ruta);
+			}
+			return JasperCompileManager.compileReport(jrxml);
+		} catch (IOException e) {
+			throw new JRException(e);
+		}
 	}
 }
@@ -0,0 +1,207 @@
+package jasper;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metricas.Medicion;
+import metricas.Metricas;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import utilities.Configuracion;
+import utilities.Hilos;
+
+/**
+ * Genera en paralelo un informe en PDF por cada producto de una lista.
+ *
+ * <p>
+ * Los informes se rellenan en un pool acotado de hilos y cada uno se escribe en disco en
+ * cuanto termina, por lo que en memoria nunca hay más informes rellenos que hilos.
+ * </p>
+ */
+public class GeneradorInformesLote {
+
+	/**
+	 * Número de hilos por defecto, configurable con <code>informes.lote.hilos</code>. Sin
+	 * configurar, uno por procesador, pero dejando libre al menos una conexión del pool
+	 * (<code>pool.max</code>), ya que cada hilo ocupa una mientras rellena su informe.
+	 */
+	public static final int HILOS = Configuracion.getInt("informes.lote.hilos",
+			Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Configuracion.getInt("pool.max", 8) - 1)));
+
+	private final String ruta;
+	private final String parametro;
+	private final File directorio;
+	private final int hilos;
+
+	/**
+	 * Interfaz funcional para recibir el progreso de la generación.
+	 * Se invoca desde los hilos del pool cada vez que termina un informe.
+	 */
+	@FunctionalInterface
+	public static interface Progreso {
+		/**
+		 * Notifica el progreso de la generación.
+		 *
+		 * @param terminados los informes terminados, correctos o fallidos
+		 * @param total el total de informes a generar
+		 * @param informesPorSegundo el rendimiento medio desde el inicio
+		 */
+		void actualizar(int terminados, int total, double informesPorSegundo);
+	}
+
+	/**
+	 * Resumen de una generación por lotes.
+	 */
+	public static class Resumen {
+		private final int generados;
+		private final Map<String, String> errores;
+		private final long duracionNanos;
+
+		private Resumen(int generados, Map<String, String> errores, long duracionNanos) {
+			this.generados = generados;
+			this.errores = Collections.unmodifiableMap(errores);
+			this.duracionNanos = duracionNanos;
+		}
+
+		/**
+		 * Obtiene el número de informes generados correctamente.
+		 *
+		 * @return los informes generados
+		 */
+		public int getGenerados() {
+			return generados;
+		}
+
+		/**
+		 * Obtiene los errores, por código de producto.
+		 *
+		 * @return el mapa de errores
+		 */
+		public Map<String, String> getErrores() {
+			return errores;
+		}
+
+		/**
+		 * Obtiene la duración total de la generación.
+		 *
+		 * @return la duración en segundos
+		 */
+		public double getDuracionSegundos() {
+			return duracionNanos / 1_000_000_000.0;
+		}
+
+		/**
+		 * Obtiene el rendimiento medio de la generación.
+		 *
+		 * @return los informes terminados por segundo
+		 */
+		public double getInformesPorSegundo() {
+			double segundos = getDuracionSegundos();
+			return segundos > 0 ? (generados + errores.size()) / segundos : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d informes generados, %d errores en %.1f s (%.1f informes/s)",
+					generados, errores.size(), getDuracionSegundos(), getInformesPorSegundo());
+		}
+	}
+
+	/**
+	 * Crea un generador.
+	 *
+	 * @param ruta la ruta del archivo Jasper, como en {@link Creador#getInforme(String)}
+	 * @param parametro el nombre del parámetro del informe que recibe el código de producto
+	 * @param directorio el directorio donde se escriben los PDF
+	 * @param hilos el número máximo de informes que se rellenan a la vez
+	 */
+	public GeneradorInformesLote(String ruta, String parametro, File directorio, int hilos) {
+		this.ruta = ruta;
+		this.parametro = parametro;
+		this.directorio = directorio;
+		this.hilos = Math.max(1, hilos);
+	}
+
+	/**
+	 * Genera un informe PDF por código en segundo plano.
+	 *
+	 * @param codigos los códigos de producto
+	 * @param progreso el receptor del progreso, o null
+	 * @return el futuro con el resumen de la generación
+	 */
+	public CompletableFuture<Resumen> generar(List<String> codigos, Progreso progreso) {
+		int total = codigos.size();
+		long inicio = System.nanoTime();
+		AtomicInteger generados = new AtomicInteger();
+		AtomicInteger terminados = new AtomicInteger();
+		Map<String, String> errores = Collections.synchronizedMap(new LinkedHashMap<>());
+		ExecutorService pool = Hilos.ejecutorFijo("informes-lote", Math.min(hilos, Math.max(1, total)));
+
+		CompletableFuture<?>[] tareas = new CompletableFuture<?>[total];
+		for (int i = 0; i < total; i++) {
+			String codigo = codigos.get(i);
+			tareas[i] = CompletableFuture.runAsync(() -> {
+				try {
+					exportar(codigo);
+					generados.incrementAndGet();
+				} catch (JRException | SQLException | RuntimeException e) {
+					errores.put(codigo, e.getMessage());
+				}
+				int hechos = terminados.incrementAndGet();
+				if (progreso != null) {
+					double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+					progreso.actualizar(hechos, total, segundos > 0 ? hechos / segundos : 0);
+				}
+			}, pool);
+		}
+		return CompletableFuture.allOf(tareas).handle((r, e) -> {
+			pool.shutdown();
+			synchronized (errores) {
+				return new Resumen(generados.get(), new LinkedHashMap<>(errores), System.nanoTime() - inicio);
+			}
+		});
+	}
+
+	/**
+	 * Rellena el informe de un producto y lo escribe en PDF.
+	 */
+	private void exportar(String codigo) throws JRException, SQLException {
+		Map<String, Object> params = new HashMap<>();
+		params.put(parametro, codigo);
+		JasperPrint print = Creador.rellenar(ruta, params);
+		File pdf = new File(directorio, "informe_" + nombreFichero(codigo) + ".pdf");
+		Medicion m = Metricas.medir("informe.exportarPdf");
+		try {
+			JasperExportManager.exportReportToPdfFile(print, pdf.getAbsolutePath());
+		} finally {
+			m.close();
+		}
+	}
+
+	/**
+	 * Convierte un código en un nombre de fichero válido. Los caracteres no permitidos se
+	 * sustituyen por guiones bajos y, en ese caso, se añade tras una tilde el código en
+	 * hexadecimal, de modo que dos códigos distintos nunca dan el mismo nombre.
+	 */
+	static String nombreFichero(String codigo) {
+		String nombre = codigo.replaceAll("[^\\w-]", "_");
+		if (nombre.equals(codigo)) {
+			return nombre;
+		}
+		StringBuilder sb = new StringBuilder(nombre).append('~');
+		for (byte b : codigo.getBytes(StandardCharsets.UTF_8)) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
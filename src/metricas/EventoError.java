@@ -0,0 +1,26 @@
+package metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JDK Flight Recorder con un error registrado con {@link Metricas#fallo(String, Throwable)}.
+ * Incluye la pila del punto en el que se registra.
+ */
+@Name("examendein.Error")
+@Label("Error")
+@Category({ "ExamenDEIN" })
+@Description("Error en una operación de acceso a datos, informes o interfaz")
+public class EventoError extends jdk.jfr.Event {
+
+	@Label("Operación")
+	String operacion;
+
+	@Label("Tipo")
+	String tipo;
+
+	@Label("Mensaje")
+	String mensaje;
+}
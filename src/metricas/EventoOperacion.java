@@ -0,0 +1,21 @@
+package metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder con la duración de una operación medida con {@link Metricas#medir(String)}.
+ */
+@Name("examendein.Operacion")
+@Label("Operación")
+@Category({ "ExamenDEIN" })
+@Description("Duración de una operación de acceso a datos, informes o interfaz")
+@StackTrace(false)
+public class EventoOperacion extends jdk.jfr.Event {
+
+	@Label("Operación")
+	String operacion;
+}
@@ -0,0 +1,166 @@
+package metricas;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de duraciones sin bloqueos.
+ *
+ * <p>
+ * Las duraciones se agrupan en cubetas logarítmicas con ocho subdivisiones por potencia de dos,
+ * de modo que un percentil se estima con un error menor del 12,5 %. Registrar una duración no
+ * bloquea ni reserva memoria y puede hacerse desde cualquier hilo.
+ * </p>
+ */
+public class Histograma {
+
+	private static final int BITS_SUBCUBETA = 3;
+	private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+	private static final int CUBETAS = (64 - BITS_SUBCUBETA + 1) * SUBCUBETAS;
+
+	private final LongAdder cuenta = new LongAdder();
+	private final LongAdder errores = new LongAdder();
+	private final LongAdder nanosTotales = new LongAdder();
+	private final AtomicLong nanosMaximos = new AtomicLong();
+	private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+
+	/**
+	 * Registra una duración.
+	 *
+	 * @param nanos la duración en nanosegundos
+	 */
+	public void registrar(long nanos) {
+		long valor = Math.max(0, nanos);
+		cuenta.increment();
+		nanosTotales.add(valor);
+		nanosMaximos.accumulateAndGet(valor, Math::max);
+		cubetas.incrementAndGet(cubeta(valor));
+	}
+
+	/**
+	 * Registra una operación fallida. La duración, si se mide, se registra aparte.
+	 */
+	public void registrarError() {
+		errores.increment();
+	}
+
+	/**
+	 * Obtiene el número de duraciones registradas.
+	 *
+	 * @return la cuenta
+	 */
+	public long getCuenta() {
+		return cuenta.sum();
+	}
+
+	/**
+	 * Obtiene el número de errores registrados.
+	 *
+	 * @return los errores
+	 */
+	public long getErrores() {
+		return errores.sum();
+	}
+
+	/**
+	 * Obtiene la duración media.
+	 *
+	 * @return la media en milisegundos, o 0 si no hay registros
+	 */
+	public double getMediaMs() {
+		long n = cuenta.sum();
+		return n > 0 ? nanosTotales.sum() / (n * 1_000_000.0) : 0;
+	}
+
+	/**
+	 * Obtiene la duración máxima.
+	 *
+	 * @return la máxima en milisegundos
+	 */
+	public double getMaximaMs() {
+		return nanosMaximos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Estima un percentil de la duración.
+	 *
+	 * @param percentil el percentil, entre 0 y 100
+	 * @return el límite superior de la cubeta del percentil en milisegundos, o 0 si no hay registros
+	 */
+	public double getPercentilMs(double percentil) {
+		long[] copia = new long[CUBETAS];
+		long total = 0;
+		for (int i = 0; i < CUBETAS; i++) {
+			copia[i] = cubetas.get(i);
+			total += copia[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+		long acumulado = 0;
+		for (int i = 0; i < CUBETAS; i++) {
+			acumulado += copia[i];
+			if (acumulado >= objetivo) {
+				return Math.min(limiteSuperior(i), nanosMaximos.get()) / 1_000_000.0;
+			}
+		}
+		return getMaximaMs();
+	}
+
+	/**
+	 * Vacía el histograma. Los registros concurrentes con el vaciado pueden conservarse.
+	 */
+	public void reiniciar() {
+		cuenta.reset();
+		errores.reset();
+		nanosTotales.reset();
+		nanosMaximos.set(0);
+		for (int i = 0; i < CUBETAS; i++) {
+			cubetas.set(i, 0);
+		}
+	}
+
+	/**
+	 * Escribe los valores del histograma como campos JSON, sin llaves.
+	 *
+	 * @param sb el destino
+	 * @return el mismo destino
+	 */
+	public StringBuilder camposJson(StringBuilder sb) {
+		return sb.append(String.format(Locale.ROOT,
+				"\"cuenta\":%d,\"errores\":%d,\"mediaMs\":%.3f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"maximaMs\":%.3f",
+				getCuenta(), getErrores(), getMediaMs(), getPercentilMs(50), getPercentilMs(99), getMaximaMs()));
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "cuenta=%d, errores=%d, media=%.3f ms, p50=%.3f ms, p99=%.3f ms, máxima=%.3f ms",
+				getCuenta(), getErrores(), getMediaMs(), getPercentilMs(50), getPercentilMs(99), getMaximaMs());
+	}
+
+	/**
+	 * Las duraciones menores que {@link #SUBCUBETAS} tienen una cubeta cada una; las demás se
+	 * reparten por el exponente y los tres bits siguientes al más significativo.
+	 */
+	private static int cubeta(long nanos) {
+		if (nanos < SUBCUBETAS) {
+			return (int) nanos;
+		}
+		int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+		return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + sub;
+	}
+
+	private static long limiteSuperior(int cubeta) {
+		if (cubeta < SUBCUBETAS) {
+			return cubeta;
+		}
+		int exponente = cubeta / SUBCUBETAS + BITS_SUBCUBETA - 1;
+		int sub = cubeta % SUBCUBETAS;
+		long ancho = 1L << (exponente - BITS_SUBCUBETA);
+		return ((SUBCUBETAS + sub) * ancho) + ancho - 1;
+	}
+}
@@ -0,0 +1,56 @@
+package metricas;
+
+/**
+ * Medición en curso de una operación, obtenida con {@link Metricas#medir(String)}. Se termina
+ * al cerrarla, normalmente en el bloque finally que envuelve la operación.
+ */
+public class Medicion implements AutoCloseable {
+
+	/**
+	 * Medición que no hace nada, para cuando las métricas están desactivadas.
+	 */
+	static final Medicion NULA = new Medicion(null, null);
+
+	private final Histograma histograma;
+	private final EventoOperacion evento;
+	private final long inicio;
+	private boolean terminada;
+
+	Medicion(Histograma histograma, EventoOperacion evento) {
+		this.histograma = histograma;
+		this.evento = evento;
+		this.inicio = histograma != null ? System.nanoTime() : 0;
+		if (evento != null) {
+			evento.begin();
+		}
+	}
+
+	/**
+	 * Obtiene el tiempo transcurrido desde el inicio de la medición.
+	 *
+	 * @return los nanosegundos transcurridos, o 0 si no se está midiendo
+	 */
+	public long getNanos() {
+		return histograma != null ? System.nanoTime() - inicio : 0;
+	}
+
+	/**
+	 * Termina la medición y registra su duración. Las siguientes llamadas no hacen nada.
+	 */
+	@Override
+	public void close() {
+		if (terminada || this == NULA) {
+			return;
+		}
+		terminada = true;
+		if (histograma != null) {
+			histograma.registrar(System.nanoTime() - inicio);
+		}
+		if (evento != null) {
+			evento.end();
+			if (evento.shouldCommit()) {
+				evento.commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package metricas;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import utilities.Configuracion;
+import utilities.Json;
+
+/**
+ * Instrumentación de las operaciones costosas de la aplicación.
+ *
+ * <p>
+ * Cada operación medida con {@link #medir(String)} se acumula en un {@link Histograma} con su
+ * nombre (por ejemplo <code>dao.getProducto</code>) y, si hay una grabación de JDK Flight
+ * Recorder en marcha, genera un {@link EventoOperacion}. Los errores registrados con
+ * {@link #fallo(String, Throwable)} se cuentan en el histograma y generan un {@link EventoError}.
+ * </p>
+ *
+ * <p>
+ * Los histogramas se activan con <code>metricas.activas</code>. Sin histogramas ni grabación,
+ * medir devuelve una medición compartida que no hace nada, de modo que el coste es una lectura
+ * de dos campos. Con <code>metricas.volcadoAlSalir</code> se vuelcan al cerrar la JVM.
+ * </p>
+ */
+public class Metricas {
+
+	/**
+	 * Indica si se acumulan los histogramas, configurable con <code>metricas.activas</code>.
+	 */
+	public static final boolean ACTIVAS = Configuracion.getBoolean("metricas.activas", true);
+
+	private static final Map<String, Histograma> HISTOGRAMAS = new ConcurrentHashMap<>();
+
+	private static volatile boolean grabando;
+
+	static {
+		if (FlightRecorder.isAvailable()) {
+			// EL OYENTE NO INICIA FLIGHT RECORDER: SOLO AVISA CUANDO ALGUIEN EMPIEZA O PARA UNA GRABACIÓN
+			FlightRecorder.addListener(new FlightRecorderListener() {
+				@Override
+				public void recorderInitialized(FlightRecorder recorder) {
+					comprobarGrabacion(recorder);
+				}
+
+				@Override
+				public void recordingStateChanged(Recording recording) {
+					comprobarGrabacion(FlightRecorder.getFlightRecorder());
+				}
+			});
+		}
+		String volcado = Configuracion.getString("metricas.volcadoAlSalir", "");
+		if (!volcado.isBlank()) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					volcar(Paths.get(volcado));
+				} catch (IOException e) {
+					// AL SALIR YA NO SE CONSULTAN LOS HISTOGRAMAS: SOLO SE AVISA DE QUE NO HAY VOLCADO
+					System.err.println("No se han podido volcar las métricas en " + volcado + ": " + e.getMessage());
+				}
+			}, "metricas-volcado"));
+		}
+	}
+
+	private Metricas() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+
+	/**
+	 * Empieza a medir una operación.
+	 *
+	 * @param operacion el nombre de la operación
+	 * @return la medición, que registra la duración al cerrarse
+	 */
+	public static Medicion medir(String operacion) {
+		if (!ACTIVAS && !grabando) {
+			return Medicion.NULA;
+		}
+		EventoOperacion evento = null;
+		if (grabando) {
+			evento = new EventoOperacion();
+			evento.operacion = operacion;
+		}
+		return new Medicion(ACTIVAS ? getHistograma(operacion) : null, evento);
+	}
+
+	/**
+	 * Registra una duración medida por otros medios.
+	 *
+	 * @param operacion el nombre de la operación
+	 * @param nanos la duración en nanosegundos
+	 */
+	public static void registrar(String operacion, long nanos) {
+		if (ACTIVAS) {
+			getHistograma(operacion).registrar(nanos);
+		}
+	}
+
+	/**
+	 * Registra el error de una operación.
+	 *
+	 * @param operacion el nombre de la operación
+	 * @param error el error
+	 */
+	public static void fallo(String operacion, Throwable error) {
+		if (ACTIVAS) {
+			getHistograma(operacion).registrarError();
+		}
+		if (grabando) {
+			EventoError evento = new EventoError();
+			if (evento.shouldCommit()) {
+				evento.operacion = operacion;
+				evento.tipo = error != null ? error.getClass().getName() : null;
+				evento.mensaje = error != null ? error.getMessage() : null;
+				evento.commit();
+			}
+		}
+	}
+
+	/**
+	 * Obtiene el histograma de una operación, creándolo si no existe.
+	 *
+	 * @param operacion el nombre de la operación
+	 * @return el histograma
+	 */
+	public static Histograma getHistograma(String operacion) {
+		Histograma histograma = HISTOGRAMAS.get(operacion);
+		return histograma != null ? histograma : HISTOGRAMAS.computeIfAbsent(operacion, o -> new Histograma());
+	}
+
+	/**
+	 * Obtiene los histogramas de todas las operaciones medidas.
+	 *
+	 * @return una copia ordenada por el nombre de la operación
+	 */
+	public static SortedMap<String, Histograma> getHistogramas() {
+		return new TreeMap<>(HISTOGRAMAS);
+	}
+
+	/**
+	 * Vacía todos los histogramas.
+	 */
+	public static void reiniciar() {
+		for (Histograma histograma : HISTOGRAMAS.values()) {
+			histograma.reiniciar();
+		}
+	}
+
+	/**
+	 * Indica si hay una grabación de Flight Recorder en marcha.
+	 *
+	 * @return true si se generan eventos
+	 */
+	public static boolean isGrabando() {
+		return grabando;
+	}
+
+	/**
+	 * Escribe los histogramas como un array JSON de objetos con el campo <code>operacion</code>.
+	 *
+	 * @param sb el destino
+	 * @return el mismo destino
+	 */
+	public static StringBuilder toJson(StringBuilder sb) {
+		sb.append('[');
+		boolean primero = true;
+		for (Map.Entry<String, Histograma> entrada : getHistogramas().entrySet()) {
+			if (!primero) {
+				sb.append(',');
+			}
+			Json.cadena(sb.append("{\"operacion\":"), entrada.getKey()).append(',');
+			entrada.getValue().camposJson(sb).append('}');
+			primero = false;
+		}
+		return sb.append(']');
+	}
+
+	/**
+	 * Vuelca los histogramas a un fichero de texto, una operación por línea. Si hay una grabación
+	 * de Flight Recorder en marcha, vuelca además una copia de lo grabado junto al fichero, con
+	 * la extensión <code>.jfr</code>.
+	 *
+	 * @param destino el fichero de destino
+	 * @return el fichero de la grabación, o null si no se ha volcado
+	 * @throws IOException si no se puede escribir
+	 */
+	public static Path volcar(Path destino) throws IOException {
+		try (Writer salida = Files.newBufferedWriter(destino, StandardCharsets.UTF_8)) {
+			salida.write(String.format(Locale.ROOT, "%-32s %10s %8s %12s %12s %12s %12s%n",
+					"operacion", "cuenta", "errores", "media ms", "p50 ms", "p99 ms", "maxima ms"));
+			for (Map.Entry<String, Histograma> entrada : getHistogramas().entrySet()) {
+				Histograma h = entrada.getValue();
+				salida.write(String.format(Locale.ROOT, "%-32s %10d %8d %12.3f %12.3f %12.3f %12.3f%n",
+						entrada.getKey(), h.getCuenta(), h.getErrores(), h.getMediaMs(),
+						h.getPercentilMs(50), h.getPercentilMs(99), h.getMaximaMs()));
+			}
+		}
+		if (!grabando) {
+			return null;
+		}
+		Path jfr = destino.resolveSibling(destino.getFileName() + ".jfr");
+		try (Recording copia = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+			copia.dump(jfr);
+		}
+		return jfr;
+	}
+
+	private static void comprobarGrabacion(FlightRecorder recorder) {
+		boolean alguna = false;
+		for (Recording recording : recorder.getRecordings()) {
+			alguna |= recording.getState() == RecordingState.RUNNING;
+		}
+		grabando = alguna;
+	}
+}
@@ -2,16 +2,62 @@ package model;
 
 import java.util.Objects;
 
+import excepciones.ProductosException;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
 /**
  * Clase que representa un producto.
+ *
+ * <p>
+ * Para las celdas de las tablas ofrece propiedades de solo lectura de código, nombre, precio y
+ * disponibilidad. Se crean la primera vez que se piden y se reutilizan, de modo que un producto
+ * que nunca se muestra no las crea y volver a mostrarlo no crea objetos nuevos. Los setters
+ * las mantienen al día; una vez pedidas, el producto solo debe modificarse desde el hilo de
+ * JavaFX.
+ * </p>
+ *
+ * <p>
+ * La imagen y la miniatura se pueden cargar bajo demanda desde otro hilo con
+ * {@link #cargarImagen()} y {@link #cargarMiniatura()}, y leerse después desde el hilo de JavaFX.
+ * </p>
  */
 public class Producto {
 
     private String codigo;
     private String nombre;
-    private byte[] imagen;
+    private volatile byte[] imagen;
     private double precio;
     private boolean disponible;
+    private volatile boolean imagenCargada = true;
+    private CargadorImagen cargadorImagen;
+    private volatile byte[] miniatura;
+    private volatile boolean miniaturaCargada = true;
+    private CargadorImagen cargadorMiniatura;
+    private long version;
+    private ReadOnlyStringWrapper codigoPropiedad;
+    private ReadOnlyStringWrapper nombrePropiedad;
+    private ReadOnlyObjectWrapper<Double> precioPropiedad;
+    private ReadOnlyBooleanWrapper disponiblePropiedad;
+    
+    /**
+     * Interfaz funcional para cargar bajo demanda la imagen de un producto.
+     */
+    @FunctionalInterface
+    public static interface CargadorImagen {
+    	/**
+    	 * Carga la imagen del producto.
+    	 * 
+    	 * @param codigo el código del producto
+    	 * @return la imagen del producto o null si no tiene
+    	 * @throws ProductosException si ocurre un error al cargar la imagen
+    	 */
+    	byte[] cargar(String codigo) throws ProductosException;
+    }
     
     /**
      * Constructor por defecto.
@@ -36,6 +82,9 @@ public class Producto {
      */
 	public Producto setCodigo(String codigo) {
 		this.codigo = codigo;
+		if (codigoPropiedad != null) {
+			codigoPropiedad.set(codigo);
+		}
 		return this;
 	}
 
@@ -56,26 +105,166 @@ public class Producto {
      */
 	public Producto setNombre(String nombre) {
 		this.nombre = nombre;
+		if (nombrePropiedad != null) {
+			nombrePropiedad.set(nombre);
+		}
 		return this;
 	}
 
     /**
-     * Obtiene la imagen del producto.
+     * Obtiene la imagen del producto que está en memoria.
      * 
-     * @return la imagen del producto
+     * @return la imagen del producto, o null si no tiene o todavía no se ha cargado
+     * @see #cargarImagen()
      */
 	public byte[] getImagen() {
 		return imagen;
 	}
 
     /**
-     * Establece la imagen del producto.
+     * Obtiene la imagen del producto, cargándola con su {@link CargadorImagen} si el producto
+     * se leyó sin ella. La imagen cargada se conserva para las siguientes llamadas.
+     * 
+     * @return la imagen del producto, o null si no tiene
+     * @throws ProductosException si ocurre un error al cargar la imagen; se puede volver a intentar
+     */
+	public byte[] cargarImagen() throws ProductosException {
+		if (!imagenCargada) {
+			synchronized (this) {
+				if (!imagenCargada) {
+					imagen = cargadorImagen.cargar(codigo);
+					imagenCargada = true;
+				}
+			}
+		}
+		return imagen;
+	}
+
+    /**
+     * Establece la imagen del producto. La miniatura que tuviera se descarta, porque ya no tiene
+     * por qué corresponder a la imagen; se puede establecer después o generar al guardar.
      * 
      * @param imagen la imagen del producto
      * @return la instancia actual del producto
      */
-	public Producto setImagen(byte[] imagen) {
+	public synchronized Producto setImagen(byte[] imagen) {
 		this.imagen = imagen;
+		this.imagenCargada = true;
+		this.cargadorImagen = null;
+		this.miniatura = null;
+		this.miniaturaCargada = true;
+		this.cargadorMiniatura = null;
+		return this;
+	}
+	
+    /**
+     * Establece el cargador que obtendrá la imagen la primera vez que se pida.
+     * 
+     * @param cargadorImagen el cargador de la imagen
+     * @return la instancia actual del producto
+     */
+	public synchronized Producto setCargadorImagen(CargadorImagen cargadorImagen) {
+		this.imagen = null;
+		this.imagenCargada = cargadorImagen == null;
+		this.cargadorImagen = cargadorImagen;
+		return this;
+	}
+	
+    /**
+     * Indica si la imagen ya está en memoria.
+     * 
+     * @return true si la imagen ya se ha cargado, false si se cargará bajo demanda
+     */
+	public boolean isImagenCargada() {
+		return imagenCargada;
+	}
+
+    /**
+     * Obtiene la miniatura de la imagen del producto que está en memoria.
+     * 
+     * @return la miniatura del producto, o null si no tiene o todavía no se ha cargado
+     * @see #cargarMiniatura()
+     */
+	public byte[] getMiniatura() {
+		return miniatura;
+	}
+
+    /**
+     * Obtiene la miniatura de la imagen del producto, cargándola con su cargador de miniatura
+     * la primera vez si el producto se leyó sin ella.
+     * 
+     * @return la miniatura del producto, o null si no tiene
+     * @throws ProductosException si ocurre un error al cargar la miniatura; se puede volver a intentar
+     */
+	public byte[] cargarMiniatura() throws ProductosException {
+		if (!miniaturaCargada) {
+			synchronized (this) {
+				if (!miniaturaCargada) {
+					miniatura = cargadorMiniatura.cargar(codigo);
+					miniaturaCargada = true;
+				}
+			}
+		}
+		return miniatura;
+	}
+
+    /**
+     * Establece la miniatura de la imagen del producto.
+     * 
+     * @param miniatura la miniatura del producto
+     * @return la instancia actual del producto
+     */
+	public synchronized Producto setMiniatura(byte[] miniatura) {
+		this.miniatura = miniatura;
+		this.miniaturaCargada = true;
+		this.cargadorMiniatura = null;
+		return this;
+	}
+	
+    /**
+     * Establece el cargador que obtendrá la miniatura la primera vez que se pida.
+     * 
+     * @param cargadorMiniatura el cargador de la miniatura
+     * @return la instancia actual del producto
+     */
+	public synchronized Producto setCargadorMiniatura(CargadorImagen cargadorMiniatura) {
+		this.miniatura = null;
+		this.miniaturaCargada = cargadorMiniatura == null;
+		this.cargadorMiniatura = cargadorMiniatura;
+		return this;
+	}
+
+    /**
+     * Toma la imagen y la miniatura de otro producto sin cargarlas: las que el otro ya tiene en
+     * memoria se comparten y las demás se cargarán con su mismo cargador la primera vez que se
+     * pidan. Una modificación parcial de este producto no las vuelve a escribir.
+     * 
+     * @param otro el producto del que se toman las imágenes
+     * @return la instancia actual del producto
+     */
+	public Producto setImagenesDe(Producto otro) {
+		byte[] otraImagen;
+		boolean otraImagenCargada;
+		CargadorImagen otroCargadorImagen;
+		byte[] otraMiniatura;
+		boolean otraMiniaturaCargada;
+		CargadorImagen otroCargadorMiniatura;
+		synchronized (otro) {
+			otraImagen = otro.imagen;
+			otraImagenCargada = otro.imagenCargada;
+			otroCargadorImagen = otro.cargadorImagen;
+			otraMiniatura = otro.miniatura;
+			otraMiniaturaCargada = otro.miniaturaCargada;
+			otroCargadorMiniatura = otro.cargadorMiniatura;
+		}
+		synchronized (this) {
+			this.imagen = otraImagen;
+			this.imagenCargada = otraImagenCargada;
+			this.cargadorImagen = otroCargadorImagen;
+			this.miniatura = otraMiniatura;
+			this.miniaturaCargada = otraMiniaturaCargada;
+			this.cargadorMiniatura = otroCargadorMiniatura;
+		}
 		return this;
 	}
 
@@ -96,6 +285,9 @@ public class Producto {
      */
 	public Producto setPrecio(double precio) {
 		this.precio = precio;
+		if (precioPropiedad != null) {
+			precioPropiedad.set(precio);
+		}
 		return this;
 	}
 
@@ -116,9 +308,96 @@ public class Producto {
      */
 	public Producto setDisponible(boolean disponible) {
 		this.disponible = disponible;
+		if (disponiblePropiedad != null) {
+			disponiblePropiedad.set(disponible);
+		}
+		return this;
+	}
+
+    /**
+     * Obtiene la versión de la fila con la que se leyó el producto.
+     * 
+     * @return la versión, o 0 si no se conoce
+     */
+	public long getVersion() {
+		return version;
+	}
+
+    /**
+     * Establece la versión de la fila con la que se leyó el producto. Las modificaciones
+     * de un producto con versión solo se aplican si la fila sigue teniendo esa versión.
+     * 
+     * @param version la versión, o 0 si no se conoce
+     * @return la instancia actual del producto
+     */
+	public Producto setVersion(long version) {
+		this.version = version;
 		return this;
 	}
 
+    /**
+     * Obtiene la propiedad de solo lectura del código, para las celdas de una tabla.
+     * 
+     * @return la propiedad, la misma en cada llamada
+     */
+	public ReadOnlyStringProperty codigoProperty() {
+		if (codigoPropiedad == null) {
+			codigoPropiedad = new ReadOnlyStringWrapper(this, "codigo", codigo);
+		}
+		return codigoPropiedad.getReadOnlyProperty();
+	}
+
+    /**
+     * Obtiene la propiedad de solo lectura del nombre, para las celdas de una tabla.
+     * 
+     * @return la propiedad, la misma en cada llamada
+     */
+	public ReadOnlyStringProperty nombreProperty() {
+		if (nombrePropiedad == null) {
+			nombrePropiedad = new ReadOnlyStringWrapper(this, "nombre", nombre);
+		}
+		return nombrePropiedad.getReadOnlyProperty();
+	}
+
+    /**
+     * Obtiene la propiedad de solo lectura del precio, para las celdas de una tabla.
+     * 
+     * @return la propiedad, la misma en cada llamada
+     */
+	public ReadOnlyObjectProperty<Double> precioProperty() {
+		if (precioPropiedad == null) {
+			precioPropiedad = new ReadOnlyObjectWrapper<>(this, "precio", precio);
+		}
+		return precioPropiedad.getReadOnlyProperty();
+	}
+
+    /**
+     * Obtiene la propiedad de solo lectura de la disponibilidad, para las celdas de una tabla.
+     * 
+     * @return la propiedad, la misma en cada llamada
+     */
+	public ReadOnlyBooleanProperty disponibleProperty() {
+		if (disponiblePropiedad == null) {
+			disponiblePropiedad = new ReadOnlyBooleanWrapper(this, "disponible", disponible);
+		}
+		return disponiblePropiedad.getReadOnlyProperty();
+	}
+
+    /**
+     * Compara los datos del producto con los de otro, sin tener en cuenta la imagen.
+     * 
+     * @param otro el producto con el que comparar
+     * @return true si código, nombre, precio, disponibilidad y versión coinciden
+     */
+	public boolean mismoContenido(Producto otro) {
+		return otro != null
+				&& Objects.equals(codigo, otro.codigo)
+				&& Objects.equals(nombre, otro.nombre)
+				&& Double.compare(precio, otro.precio) == 0
+				&& disponible == otro.disponible
+				&& version == otro.version;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(codigo);
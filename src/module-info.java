@@ -12,6 +12,8 @@ module EjerciciosJFX_ActividadL {
 	requires javafx.media;
 	requires javafx.graphics;
 	requires jasperreports;
+	requires jdk.httpserver;
+	requires jdk.jfr;
 	opens application to javafx.graphics, javafx.fxml;
 	opens controller to javafx.graphics, javafx.fxml;
 	opens model to javafx.base;
@@ -0,0 +1,69 @@
+package servidor;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import dao.CriteriosBusqueda;
+import excepciones.ProductosException;
+import model.Producto;
+
+/**
+ * Origen de los productos que sirve {@link ServidorProductos}.
+ */
+public interface FuenteProductos {
+
+	/**
+	 * Obtiene todos los productos, sin imágenes, ordenados por código.
+	 * 
+	 * @return la lista de productos
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	List<Producto> getProductos() throws ProductosException;
+
+	/**
+	 * Busca los productos que cumplen unos criterios, sin imágenes.
+	 * 
+	 * @param criterios los criterios de filtrado, orden y límite
+	 * @return la lista de productos encontrados
+	 * @throws ProductosException si ocurre un error al recuperar los productos
+	 */
+	List<Producto> buscarProductos(CriteriosBusqueda criterios) throws ProductosException;
+
+	/**
+	 * Obtiene un producto.
+	 * 
+	 * @param codigo el código del producto
+	 * @return el producto, o null si no existe
+	 * @throws ProductosException si ocurre un error al recuperar el producto
+	 */
+	Producto getProducto(String codigo) throws ProductosException;
+
+	/**
+	 * Añade un producto.
+	 * 
+	 * @param producto el producto a añadir
+	 * @throws ProductosException si ocurre un error al añadir el producto
+	 * @throws SQLException si ocurre un error de acceso a datos, por ejemplo un código duplicado
+	 */
+	void anadirProducto(Producto producto) throws ProductosException, SQLException;
+
+	/**
+	 * Modifica las columnas cambiadas de un producto si no ha cambiado desde que se leyó.
+	 * 
+	 * @param anterior el producto tal como se leyó
+	 * @param producto el producto modificado
+	 * @throws excepciones.ConflictoVersionException si el producto ha cambiado desde que se leyó
+	 * @throws ProductosException si ocurre un error al modificar el producto
+	 * @throws SQLException si ocurre un error de acceso a datos
+	 */
+	void modificarProducto(Producto anterior, Producto producto) throws ProductosException, SQLException;
+
+	/**
+	 * Elimina un producto.
+	 * 
+	 * @param producto el producto a eliminar
+	 * @throws ProductosException si ocurre un error al eliminar el producto
+	 * @throws SQLException si ocurre un error de acceso a datos
+	 */
+	void borrarProducto(Producto producto) throws ProductosException, SQLException;
+}
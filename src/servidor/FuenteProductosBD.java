@@ -0,0 +1,47 @@
+package servidor;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import dao.CriteriosBusqueda;
+import dao.DAOProducto;
+import dao.DAOProductoCacheado;
+import excepciones.ProductosException;
+import model.Producto;
+
+/**
+ * Fuente de productos respaldada por la base de datos, a través de {@link DAOProductoCacheado}
+ * y del pool de conexiones de la aplicación. Las búsquedas se resuelven en la base de datos.
+ */
+public class FuenteProductosBD implements FuenteProductos {
+
+	@Override
+	public List<Producto> getProductos() throws ProductosException {
+		return DAOProductoCacheado.getProductos();
+	}
+
+	@Override
+	public List<Producto> buscarProductos(CriteriosBusqueda criterios) throws ProductosException {
+		return DAOProducto.buscarProductos(criterios);
+	}
+
+	@Override
+	public Producto getProducto(String codigo) throws ProductosException {
+		return DAOProductoCacheado.getProducto(codigo);
+	}
+
+	@Override
+	public void anadirProducto(Producto producto) throws ProductosException, SQLException {
+		DAOProductoCacheado.anadirProducto(producto);
+	}
+
+	@Override
+	public void modificarProducto(Producto anterior, Producto producto) throws ProductosException, SQLException {
+		DAOProductoCacheado.modificarProducto(anterior, producto);
+	}
+
+	@Override
+	public void borrarProducto(Producto producto) throws ProductosException, SQLException {
+		DAOProductoCacheado.borrarProducto(producto);
+	}
+}
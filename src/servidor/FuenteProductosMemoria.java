@@ -0,0 +1,127 @@
+package servidor;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import dao.CriteriosBusqueda;
+import excepciones.ConflictoVersionException;
+import model.Producto;
+
+/**
+ * Fuente de productos en memoria, para probar el servidor sin base de datos.
+ * 
+ * <p>
+ * Reproduce el comportamiento de la tabla: los productos se ordenan por código y añadir un
+ * código repetido lanza una {@link SQLIntegrityConstraintViolationException}.
+ * </p>
+ */
+public class FuenteProductosMemoria implements FuenteProductos {
+
+	private final ConcurrentNavigableMap<String, Producto> productos = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Crea la fuente con unos productos de ejemplo.
+	 * 
+	 * @return la fuente
+	 */
+	public static FuenteProductosMemoria conEjemplos() {
+		FuenteProductosMemoria fuente = new FuenteProductosMemoria();
+		fuente.poner(new Producto().setCodigo("LIM33").setNombre("LIMONES").setPrecio(1.89).setDisponible(true));
+		fuente.poner(new Producto().setCodigo("NAR44").setNombre("NARANJAS").setPrecio(1.69).setDisponible(false));
+		fuente.poner(new Producto().setCodigo("PLT32").setNombre("PLATANOS").setPrecio(1.75).setDisponible(true));
+		return fuente;
+	}
+
+	@Override
+	public List<Producto> getProductos() {
+		return new ArrayList<>(productos.values());
+	}
+
+	@Override
+	public List<Producto> buscarProductos(CriteriosBusqueda criterios) {
+		List<Producto> encontrados = new ArrayList<>();
+		for (Producto producto : productos.values()) {
+			if (cumple(producto, criterios)) {
+				encontrados.add(producto);
+			}
+		}
+		Comparator<Producto> orden;
+		switch (criterios.getOrden()) {
+		case NOMBRE:
+			orden = Comparator.comparing(Producto::getNombre, String.CASE_INSENSITIVE_ORDER);
+			break;
+		case PRECIO:
+			orden = Comparator.comparingDouble(Producto::getPrecio);
+			break;
+		case DISPONIBLE:
+			orden = Comparator.comparing(Producto::isDisponible);
+			break;
+		default:
+			orden = (a, b) -> 0;
+		}
+		orden = orden.thenComparing(Producto::getCodigo);
+		encontrados.sort(criterios.isDescendente() ? orden.reversed() : orden);
+		if (criterios.getLimite() > 0) {
+			int desde = Math.min(criterios.getDesplazamiento(), encontrados.size());
+			return new ArrayList<>(encontrados.subList(desde, Math.min(desde + criterios.getLimite(), encontrados.size())));
+		}
+		return encontrados;
+	}
+
+	@Override
+	public Producto getProducto(String codigo) {
+		return codigo != null ? productos.get(codigo) : null;
+	}
+
+	@Override
+	public void anadirProducto(Producto producto) throws SQLIntegrityConstraintViolationException {
+		if (productos.putIfAbsent(producto.getCodigo(), producto.setVersion(1)) != null) {
+			throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + producto.getCodigo() + "' for key 'PRIMARY'");
+		}
+	}
+
+	@Override
+	public synchronized void modificarProducto(Producto anterior, Producto producto) throws ConflictoVersionException {
+		Producto actual = productos.get(producto.getCodigo());
+		long version = anterior.getVersion();
+		if (actual == null || (version > 0 && actual.getVersion() != version)) {
+			throw new ConflictoVersionException(producto.getCodigo(), version, actual != null ? actual.getVersion() : 0);
+		}
+		productos.put(producto.getCodigo(), producto.setVersion(actual.getVersion() + 1));
+	}
+
+	@Override
+	public void borrarProducto(Producto producto) {
+		productos.remove(producto.getCodigo());
+	}
+
+	/**
+	 * Aplica los filtros como la consulta SQL: los textos sin distinguir mayúsculas.
+	 */
+	private static boolean cumple(Producto producto, CriteriosBusqueda criterios) {
+		String prefijo = criterios.getPrefijoCodigo();
+		if (prefijo != null && !producto.getCodigo().regionMatches(true, 0, prefijo, 0, prefijo.length())) {
+			return false;
+		}
+		String nombre = criterios.getNombreContiene();
+		if (nombre != null && !producto.getNombre().toLowerCase(Locale.ROOT).contains(nombre.toLowerCase(Locale.ROOT))) {
+			return false;
+		}
+		if (criterios.getDisponible() != null && criterios.getDisponible() != producto.isDisponible()) {
+			return false;
+		}
+		if (criterios.getPrecioMinimo() != null && producto.getPrecio() < criterios.getPrecioMinimo()) {
+			return false;
+		}
+		return criterios.getPrecioMaximo() == null || producto.getPrecio() <= criterios.getPrecioMaximo();
+	}
+
+	private void poner(Producto producto) {
+		productos.put(producto.getCodigo(), producto.setVersion(1));
+	}
+}
@@ -0,0 +1,111 @@
+package servidor;
+
+import java.util.Locale;
+
+import metricas.Histograma;
+import utilities.Json;
+
+/**
+ * Latencias de un endpoint del servidor.
+ * 
+ * <p>
+ * Las latencias se agrupan en un {@link Histograma}, de modo que registrar una petición no
+ * bloquea ni reserva memoria. Los percentiles se estiman con el límite superior de la cubeta
+ * en la que caen.
+ * </p>
+ */
+public class MetricasEndpoint {
+
+	private final String nombre;
+	private final Histograma histograma = new Histograma();
+
+	/**
+	 * Crea las métricas de un endpoint.
+	 * 
+	 * @param nombre el nombre del endpoint, por ejemplo <code>GET /productos</code>
+	 */
+	public MetricasEndpoint(String nombre) {
+		this.nombre = nombre;
+	}
+
+	/**
+	 * Registra una petición atendida.
+	 * 
+	 * @param nanos la duración de la petición
+	 * @param error true si la respuesta fue un error del servidor
+	 */
+	public void registrar(long nanos, boolean error) {
+		if (error) {
+			histograma.registrarError();
+		}
+		histograma.registrar(nanos);
+	}
+
+	/**
+	 * Obtiene el nombre del endpoint.
+	 * 
+	 * @return el nombre
+	 */
+	public String getNombre() {
+		return nombre;
+	}
+
+	/**
+	 * Obtiene el número de peticiones atendidas.
+	 * 
+	 * @return las peticiones
+	 */
+	public long getPeticiones() {
+		return histograma.getCuenta();
+	}
+
+	/**
+	 * Obtiene el número de peticiones que terminaron con un error del servidor.
+	 * 
+	 * @return los errores
+	 */
+	public long getErrores() {
+		return histograma.getErrores();
+	}
+
+	/**
+	 * Obtiene la latencia media.
+	 * 
+	 * @return la media en milisegundos, o 0 si no hay peticiones
+	 */
+	public double getMediaMs() {
+		return histograma.getMediaMs();
+	}
+
+	/**
+	 * Obtiene la latencia máxima.
+	 * 
+	 * @return la máxima en milisegundos
+	 */
+	public double getMaximaMs() {
+		return histograma.getMaximaMs();
+	}
+
+	/**
+	 * Estima un percentil de la latencia.
+	 * 
+	 * @param percentil el percentil, entre 0 y 100
+	 * @return el límite superior de la cubeta del percentil en milisegundos, o 0 si no hay peticiones
+	 */
+	public double getPercentilMs(double percentil) {
+		return histograma.getPercentilMs(percentil);
+	}
+
+	/**
+	 * Escribe las métricas como un objeto JSON.
+	 * 
+	 * @param sb el destino
+	 * @return el mismo destino
+	 */
+	public StringBuilder toJson(StringBuilder sb) {
+		Json.cadena(sb.append("{\"endpoint\":"), nombre);
+		return sb.append(String.format(Locale.ROOT,
+				",\"peticiones\":%d,\"errores\":%d,\"mediaMs\":%.3f,\"p50Ms\":%.3f,\"p95Ms\":%.3f,\"p99Ms\":%.3f,\"maximaMs\":%.3f}",
+				getPeticiones(), getErrores(), getMediaMs(), getPercentilMs(50), getPercentilMs(95), getPercentilMs(99), getMaximaMs()));
+	}
+}
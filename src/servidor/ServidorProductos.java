@@ -0,0 +1,533 @@
+package servidor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dao.CriteriosBusqueda;
+import dao.DAOBase;
+import dao.EstadisticasPool;
+import excepciones.ConflictoVersionException;
+import excepciones.ProductosException;
+import metricas.Metricas;
+import model.Producto;
+import utilities.Configuracion;
+import utilities.ErroresValidacion;
+import utilities.Hilos;
+import utilities.Json;
+import utilities.StringUtils;
+import utilities.Validador;
+import utilities.ValidadorProducto;
+
+/**
+ * Servidor HTTP sin interfaz gráfica que expone el CRUD de productos en JSON.
+ *
+ * <p>
+ * Uso: <code>java servidor.ServidorProductos [--puerto N] [--memoria]</code>. Por defecto usa la
+ * base de datos de <code>configuration.properties</code> a través del pool de conexiones; con
+ * <code>--memoria</code> sirve unos productos de ejemplo en memoria.
+ * </p>
+ *
+ * <ul>
+ * <li><code>GET /productos</code>: lista los productos. Con parámetros los filtra y ordena la
+ * base de datos: <code>codigo</code> (prefijo), <code>nombre</code> (contiene), <code>min</code>,
+ * <code>max</code>, <code>disponible</code>, <code>orden</code> (<code>codigo</code>,
+ * <code>nombre</code>, <code>precio</code> o <code>disponible</code>; con <code>-</code> delante,
+ * descendente), <code>limite</code> y <code>desde</code>.</li>
+ * <li><code>GET /productos/{codigo}</code>: obtiene un producto.</li>
+ * <li><code>POST /productos</code>: añade un producto.</li>
+ * <li><code>PUT /productos/{codigo}</code>: modifica los campos enviados de un producto. Si se
+ * envía <code>version</code> (la que devuelve <code>GET</code>) y el producto ha cambiado desde
+ * entonces, responde 409 con la versión actual.</li>
+ * <li><code>DELETE /productos/{codigo}</code>: elimina un producto.</li>
+ * <li><code>GET /metricas</code>: latencias por endpoint, por operación medida con {@link Metricas} y, con base de datos, estado del pool.</li>
+ * </ul>
+ *
+ * <p>
+ * Cada petición se atiende en su propio hilo virtual si la JVM los soporta. Las imágenes no
+ * se envían ni se reciben: al modificar un producto se conservan las que tenga.
+ * </p>
+ */
+public class ServidorProductos {
+
+	/**
+	 * Puerto por defecto, configurable con <code>servidor.puerto</code>.
+	 */
+	public static final int PUERTO = Configuracion.getInt("servidor.puerto", 8080);
+
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final String RAIZ = "/productos";
+
+	private static final String LISTAR = "GET " + RAIZ;
+	private static final String OBTENER = "GET " + RAIZ + "/{codigo}";
+	private static final String ANADIR = "POST " + RAIZ;
+	private static final String MODIFICAR = "PUT " + RAIZ + "/{codigo}";
+	private static final String BORRAR = "DELETE " + RAIZ + "/{codigo}";
+
+	private final FuenteProductos fuente;
+	private final boolean conPool;
+	private final Map<String, MetricasEndpoint> metricas;
+	private HttpServer servidor;
+	private ExecutorService ejecutor;
+
+	/**
+	 * Respuesta de un endpoint.
+	 */
+	private static final class Respuesta {
+		private final int estado;
+		private final String cuerpo;
+
+		Respuesta(int estado, String cuerpo) {
+			this.estado = estado;
+			this.cuerpo = cuerpo;
+		}
+	}
+
+	/**
+	 * Crea el servidor.
+	 *
+	 * @param fuente el origen de los productos
+	 * @param conPool true si la fuente usa el pool de conexiones, para incluir su estado en las métricas
+	 */
+	public ServidorProductos(FuenteProductos fuente, boolean conPool) {
+		this.fuente = fuente;
+		this.conPool = conPool;
+		Map<String, MetricasEndpoint> mapa = new LinkedHashMap<>();
+		for (String endpoint : new String[] { LISTAR, OBTENER, ANADIR, MODIFICAR, BORRAR }) {
+			mapa.put(endpoint, new MetricasEndpoint(endpoint));
+		}
+		this.metricas = Collections.unmodifiableMap(mapa);
+	}
+
+	/**
+	 * Arranca el servidor.
+	 *
+	 * @param puerto el puerto, o 0 para uno libre cualquiera
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public void iniciar(int puerto) throws IOException {
+		servidor = HttpServer.create(new InetSocketAddress(puerto), 0);
+		ejecutor = Hilos.ejecutorPorTarea("http");
+		servidor.setExecutor(ejecutor);
+		servidor.createContext(RAIZ, this::atenderProductos);
+		servidor.createContext("/metricas", this::atenderMetricas);
+		servidor.start();
+	}
+
+	/**
+	 * Detiene el servidor, esperando como mucho un segundo a las peticiones en curso.
+	 */
+	public void detener() {
+		if (servidor != null) {
+			servidor.stop(1);
+			ejecutor.shutdown();
+			servidor = null;
+		}
+	}
+
+	/**
+	 * Obtiene el puerto en el que escucha el servidor.
+	 *
+	 * @return el puerto, o -1 si no está arrancado
+	 */
+	public int getPuerto() {
+		return servidor != null ? servidor.getAddress().getPort() : -1;
+	}
+
+	/**
+	 * Obtiene las métricas de un endpoint.
+	 *
+	 * @param endpoint el método y la ruta, por ejemplo <code>GET /productos/{codigo}</code>
+	 * @return las métricas, o null si el endpoint no existe
+	 */
+	public MetricasEndpoint getMetricas(String endpoint) {
+		return metricas.get(endpoint);
+	}
+
+	private void atenderProductos(HttpExchange intercambio) throws IOException {
+		long inicio = System.nanoTime();
+		String metodo = intercambio.getRequestMethod();
+		String ruta = intercambio.getRequestURI().getPath();
+		String codigo = ruta.length() > RAIZ.length() + 1 ? ruta.substring(RAIZ.length() + 1) : null;
+		String endpoint = metodo + " " + RAIZ + (codigo != null ? "/{codigo}" : "");
+		if (!ruta.equals(RAIZ) && !ruta.equals(RAIZ + "/") && (codigo == null || codigo.indexOf('/') >= 0)) {
+			responder(intercambio, new Respuesta(404, Json.mensaje("error", "Ruta no encontrada")));
+			return;
+		}
+		MetricasEndpoint metrica = metricas.get(endpoint);
+		if (metrica == null) {
+			responder(intercambio, new Respuesta(405, Json.mensaje("error", "Método no permitido")));
+			return;
+		}
+
+		Respuesta respuesta;
+		try {
+			switch (endpoint) {
+			case LISTAR:
+				String consulta = intercambio.getRequestURI().getRawQuery();
+				respuesta = new Respuesta(200, Json.productos(!StringUtils.isEmpty(consulta)
+						? fuente.buscarProductos(criterios(consulta))
+						: fuente.getProductos()));
+				break;
+			case OBTENER:
+				respuesta = obtener(codigo);
+				break;
+			case ANADIR:
+				respuesta = anadir(leerCuerpo(intercambio));
+				break;
+			case MODIFICAR:
+				respuesta = modificar(codigo, leerCuerpo(intercambio));
+				break;
+			default:
+				respuesta = borrar(codigo);
+			}
+		} catch (IllegalArgumentException e) {
+			respuesta = new Respuesta(400, Json.mensaje("error", e.getMessage()));
+		} catch (ProductosException | SQLException e) {
+			if (esDuplicado(e)) {
+				respuesta = new Respuesta(409, Json.mensaje("error", "Ya existe un producto con ese código"));
+			} else {
+				respuesta = errorInterno(endpoint, e);
+			}
+		} catch (RuntimeException e) {
+			respuesta = errorInterno(endpoint, e);
+		}
+		try {
+			responder(intercambio, respuesta);
+		} finally {
+			metrica.registrar(System.nanoTime() - inicio, respuesta.estado >= 500);
+		}
+	}
+
+	/**
+	 * Registra un error inesperado y responde sin dar detalles internos al cliente.
+	 */
+	private static Respuesta errorInterno(String endpoint, Throwable e) {
+		Metricas.fallo("servidor." + endpoint, e);
+		return new Respuesta(500, Json.mensaje("error", "Error interno del servidor"));
+	}
+
+	private Respuesta obtener(String codigo) throws ProductosException {
+		Producto producto = fuente.getProducto(codigo);
+		if (producto == null) {
+			return new Respuesta(404, Json.mensaje("error", "No existe el producto " + codigo));
+		}
+		return new Respuesta(200, Json.producto(new StringBuilder(), producto).toString());
+	}
+
+	private Respuesta anadir(String cuerpo) throws ProductosException, SQLException {
+		Map<String, Object> campos = Json.leerObjeto(cuerpo);
+		String codigo = texto(campos, "codigo");
+		Respuesta invalida = validar(false, codigo, texto(campos, "nombre"), texto(campos, "precio"));
+		if (invalida != null) {
+			return invalida;
+		}
+		if (fuente.getProducto(codigo.trim()) != null) {
+			return new Respuesta(409, Json.mensaje("error", "Ya existe un producto con ese código"));
+		}
+		Producto producto = new Producto()
+				.setCodigo(codigo.trim())
+				.setNombre(texto(campos, "nombre").trim())
+				.setPrecio(precio(texto(campos, "precio")))
+				.setDisponible(booleano(campos, "disponible", false));
+		fuente.anadirProducto(producto);
+		return new Respuesta(201, Json.producto(new StringBuilder(), producto).toString());
+	}
+
+	private Respuesta modificar(String codigo, String cuerpo) throws ProductosException, SQLException {
+		Map<String, Object> campos = Json.leerObjeto(cuerpo);
+		Long version = campos.get("version") != null ? version(texto(campos, "version")) : null;
+		for (int intento = 0;; intento++) {
+			Producto actual = fuente.getProducto(codigo);
+			if (actual == null) {
+				return new Respuesta(404, Json.mensaje("error", "No existe el producto " + codigo));
+			}
+			if (version != null && version != actual.getVersion()) {
+				return conflicto(new ConflictoVersionException(codigo, version, actual.getVersion()));
+			}
+			// LOS CAMPOS QUE NO SE ENVÍAN CONSERVAN SU VALOR SIN VOLVER A VALIDARLO
+			String nombre = enviado(campos, "nombre");
+			String precio = enviado(campos, "precio");
+			Respuesta invalida = validar(true, codigo, nombre, precio);
+			if (invalida != null) {
+				return invalida;
+			}
+			// SE TRABAJA SOBRE UNA COPIA PARA NO ALTERAR EL PRODUCTO EN CACHÉ SI LA ESCRITURA FALLA;
+			// LAS IMÁGENES SE TOMAN SIN CARGARLAS, ASÍ QUE NI SE LEEN NI SE VUELVEN A ESCRIBIR
+			Producto producto = new Producto()
+					.setCodigo(actual.getCodigo())
+					.setNombre(nombre != null ? nombre.trim() : actual.getNombre())
+					.setPrecio(precio != null ? precio(precio) : actual.getPrecio())
+					.setDisponible(booleano(campos, "disponible", actual.isDisponible()))
+					.setImagenesDe(actual);
+			try {
+				fuente.modificarProducto(actual, producto);
+				return new Respuesta(200, Json.producto(new StringBuilder(), producto).toString());
+			} catch (ConflictoVersionException e) {
+				// SIN VERSIÓN EN LA PETICIÓN, EL CONFLICTO PUEDE VENIR DE UNA COPIA ANTIGUA EN LA CACHÉ: SE REINTENTA UNA VEZ
+				if (version != null || intento > 0) {
+					return conflicto(e);
+				}
+			}
+		}
+	}
+
+	private static Respuesta conflicto(ConflictoVersionException e) {
+		StringBuilder sb = new StringBuilder("{\"error\":");
+		Json.cadena(sb, e.getMessage());
+		sb.append(",\"version\":").append(e.getVersionActual());
+		return new Respuesta(409, sb.append('}').toString());
+	}
+
+	private Respuesta borrar(String codigo) throws ProductosException, SQLException {
+		Producto producto = fuente.getProducto(codigo);
+		if (producto == null) {
+			return new Respuesta(404, Json.mensaje("error", "No existe el producto " + codigo));
+		}
+		fuente.borrarProducto(producto);
+		return new Respuesta(204, null);
+	}
+
+	/**
+	 * Interpreta los parámetros de búsqueda de <code>GET /productos</code>.
+	 *
+	 * @throws IllegalArgumentException si algún parámetro no es válido
+	 */
+	private static CriteriosBusqueda criterios(String consulta) {
+		CriteriosBusqueda criterios = new CriteriosBusqueda();
+		for (String parametro : consulta.split("&")) {
+			if (parametro.isEmpty()) {
+				continue;
+			}
+			int igual = parametro.indexOf('=');
+			String clave = URLDecoder.decode(igual >= 0 ? parametro.substring(0, igual) : parametro, StandardCharsets.UTF_8);
+			String valor = igual >= 0 ? URLDecoder.decode(parametro.substring(igual + 1), StandardCharsets.UTF_8) : "";
+			switch (clave) {
+			case "codigo":
+				criterios.setPrefijoCodigo(valor);
+				break;
+			case "nombre":
+				criterios.setNombreContiene(valor);
+				break;
+			case "min":
+				criterios.setPrecioMinimo(decimal(clave, valor));
+				break;
+			case "max":
+				criterios.setPrecioMaximo(decimal(clave, valor));
+				break;
+			case "disponible":
+				if (!"true".equals(valor) && !"false".equals(valor)) {
+					throw new IllegalArgumentException("El parámetro disponible debe ser true o false");
+				}
+				criterios.setDisponible(Boolean.valueOf(valor));
+				break;
+			case "orden":
+				// UN GUION DELANTE DE LA COLUMNA INVIERTE EL ORDEN: orden=-precio
+				boolean descendente = valor.startsWith("-");
+				String columna = (descendente ? valor.substring(1) : valor).toUpperCase(Locale.ROOT);
+				try {
+					criterios.setOrden(CriteriosBusqueda.Orden.valueOf(columna), descendente);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("No se puede ordenar por " + valor);
+				}
+				break;
+			case "limite":
+				criterios.setLimite(entero(clave, valor));
+				break;
+			case "desde":
+				criterios.setDesplazamiento(entero(clave, valor));
+				break;
+			default:
+				throw new IllegalArgumentException("Parámetro desconocido: " + clave);
+			}
+		}
+		return criterios;
+	}
+
+	private static double decimal(String clave, String valor) {
+		if (!Validador.esDecimal(valor)) {
+			throw new IllegalArgumentException("El parámetro " + clave + " debe ser un número");
+		}
+		return precio(valor);
+	}
+
+	/**
+	 * Lee un campo que debe ser un booleano JSON.
+	 *
+	 * @param defecto el valor si el campo no se envía
+	 * @throws IllegalArgumentException si el campo se envía con otro tipo de valor
+	 */
+	private static boolean booleano(Map<String, Object> campos, String clave, boolean defecto) {
+		if (!campos.containsKey(clave)) {
+			return defecto;
+		}
+		Object valor = campos.get(clave);
+		if (!(valor instanceof Boolean)) {
+			throw new IllegalArgumentException("El campo " + clave + " debe ser true o false");
+		}
+		return (Boolean) valor;
+	}
+
+	private static long version(String valor) {
+		try {
+			return Long.parseLong(valor.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("El campo version debe ser un número entero");
+		}
+	}
+
+	private static int entero(String clave, String valor) {
+		try {
+			return Integer.parseInt(valor);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("El parámetro " + clave + " debe ser un número entero");
+		}
+	}
+
+	/**
+	 * Valida los campos con las mismas reglas que el formulario; los errores nombran los campos JSON.
+	 *
+	 * @param parcial true si es una modificación: los campos null no se han enviado y no se comprueban
+	 * @return la respuesta de error, o null si los campos son válidos
+	 */
+	private static Respuesta validar(boolean parcial, String codigo, String nombre, String precio) {
+		Validador validador = ValidadorProducto.crear("codigo", "nombre", "precio");
+		ErroresValidacion errores = validador.crearErrores();
+		CharSequence[] valores = { codigo, nombre, precio };
+		if (validador.validar(valores, errores)) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder("{\"errores\":[");
+		int anotados = 0;
+		for (int i = 0; i < errores.getTotal(); i++) {
+			if (parcial && valores[errores.getCampo(i)] == null) {
+				continue;
+			}
+			if (anotados++ > 0) {
+				sb.append(',');
+			}
+			Json.cadena(sb, errores.getMensaje(i));
+		}
+		return anotados > 0 ? new Respuesta(400, sb.append("]}").toString()) : null;
+	}
+
+	/**
+	 * Lee un campo de texto de una modificación.
+	 *
+	 * @return el valor, una cadena vacía si se envía como null, o null si no se envía
+	 */
+	private static String enviado(Map<String, Object> campos, String clave) {
+		if (!campos.containsKey(clave)) {
+			return null;
+		}
+		String valor = texto(campos, clave);
+		return valor != null ? valor : "";
+	}
+
+	private static String texto(Map<String, Object> campos, String clave) {
+		Object valor = campos.get(clave);
+		return valor != null ? valor.toString() : null;
+	}
+
+	private static double precio(String precio) {
+		return Double.parseDouble(precio.trim().replace(',', '.'));
+	}
+
+	private static boolean esDuplicado(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof SQLIntegrityConstraintViolationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void atenderMetricas(HttpExchange intercambio) throws IOException {
+		if (!"GET".equals(intercambio.getRequestMethod())) {
+			responder(intercambio, new Respuesta(405, Json.mensaje("error", "Método no permitido")));
+			return;
+		}
+		StringBuilder sb = new StringBuilder("{\"endpoints\":[");
+		boolean primero = true;
+		for (MetricasEndpoint metrica : metricas.values()) {
+			if (!primero) {
+				sb.append(',');
+			}
+			metrica.toJson(sb);
+			primero = false;
+		}
+		sb.append("],\"operaciones\":");
+		Metricas.toJson(sb);
+		if (conPool) {
+			EstadisticasPool pool = DAOBase.getEstadisticasPool();
+			sb.append(",\"pool\":");
+			Json.cadena(sb, pool.toString());
+		}
+		responder(intercambio, new Respuesta(200, sb.append('}').toString()));
+	}
+
+	private static String leerCuerpo(HttpExchange intercambio) throws IOException {
+		try (InputStream is = intercambio.getRequestBody()) {
+			String cuerpo = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+			if (StringUtils.isBlank(cuerpo)) {
+				throw new IllegalArgumentException("Falta el cuerpo de la petición");
+			}
+			return cuerpo;
+		}
+	}
+
+	private static void responder(HttpExchange intercambio, Respuesta respuesta) throws IOException {
+		try {
+			if (respuesta.cuerpo == null) {
+				intercambio.sendResponseHeaders(respuesta.estado, -1);
+				return;
+			}
+			byte[] bytes = respuesta.cuerpo.getBytes(StandardCharsets.UTF_8);
+			intercambio.getResponseHeaders().set("Content-Type", JSON);
+			intercambio.sendResponseHeaders(respuesta.estado, bytes.length);
+			try (OutputStream os = intercambio.getResponseBody()) {
+				os.write(bytes);
+			}
+		} finally {
+			intercambio.close();
+		}
+	}
+
+	/**
+	 * Punto de entrada del servidor.
+	 *
+	 * @param args <code>--puerto N</code> y <code>--memoria</code>, ambos opcionales
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public static void main(String[] args) throws IOException {
+		int puerto = PUERTO;
+		boolean memoria = false;
+		for (int i = 0; i < args.length; i++) {
+			if ("--puerto".equals(args[i]) && i + 1 < args.length) {
+				puerto = Integer.parseInt(args[++i]);
+			} else if ("--memoria".equals(args[i])) {
+				memoria = true;
+			}
+		}
+		ServidorProductos servidor = memoria
+				? new ServidorProductos(FuenteProductosMemoria.conEjemplos(), false)
+				: new ServidorProductos(new FuenteProductosBD(), true);
+		servidor.iniciar(puerto);
+		Runtime.getRuntime().addShutdownHook(new Thread(servidor::detener));
+		System.out.println("Servidor de productos escuchando en el puerto " + servidor.getPuerto()
+				+ (memoria ? " (productos en memoria)" : ""));
+	}
+}
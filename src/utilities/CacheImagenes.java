@@ -0,0 +1,101 @@
+package utilities;
+
+import excepciones.ProductosException;
+import javafx.scene.image.Image;
+import model.Producto;
+
+/**
+ * Caché de imágenes ya decodificadas, por código de producto y tamaño.
+ *
+ * <p>
+ * Las imágenes se decodifican directamente al tamaño pedido, de modo que una miniatura no
+ * ocupa en memoria lo mismo que la imagen original. La caché está limitada por el número de
+ * bytes de píxeles (<code>imagen.cache.bytes</code>) y expulsa las menos usadas.
+ * </p>
+ */
+public class CacheImagenes {
+	
+	private static final CacheLRU<String, Image> IMAGENES = new CacheLRU<>(
+			Configuracion.getLong("imagen.cache.bytes", 32L * 1024 * 1024),
+			0,
+			img -> (long) img.getWidth() * (long) img.getHeight() * 4);
+	
+	private CacheImagenes() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Obtiene una imagen decodificada, usando la caché si ya se decodificó antes.
+	 * 
+	 * @param codigo el código del producto al que pertenece la imagen
+	 * @param bytes los bytes de la imagen, solo se usan si no está en la caché
+	 * @param ancho el ancho máximo de la imagen decodificada
+	 * @param alto el alto máximo de la imagen decodificada
+	 * @return la imagen, o null si no hay bytes
+	 * @throws ProductosException si ocurre un error al decodificar la imagen
+	 */
+	public static Image getImagen(String codigo, byte[] bytes, int ancho, int alto) throws ProductosException {
+		if (bytes == null) {
+			return null;
+		}
+		String clave = clave(codigo, ancho, alto);
+		Image imagen = IMAGENES.get(clave);
+		if (imagen == null) {
+			imagen = Utilidades.byte2Image(bytes, ancho, alto);
+			IMAGENES.put(clave, imagen);
+		}
+		return imagen;
+	}
+	
+	/**
+	 * Obtiene una imagen decodificada; si no está en la caché, carga sus bytes con el cargador
+	 * y la decodifica. Los bytes solo se piden si hace falta, por lo que no se accede a la base
+	 * de datos si la imagen ya está en la caché.
+	 * 
+	 * @param codigo el código del producto al que pertenece la imagen
+	 * @param cargador el cargador de los bytes de la imagen
+	 * @param ancho el ancho máximo de la imagen decodificada
+	 * @param alto el alto máximo de la imagen decodificada
+	 * @return la imagen, o null si el producto no tiene
+	 * @throws ProductosException si ocurre un error al cargar o decodificar la imagen
+	 */
+	public static Image getImagen(String codigo, Producto.CargadorImagen cargador, int ancho, int alto) throws ProductosException {
+		Image imagen = buscar(codigo, ancho, alto);
+		return imagen != null ? imagen : getImagen(codigo, cargador.cargar(codigo), ancho, alto);
+	}
+	
+	/**
+	 * Busca en la caché una imagen ya decodificada, sin decodificar nada.
+	 * 
+	 * @param codigo el código del producto al que pertenece la imagen
+	 * @param ancho el ancho máximo de la imagen decodificada
+	 * @param alto el alto máximo de la imagen decodificada
+	 * @return la imagen, o null si no está en la caché
+	 */
+	public static Image buscar(String codigo, int ancho, int alto) {
+		return IMAGENES.get(clave(codigo, ancho, alto));
+	}
+	
+	/**
+	 * Elimina de la caché todas las imágenes de un producto, de cualquier tamaño.
+	 * 
+	 * @param codigo el código del producto
+	 */
+	public static void invalidar(String codigo) {
+		String prefijo = codigo + "@";
+		IMAGENES.invalidarSi(clave -> clave.startsWith(prefijo));
+	}
+	
+	/**
+	 * Obtiene las estadísticas de la caché; el peso son los bytes de píxeles ocupados.
+	 * 
+	 * @return las estadísticas de la caché
+	 */
+	public static EstadisticasCache getEstadisticas() {
+		return IMAGENES.getEstadisticas();
+	}
+	
+	private static String clave(String codigo, int ancho, int alto) {
+		return codigo + "@" + ancho + "x" + alto;
+	}
+}
@@ -0,0 +1,195 @@
+package utilities;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché en memoria con expulsión LRU, caducidad y contadores de uso.
+ * 
+ * <p>
+ * Cada entrada tiene un peso (por defecto 1, de modo que el peso máximo es el número máximo
+ * de entradas). Cuando el peso total supera el máximo se expulsan las entradas usadas hace
+ * más tiempo. Las entradas caducan al superar el tiempo de vida indicado. Es segura para
+ * su uso desde varios hilos.
+ * </p>
+ *
+ * @param <K> el tipo de las claves
+ * @param <V> el tipo de los valores
+ */
+public class CacheLRU<K, V> {
+	
+	private final LinkedHashMap<K, Entrada<V>> entradas = new LinkedHashMap<>(16, 0.75f, true);
+	private final long pesoMaximo;
+	private final long vidaNanos;
+	private final ToLongFunction<V> pesador;
+	
+	private long pesoTotal;
+	private long aciertos;
+	private long fallos;
+	private long expulsiones;
+	
+	/**
+	 * Crea una caché limitada por número de entradas.
+	 * 
+	 * @param maximoEntradas el número máximo de entradas
+	 * @param vidaMs el tiempo de vida de cada entrada en milisegundos; 0 o negativo para que no caduquen
+	 */
+	public CacheLRU(long maximoEntradas, long vidaMs) {
+		this(maximoEntradas, vidaMs, v -> 1);
+	}
+	
+	/**
+	 * Crea una caché limitada por el peso total de sus entradas.
+	 * 
+	 * @param pesoMaximo el peso total máximo
+	 * @param vidaMs el tiempo de vida de cada entrada en milisegundos; 0 o negativo para que no caduquen
+	 * @param pesador la función que calcula el peso de un valor
+	 */
+	public CacheLRU(long pesoMaximo, long vidaMs, ToLongFunction<V> pesador) {
+		this.pesoMaximo = pesoMaximo;
+		this.vidaNanos = vidaMs > 0 ? vidaMs * 1_000_000 : 0;
+		this.pesador = pesador;
+	}
+	
+	/**
+	 * Obtiene un valor de la caché.
+	 * 
+	 * @param clave la clave del valor
+	 * @return el valor, o null si no está o ha caducado
+	 */
+	public synchronized V get(K clave) {
+		Entrada<V> entrada = entradas.get(clave);
+		if (entrada != null && caducada(entrada, System.nanoTime())) {
+			quitar(clave);
+			expulsiones++;
+			entrada = null;
+		}
+		if (entrada == null) {
+			fallos++;
+			return null;
+		}
+		aciertos++;
+		return entrada.valor;
+	}
+	
+	/**
+	 * Guarda un valor en la caché, expulsando las entradas menos usadas si es necesario.
+	 * Los valores nulos no se guardan y eliminan la entrada existente.
+	 * 
+	 * @param clave la clave del valor
+	 * @param valor el valor a guardar
+	 */
+	public synchronized void put(K clave, V valor) {
+		quitar(clave);
+		if (valor == null) {
+			return;
+		}
+		long peso = pesador.applyAsLong(valor);
+		if (peso > pesoMaximo) {
+			return;
+		}
+		entradas.put(clave, new Entrada<>(valor, peso, System.nanoTime()));
+		pesoTotal += peso;
+		
+		Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+		while (pesoTotal > pesoMaximo && it.hasNext()) {
+			Entrada<V> expulsada = it.next().getValue();
+			it.remove();
+			pesoTotal -= expulsada.peso;
+			expulsiones++;
+		}
+	}
+	
+	/**
+	 * Elimina una entrada de la caché.
+	 * 
+	 * @param clave la clave a invalidar
+	 */
+	public synchronized void invalidar(K clave) {
+		quitar(clave);
+	}
+	
+	/**
+	 * Elimina las entradas cuya clave cumple una condición.
+	 * 
+	 * @param condicion la condición sobre la clave
+	 * @return el número de entradas eliminadas
+	 */
+	public synchronized int invalidarSi(Predicate<K> condicion) {
+		int eliminadas = 0;
+		Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<K, Entrada<V>> entrada = it.next();
+			if (condicion.test(entrada.getKey())) {
+				it.remove();
+				pesoTotal -= entrada.getValue().peso;
+				eliminadas++;
+			}
+		}
+		return eliminadas;
+	}
+	
+	/**
+	 * Elimina todas las entradas de la caché.
+	 */
+	public synchronized void invalidarTodo() {
+		entradas.clear();
+		pesoTotal = 0;
+	}
+	
+	/**
+	 * Elimina las entradas caducadas.
+	 * 
+	 * @return el número de entradas eliminadas
+	 */
+	public synchronized int purgar() {
+		long ahora = System.nanoTime();
+		int eliminadas = 0;
+		Iterator<Entrada<V>> it = entradas.values().iterator();
+		while (it.hasNext()) {
+			Entrada<V> entrada = it.next();
+			if (caducada(entrada, ahora)) {
+				it.remove();
+				pesoTotal -= entrada.peso;
+				eliminadas++;
+			}
+		}
+		expulsiones += eliminadas;
+		return eliminadas;
+	}
+	
+	/**
+	 * Obtiene las estadísticas de uso de la caché.
+	 * 
+	 * @return una instantánea de las estadísticas
+	 */
+	public synchronized EstadisticasCache getEstadisticas() {
+		return new EstadisticasCache(entradas.size(), pesoTotal, aciertos, fallos, expulsiones);
+	}
+	
+	private void quitar(K clave) {
+		Entrada<V> anterior = entradas.remove(clave);
+		if (anterior != null) {
+			pesoTotal -= anterior.peso;
+		}
+	}
+	
+	private boolean caducada(Entrada<V> entrada, long ahora) {
+		return vidaNanos > 0 && ahora - entrada.creada > vidaNanos;
+	}
+	
+	private static class Entrada<V> {
+		private final V valor;
+		private final long peso;
+		private final long creada;
+		
+		private Entrada(V valor, long peso, long creada) {
+			this.valor = valor;
+			this.peso = peso;
+			this.creada = creada;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package utilities;
+
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Clase de utilidades para leer la configuración de la aplicación.
+ * 
+ * <p>
+ * Los valores se leen de <code>properties/configuration.properties</code>; si una clave
+ * no existe o no tiene un formato válido se devuelve el valor por defecto indicado.
+ * </p>
+ */
+public class Configuracion {
+	
+	private static final ResourceBundle BUNDLE = ResourceBundle.getBundle("properties.configuration");
+	
+	private Configuracion() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Obtiene una propiedad de texto obligatoria.
+	 * 
+	 * @param clave la clave de la propiedad
+	 * @return el valor de la propiedad
+	 * @throws MissingResourceException si la propiedad no existe
+	 */
+	public static String getString(String clave) {
+		return BUNDLE.getString(clave);
+	}
+	
+	/**
+	 * Obtiene una propiedad de texto.
+	 * 
+	 * @param clave la clave de la propiedad
+	 * @param defecto el valor a devolver si la propiedad no existe o está vacía
+	 * @return el valor de la propiedad o el valor por defecto
+	 */
+	public static String getString(String clave, String defecto) {
+		if (BUNDLE.containsKey(clave)) {
+			String valor = StringUtils.trimToNull(BUNDLE.getString(clave));
+			if (valor != null) {
+				return valor;
+			}
+		}
+		return defecto;
+	}
+	
+	/**
+	 * Obtiene una propiedad entera.
+	 * 
+	 * @param clave la clave de la propiedad
+	 * @param defecto el valor a devolver si la propiedad no existe o no es un entero
+	 * @return el valor de la propiedad o el valor por defecto
+	 */
+	public static int getInt(String clave, int defecto) {
+		String valor = getString(clave, null);
+		if (valor != null) {
+			try {
+				return Integer.parseInt(valor);
+			} catch (NumberFormatException e) {/*SE DEVUELVE EL VALOR POR DEFECTO*/}
+		}
+		return defecto;
+	}
+	
+	/**
+	 * Obtiene una propiedad entera larga.
+	 * 
+	 * @param clave la clave de la propiedad
+	 * @param defecto el valor a devolver si la propiedad no existe o no es un entero
+	 * @return el valor de la propiedad o el valor por defecto
+	 */
+	public static long getLong(String clave, long defecto) {
+		String valor = getString(clave, null);
+		if (valor != null) {
+			try {
+				return Long.parseLong(valor);
+			} catch (NumberFormatException e) {/*SE DEVUELVE EL VALOR POR DEFECTO*/}
+		}
+		return defecto;
+	}
+	
+	/**
+	 * Obtiene una propiedad booleana.
+	 * 
+	 * @param clave la clave de la propiedad
+	 * @param defecto el valor a devolver si la propiedad no existe
+	 * @return el valor de la propiedad o el valor por defecto
+	 */
+	public static boolean getBoolean(String clave, boolean defecto) {
+		String valor = getString(clave, null);
+		if (valor != null) {
+			return Boolean.parseBoolean(valor);
+		}
+		return defecto;
+	}
+}
@@ -0,0 +1,76 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import javafx.collections.ObservableList;
+
+/**
+ * Clase de utilidades para actualizar una lista observable aplicando solo las diferencias.
+ */
+public class DiferenciasLista {
+	
+	private DiferenciasLista() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Actualiza una lista observable para que contenga los mismos elementos que otra lista,
+	 * comparándolos por clave.
+	 * 
+	 * <p>
+	 * Los elementos cuya clave ya no existe se eliminan (agrupando los tramos contiguos),
+	 * los que han cambiado se sustituyen en su posición y los nuevos se añaden al final de
+	 * una sola vez. Los elementos que no han cambiado no generan ningún evento, por lo que
+	 * la lista conserva su orden actual.
+	 * </p>
+	 * 
+	 * @param actuales la lista observable a actualizar
+	 * @param nuevos los elementos que debe contener la lista
+	 * @param clave la función que obtiene la clave de un elemento
+	 * @param iguales el predicado que indica si dos elementos con la misma clave tienen el mismo contenido
+	 * @return el número de elementos añadidos, eliminados o sustituidos
+	 */
+	public static <T, K> int aplicar(ObservableList<T> actuales, List<T> nuevos, Function<T, K> clave, BiPredicate<T, T> iguales) {
+		Map<K, T> pendientes = new LinkedHashMap<>(Math.max(16, nuevos.size() * 4 / 3 + 1));
+		for (T nuevo : nuevos) {
+			pendientes.put(clave.apply(nuevo), nuevo);
+		}
+		
+		int cambios = 0;
+		int finTramo = -1;
+		for (int i = actuales.size() - 1; i >= 0; i--) {
+			T actual = actuales.get(i);
+			T nuevo = pendientes.remove(clave.apply(actual));
+			if (nuevo == null) {
+				if (finTramo < 0) {
+					finTramo = i + 1;
+				}
+				continue;
+			}
+			if (finTramo >= 0) {
+				cambios += finTramo - (i + 1);
+				actuales.remove(i + 1, finTramo);
+				finTramo = -1;
+			}
+			if (!iguales.test(actual, nuevo)) {
+				actuales.set(i, nuevo);
+				cambios++;
+			}
+		}
+		if (finTramo >= 0) {
+			cambios += finTramo;
+			actuales.remove(0, finTramo);
+		}
+		
+		if (!pendientes.isEmpty()) {
+			cambios += pendientes.size();
+			actuales.addAll(new ArrayList<>(pendientes.values()));
+		}
+		return cambios;
+	}
+}
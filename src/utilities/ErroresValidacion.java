@@ -0,0 +1,116 @@
+package utilities;
+
+/**
+ * Errores de una validación de {@link Validador}, reutilizable entre validaciones.
+ *
+ * <p>
+ * Solo guarda referencias a las reglas que no se han cumplido; el texto de los errores
+ * se construye al llamar a {@link #getMensajes()}.
+ * </p>
+ */
+public class ErroresValidacion {
+
+	private final Validador.Regla[] fallidas;
+	private int total;
+
+	ErroresValidacion(int capacidad) {
+		this.fallidas = new Validador.Regla[capacidad];
+	}
+
+	/**
+	 * Descarta los errores anotados.
+	 */
+	public void limpiar() {
+		for (int i = 0; i < total; i++) {
+			fallidas[i] = null;
+		}
+		total = 0;
+	}
+
+	void anadir(Validador.Regla regla) {
+		fallidas[total++] = regla;
+	}
+
+	/**
+	 * Indica si hay algún error.
+	 *
+	 * @return true si alguna regla no se ha cumplido
+	 */
+	public boolean hayErrores() {
+		return total > 0;
+	}
+
+	/**
+	 * Indica si un campo tiene errores.
+	 *
+	 * @param campo el índice del campo
+	 * @return true si alguna regla del campo no se ha cumplido
+	 */
+	public boolean hayErrores(int campo) {
+		for (int i = 0; i < total; i++) {
+			if (fallidas[i].getCampo() == campo) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Obtiene el número de errores.
+	 *
+	 * @return el número de reglas no cumplidas
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Obtiene un error.
+	 *
+	 * @param indice el índice del error, entre 0 y {@link #getTotal()} - 1
+	 * @return el mensaje del error
+	 */
+	public String getMensaje(int indice) {
+		if (indice < 0 || indice >= total) {
+			throw new IndexOutOfBoundsException(indice);
+		}
+		return fallidas[indice].getMensaje();
+	}
+
+	/**
+	 * Obtiene el campo de un error.
+	 *
+	 * @param indice el índice del error, entre 0 y {@link #getTotal()} - 1
+	 * @return el índice del campo, en orden de declaración
+	 */
+	public int getCampo(int indice) {
+		if (indice < 0 || indice >= total) {
+			throw new IndexOutOfBoundsException(indice);
+		}
+		return fallidas[indice].getCampo();
+	}
+
+	/**
+	 * Obtiene todos los errores, uno por línea.
+	 *
+	 * @return el texto de los errores, o una cadena vacía si no hay
+	 */
+	public String getMensajes() {
+		if (total == 0) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < total; i++) {
+			if (i > 0) {
+				sb.append('\n');
+			}
+			sb.append(fallidas[i].getMensaje());
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getMensajes();
+	}
+}
@@ -0,0 +1,82 @@
+package utilities;
+
+/**
+ * Instantánea de las estadísticas de una {@link CacheLRU}.
+ */
+public class EstadisticasCache {
+	
+	private final int entradas;
+	private final long peso;
+	private final long aciertos;
+	private final long fallos;
+	private final long expulsiones;
+	
+	EstadisticasCache(int entradas, long peso, long aciertos, long fallos, long expulsiones) {
+		this.entradas = entradas;
+		this.peso = peso;
+		this.aciertos = aciertos;
+		this.fallos = fallos;
+		this.expulsiones = expulsiones;
+	}
+
+	/**
+	 * Obtiene el número de entradas en la caché.
+	 * 
+	 * @return las entradas
+	 */
+	public int getEntradas() {
+		return entradas;
+	}
+
+	/**
+	 * Obtiene el peso total de las entradas en la caché.
+	 * 
+	 * @return el peso total
+	 */
+	public long getPeso() {
+		return peso;
+	}
+
+	/**
+	 * Obtiene el número de consultas resueltas desde la caché.
+	 * 
+	 * @return los aciertos
+	 */
+	public long getAciertos() {
+		return aciertos;
+	}
+
+	/**
+	 * Obtiene el número de consultas que no estaban en la caché.
+	 * 
+	 * @return los fallos
+	 */
+	public long getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * Obtiene el número de entradas expulsadas por tamaño o caducidad.
+	 * 
+	 * @return las expulsiones
+	 */
+	public long getExpulsiones() {
+		return expulsiones;
+	}
+	
+	/**
+	 * Obtiene la proporción de consultas resueltas desde la caché.
+	 * 
+	 * @return la tasa de aciertos, entre 0 y 1
+	 */
+	public double getTasaAciertos() {
+		long total = aciertos + fallos;
+		return total == 0 ? 0 : (double) aciertos / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("entradas=%d, peso=%d, aciertos=%d, fallos=%d, expulsiones=%d, tasa=%.1f%%",
+				entradas, peso, aciertos, fallos, expulsiones, getTasaAciertos() * 100);
+	}
+}
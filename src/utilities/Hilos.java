@@ -0,0 +1,60 @@
+package utilities;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clase de utilidades para crear ejecutores de tareas en segundo plano.
+ */
+public class Hilos {
+	
+	private Hilos() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Crea un ejecutor que lanza un hilo virtual por tarea si la JVM los soporta
+	 * (Java 21, o Java 19-20 con <code>--enable-preview</code>). En otro caso devuelve
+	 * un pool de hilos daemon que crece bajo demanda.
+	 * 
+	 * @param nombre el prefijo del nombre de los hilos de plataforma
+	 * @return el ejecutor
+	 */
+	public static ExecutorService ejecutorPorTarea(String nombre) {
+		try {
+			Method metodo = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) metodo.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newCachedThreadPool(factoriaDaemon(nombre));
+		}
+	}
+	
+	/**
+	 * Crea un pool de tamaño fijo con hilos daemon.
+	 * 
+	 * @param nombre el prefijo del nombre de los hilos
+	 * @param hilos el número de hilos
+	 * @return el ejecutor
+	 */
+	public static ExecutorService ejecutorFijo(String nombre, int hilos) {
+		return Executors.newFixedThreadPool(hilos, factoriaDaemon(nombre));
+	}
+	
+	/**
+	 * Crea una factoría de hilos daemon numerados, que no impiden que la aplicación termine.
+	 * 
+	 * @param nombre el prefijo del nombre de los hilos
+	 * @return la factoría de hilos
+	 */
+	public static ThreadFactory factoriaDaemon(String nombre) {
+		AtomicInteger contador = new AtomicInteger();
+		return r -> {
+			Thread hilo = new Thread(r, nombre + "-" + contador.incrementAndGet());
+			hilo.setDaemon(true);
+			return hilo;
+		};
+	}
+}
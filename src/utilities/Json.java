@@ -0,0 +1,261 @@
+package utilities;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Producto;
+
+/**
+ * Clase de utilidades para leer y escribir el JSON de los productos, sin dependencias externas.
+ * 
+ * <p>
+ * Solo se admiten objetos planos: los valores son cadenas, números, booleanos o null. Los
+ * números se devuelven con su texto original para poder validarlos igual que los campos del
+ * formulario.
+ * </p>
+ */
+public class Json {
+
+	private Json() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+
+	/**
+	 * Escribe un producto, sin imágenes.
+	 *
+	 * @param sb el destino
+	 * @param producto el producto
+	 * @return el mismo destino
+	 */
+	public static StringBuilder producto(StringBuilder sb, Producto producto) {
+		sb.append("{\"codigo\":");
+		cadena(sb, producto.getCodigo());
+		sb.append(",\"nombre\":");
+		cadena(sb, producto.getNombre());
+		sb.append(",\"precio\":").append(producto.getPrecio());
+		sb.append(",\"disponible\":").append(producto.isDisponible());
+		if (producto.getVersion() > 0) {
+			sb.append(",\"version\":").append(producto.getVersion());
+		}
+		return sb.append('}');
+	}
+
+	/**
+	 * Escribe una lista de productos como un array.
+	 *
+	 * @param productos los productos
+	 * @return el JSON del array
+	 */
+	public static String productos(List<Producto> productos) {
+		StringBuilder sb = new StringBuilder(productos.size() * 80 + 2).append('[');
+		for (int i = 0; i < productos.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			producto(sb, productos.get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Escribe un objeto con un único campo de texto.
+	 *
+	 * @param campo el nombre del campo
+	 * @param valor el valor del campo
+	 * @return el JSON del objeto
+	 */
+	public static String mensaje(String campo, String valor) {
+		StringBuilder sb = new StringBuilder("{");
+		cadena(sb, campo);
+		sb.append(':');
+		cadena(sb, valor);
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Escribe una cadena entre comillas, escapando los caracteres necesarios.
+	 *
+	 * @param sb el destino
+	 * @param valor la cadena, o null
+	 * @return el mismo destino
+	 */
+	public static StringBuilder cadena(StringBuilder sb, String valor) {
+		if (valor == null) {
+			return sb.append("null");
+		}
+		sb.append('"');
+		for (int i = 0; i < valor.length(); i++) {
+			char c = valor.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"');
+	}
+
+	/**
+	 * Lee un objeto plano.
+	 * 
+	 * @param texto el JSON
+	 * @return los campos en orden; las cadenas y los números como String, los booleanos como Boolean
+	 * @throws IllegalArgumentException si el JSON no es un objeto plano válido
+	 */
+	public static Map<String, Object> leerObjeto(String texto) {
+		Lector lector = new Lector(texto);
+		Map<String, Object> campos = new LinkedHashMap<>();
+		lector.esperar('{');
+		if (!lector.consumir('}')) {
+			do {
+				String clave = lector.cadena();
+				lector.esperar(':');
+				campos.put(clave, lector.valor());
+			} while (lector.consumir(','));
+			lector.esperar('}');
+		}
+		lector.fin();
+		return campos;
+	}
+
+	private static final class Lector {
+		private final String texto;
+		private int pos;
+
+		Lector(String texto) {
+			this.texto = texto;
+		}
+
+		void espacios() {
+			while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		boolean consumir(char c) {
+			espacios();
+			if (pos < texto.length() && texto.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		void esperar(char c) {
+			if (!consumir(c)) {
+				throw error("se esperaba '" + c + "'");
+			}
+		}
+
+		void fin() {
+			espacios();
+			if (pos != texto.length()) {
+				throw error("contenido inesperado");
+			}
+		}
+
+		Object valor() {
+			espacios();
+			if (pos >= texto.length()) {
+				throw error("falta un valor");
+			}
+			char c = texto.charAt(pos);
+			if (c == '"') {
+				return cadena();
+			}
+			if (texto.startsWith("true", pos)) {
+				pos += 4;
+				return Boolean.TRUE;
+			}
+			if (texto.startsWith("false", pos)) {
+				pos += 5;
+				return Boolean.FALSE;
+			}
+			if (texto.startsWith("null", pos)) {
+				pos += 4;
+				return null;
+			}
+			int inicio = pos;
+			while (pos < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(pos)) >= 0) {
+				pos++;
+			}
+			if (pos == inicio) {
+				throw error("valor no soportado");
+			}
+			return texto.substring(inicio, pos);
+		}
+
+		String cadena() {
+			esperar('"');
+			StringBuilder sb = new StringBuilder();
+			while (pos < texto.length()) {
+				char c = texto.charAt(pos++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (pos >= texto.length()) {
+					break;
+				}
+				char escape = texto.charAt(pos++);
+				switch (escape) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'u':
+					if (pos + 4 > texto.length()) {
+						throw error("escape unicode incompleto");
+					}
+					try {
+						sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("escape unicode incorrecto");
+					}
+					pos += 4;
+					break;
+				default:
+					sb.append(escape);
+				}
+			}
+			throw error("cadena sin terminar");
+		}
+
+		IllegalArgumentException error(String motivo) {
+			return new IllegalArgumentException("JSON incorrecto en la posición " + pos + ": " + motivo);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package utilities;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import excepciones.ProductosException;
+import model.Producto;
+
+/**
+ * Clase de utilidades para reducir imágenes y generar miniaturas.
+ *
+ * <p>
+ * Las dimensiones se configuran con <code>imagen.miniatura.ancho</code>/<code>alto</code> y
+ * <code>imagen.maxima.ancho</code>/<code>alto</code>. Si <code>imagen.conservarOriginal</code>
+ * es false, la imagen original también se reduce a las dimensiones máximas al guardarla.
+ * </p>
+ */
+public class Miniaturas {
+
+	/** Ancho máximo de las miniaturas. */
+	public static final int ANCHO_MINIATURA = Configuracion.getInt("imagen.miniatura.ancho", 160);
+	/** Alto máximo de las miniaturas. */
+	public static final int ALTO_MINIATURA = Configuracion.getInt("imagen.miniatura.alto", 160);
+	/** Ancho máximo de las imágenes guardadas si no se conserva el original. */
+	public static final int ANCHO_MAXIMO = Configuracion.getInt("imagen.maxima.ancho", 1024);
+	/** Alto máximo de las imágenes guardadas si no se conserva el original. */
+	public static final int ALTO_MAXIMO = Configuracion.getInt("imagen.maxima.alto", 1024);
+	/** Indica si se guarda la imagen original sin reducir. */
+	public static final boolean CONSERVAR_ORIGINAL = Configuracion.getBoolean("imagen.conservarOriginal", true);
+
+	private static final float CALIDAD_JPEG = 0.85f;
+
+	private Miniaturas() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+
+	/**
+	 * Prepara las imágenes de un producto antes de guardarlo: genera la miniatura si falta
+	 * y, si no se conserva el original, reduce la imagen a las dimensiones máximas. Como
+	 * {@link Producto#setImagen(byte[])} descarta la miniatura, una imagen nueva siempre
+	 * tiene su miniatura nueva.
+	 *
+	 * @param producto el producto a preparar
+	 * @throws ProductosException si la imagen no se puede leer
+	 */
+	public static void prepararProducto(Producto producto) throws ProductosException {
+		byte[] imagen = producto.cargarImagen();
+		if (imagen == null) {
+			producto.setMiniatura(null);
+			return;
+		}
+		if (!CONSERVAR_ORIGINAL) {
+			byte[] reducida = reducir(imagen, ANCHO_MAXIMO, ALTO_MAXIMO);
+			if (reducida != imagen) {
+				producto.setImagen(reducida);
+			}
+		}
+		if (producto.cargarMiniatura() == null) {
+			producto.setMiniatura(reducir(producto.getImagen(), ANCHO_MINIATURA, ALTO_MINIATURA));
+		}
+	}
+
+	/**
+	 * Reduce una imagen para que quepa en las dimensiones indicadas, conservando la proporción.
+	 *
+	 * <p>
+	 * Si la imagen ya cabe se devuelve el mismo array. Las imágenes con transparencia se
+	 * codifican en PNG y el resto en JPEG.
+	 * </p>
+	 *
+	 * @param imagen los bytes de la imagen en cualquier formato soportado por ImageIO
+	 * @param maxAncho el ancho máximo
+	 * @param maxAlto el alto máximo
+	 * @return los bytes de la imagen reducida, o la misma imagen si no hace falta reducirla
+	 * @throws ProductosException si la imagen no se puede leer o codificar
+	 */
+	public static byte[] reducir(byte[] imagen, int maxAncho, int maxAlto) throws ProductosException {
+		BufferedImage original;
+		try {
+			original = ImageIO.read(new ByteArrayInputStream(imagen));
+		} catch (IOException e) {
+			throw new ProductosException(e);
+		}
+		if (original == null) {
+			throw new ProductosException("Formato de imagen no soportado");
+		}
+		int ancho = original.getWidth();
+		int alto = original.getHeight();
+		if (ancho <= maxAncho && alto <= maxAlto) {
+			return imagen;
+		}
+		double escala = Math.min((double) maxAncho / ancho, (double) maxAlto / alto);
+		int anchoFinal = Math.max(1, (int) Math.round(ancho * escala));
+		int altoFinal = Math.max(1, (int) Math.round(alto * escala));
+		boolean transparencia = original.getColorModel().hasAlpha();
+
+		BufferedImage reducida = escalar(original, anchoFinal, altoFinal, transparencia);
+		try {
+			return transparencia ? codificar(reducida, "png") : codificarJpeg(reducida);
+		} catch (IOException e) {
+			throw new ProductosException(e);
+		}
+	}
+
+	/**
+	 * Escala a la mitad en varios pasos hasta acercarse al tamaño final y termina con un
+	 * último paso bilineal, que da mejor resultado que un único escalado grande.
+	 */
+	private static BufferedImage escalar(BufferedImage original, int anchoFinal, int altoFinal, boolean transparencia) {
+		int tipo = transparencia ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage actual = original;
+		int ancho = original.getWidth();
+		int alto = original.getHeight();
+		do {
+			ancho = Math.max(anchoFinal, ancho / 2);
+			alto = Math.max(altoFinal, alto / 2);
+			BufferedImage paso = new BufferedImage(ancho, alto, tipo);
+			Graphics2D g = paso.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(actual, 0, 0, ancho, alto, null);
+			} finally {
+				g.dispose();
+			}
+			actual = paso;
+		} while (ancho != anchoFinal || alto != altoFinal);
+		return actual;
+	}
+
+	private static byte[] codificar(BufferedImage imagen, String formato) throws IOException {
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		ImageIO.write(imagen, formato, salida);
+		return salida.toByteArray();
+	}
+
+	private static byte[] codificarJpeg(BufferedImage imagen) throws IOException {
+		Iterator<ImageWriter> escritores = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!escritores.hasNext()) {
+			return codificar(imagen, "png");
+		}
+		ImageWriter escritor = escritores.next();
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(salida)) {
+			ImageWriteParam param = escritor.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(CALIDAD_JPEG);
+			escritor.setOutput(ios);
+			escritor.write(null, new IIOImage(imagen, null, null), param);
+		} finally {
+			escritor.dispose();
+		}
+		return salida.toByteArray();
+	}
+}
@@ -9,8 +9,6 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import excepciones.ProductosException;
 import javafx.event.Event;
@@ -144,6 +142,27 @@ public class Utilidades {
 		return null;
 	}
 	
+	/**
+	 * Convierte un array de bytes en una imagen, decodificándola directamente a un tamaño
+	 * que quepa en las dimensiones indicadas y conservando la proporción.
+	 * 
+	 * @param bytes array de bytes a convertir
+	 * @param ancho ancho máximo de la imagen
+	 * @param alto alto máximo de la imagen
+	 * @return imagen convertida
+	 * @throws ProductosException si ocurre un error al convertir el array de bytes en imagen
+	 */
+	public static Image byte2Image(byte[] bytes, int ancho, int alto) throws ProductosException {
+		if (bytes != null) {
+			try (InputStream is = new ByteArrayInputStream(bytes)) {				
+				return new Image(is, ancho, alto, true, true);
+			} catch (IOException e) {
+				throw new ProductosException(e);
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Verifica que el contenido de un TextField sea un número decimal válido.
 	 * 
@@ -151,19 +170,19 @@ public class Utilidades {
 	 * @throws ProductosException si el contenido del TextField no es un número decimal válido
 	 */
 	public static void checkCampoDouble(TextField tf) throws ProductosException {
-		String strNum = tf.getText();
-		Pattern doublePattern = Pattern.compile("\\d+([\\.,]\\d+)?");
-		Matcher matcher = doublePattern.matcher(strNum);
-		if (!matcher.matches()) {
+		if (!Validador.esDecimal(tf.getText())) {
 			throw new ProductosException("El campo " + tf.getId() + " contiene un formato incorrecto o está vacío");
 		}
 	}
 
+	/**
+	 * Verifica que el contenido de un TextField sea un número decimal válido.
+	 * 
+	 * @param tf TextField a verificar
+	 * @return el mensaje de error, o una cadena vacía si el contenido es válido
+	 */
 	public static String checkCampoDoubleStr(TextField tf) {
-		String strNum = tf.getText();
-		Pattern doublePattern = Pattern.compile("\\d+([\\.,]\\d+)?");
-		Matcher matcher = doublePattern.matcher(strNum);
-		if (!matcher.matches()) {
+		if (!Validador.esDecimal(tf.getText())) {
 			return "El campo " + tf.getId() + " contiene un formato incorrecto o está vacío";
 		}
 		return "";
@@ -176,10 +195,7 @@ public class Utilidades {
 	 * @throws ProductosException si el contenido del TextField no es un número entero válido
 	 */
 	public static void checkCampoInt(TextField tf) throws ProductosException {
-		String strNum = tf.getText();
-		Pattern intPattern = Pattern.compile("\\d+");
-		Matcher matcher = intPattern.matcher(strNum);
-		if (!matcher.matches()) {
+		if (!Validador.esEntero(tf.getText())) {
 			throw new ProductosException("El campo " + tf.getId() + " contiene un formato incorrecto o está vacío");
 		}
 	}
@@ -385,6 +401,20 @@ public class Utilidades {
      * @param titulo el título de la ventana
      */
     public static void mostrarImagen(byte[] imagen, int width, int height, String titulo) {
+    	mostrarImagen(null, imagen, width, height, titulo);
+    }
+    
+    /**
+     * Muestra la imagen de un producto con un ancho y alto personalizados, usando la caché
+     * de imágenes decodificadas.
+     *
+     * @param codigo el código del producto, o null para no usar la caché
+     * @param imagen el arreglo de bytes que representa la imagen
+     * @param width el ancho deseado para la imagen
+     * @param height el alto deseado para la imagen
+     * @param titulo el título de la ventana
+     */
+    public static void mostrarImagen(String codigo, byte[] imagen, int width, int height, String titulo) {
     	
     	int defaultWidth = 400;
     	int defaultHeight = 400;
@@ -395,31 +425,52 @@ public class Utilidades {
     	if (imagen != null) {    		
     		
     		try {
-    			BorderPane imgRoot = new BorderPane();
-				ImageView iv = new ImageView(Utilidades.byte2Image(imagen));
-				iv.setPreserveRatio(true);
-				iv.setFitWidth(defWidth);
-				iv.setFitHeight(defHeight);
-				iv.maxWidth(defWidth);
-				iv.maxHeight(defHeight);
-				iv.prefWidth(defWidth);
-				iv.prefHeight(defHeight);
-				imgRoot.setCenter(iv);
-				Stage stage = new Stage();
-				if (!StringUtils.isBlank(titulo)) {
-					stage.setTitle(titulo);
-				}
-				stage.setResizable(false);
-				stage.initModality(Modality.WINDOW_MODAL);
-				Scene scene = new Scene(imgRoot,defWidth,defHeight);
-				stage.setScene(scene);
-				stage.show();
+				mostrarImagen(codigo != null 
+						? CacheImagenes.getImagen(codigo, imagen, defWidth, defHeight) 
+						: Utilidades.byte2Image(imagen, defWidth, defHeight), defWidth, defHeight, titulo);
 			} catch (ProductosException e) {
 				lanzarError(e);
 			}
     				
     	}
     }
+    
+    /**
+     * Muestra una imagen ya decodificada, por ejemplo fuera del hilo de JavaFX, en una ventana
+     * con un ancho y alto personalizados.
+     *
+     * @param imagen la imagen decodificada; si es null no se muestra nada
+     * @param width el ancho de la ventana
+     * @param height el alto de la ventana
+     * @param titulo el título de la ventana
+     */
+    public static void mostrarImagen(Image imagen, int width, int height, String titulo) {
+    	
+    	int defWidth = width > 0 ? width : 400;
+    	int defHeight = height > 0 ? height : 400;
+    	
+    	if (imagen != null) {
+			BorderPane imgRoot = new BorderPane();
+			ImageView iv = new ImageView(imagen);
+			iv.setPreserveRatio(true);
+			iv.setFitWidth(defWidth);
+			iv.setFitHeight(defHeight);
+			iv.maxWidth(defWidth);
+			iv.maxHeight(defHeight);
+			iv.prefWidth(defWidth);
+			iv.prefHeight(defHeight);
+			imgRoot.setCenter(iv);
+			Stage stage = new Stage();
+			if (!StringUtils.isBlank(titulo)) {
+				stage.setTitle(titulo);
+			}
+			stage.setResizable(false);
+			stage.initModality(Modality.WINDOW_MODAL);
+			Scene scene = new Scene(imgRoot,defWidth,defHeight);
+			stage.setScene(scene);
+			stage.show();
+    	}
+    }
 	
 	
 }
@@ -0,0 +1,316 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validador declarativo de formularios.
+ *
+ * <p>
+ * Las reglas se declaran una vez por formulario, agrupadas por campo, y se compilan a un array;
+ * los mensajes de error se construyen al declarar la regla. Validar no crea objetos: los errores
+ * se anotan en un {@link ErroresValidacion} reutilizable y el texto completo solo se genera
+ * si se pide. Por cada campo se informa únicamente de la primera regla que no se cumple.
+ * </p>
+ *
+ * <pre>
+ * Validador v = new Validador()
+ *     .campo("tfCodigo").noVacio().longitudMinima(5).longitudMaxima(5)
+ *     .campo("tfPrecio").noVacio().decimal();
+ * </pre>
+ */
+public class Validador {
+
+	/**
+	 * Una regla de validación sobre el valor de un campo.
+	 */
+	public static final class Regla {
+		private final int campo;
+		private final int tipo;
+		private final int parametro;
+		private final String mensaje;
+
+		private Regla(int campo, int tipo, int parametro, String mensaje) {
+			this.campo = campo;
+			this.tipo = tipo;
+			this.parametro = parametro;
+			this.mensaje = mensaje;
+		}
+
+		/**
+		 * Obtiene el índice del campo al que se aplica la regla.
+		 *
+		 * @return el índice del campo, en orden de declaración
+		 */
+		public int getCampo() {
+			return campo;
+		}
+
+		/**
+		 * Obtiene el mensaje de error de la regla.
+		 *
+		 * @return el mensaje
+		 */
+		public String getMensaje() {
+			return mensaje;
+		}
+	}
+
+	private static final int NO_VACIO = 0;
+	private static final int LONGITUD_MINIMA = 1;
+	private static final int LONGITUD_MAXIMA = 2;
+	private static final int DECIMAL = 3;
+	private static final int ENTERO = 4;
+
+	private final List<String> campos = new ArrayList<>();
+	private final List<Regla> declaradas = new ArrayList<>();
+	private Regla[] reglas = new Regla[0];
+	private int[] inicioCampo = new int[1];
+
+	/**
+	 * Crea un validador sin reglas.
+	 */
+	public Validador() {
+	}
+
+	/**
+	 * Declara un nuevo campo; las reglas siguientes se aplican a él.
+	 *
+	 * @param nombre el nombre del campo, que aparece en los mensajes de error
+	 * @return la instancia actual del validador
+	 */
+	public Validador campo(String nombre) {
+		campos.add(nombre);
+		compilar();
+		return this;
+	}
+
+	/**
+	 * El campo no puede ser nulo, estar vacío ni contener solo espacios.
+	 *
+	 * @return la instancia actual del validador
+	 */
+	public Validador noVacio() {
+		return regla(NO_VACIO, 0, "El campo " + campoActual() + " está vacío");
+	}
+
+	/**
+	 * El campo, sin los espacios de los extremos, debe tener al menos esa longitud.
+	 * No se aplica si el campo está vacío.
+	 *
+	 * @param minimo la longitud mínima
+	 * @return la instancia actual del validador
+	 */
+	public Validador longitudMinima(int minimo) {
+		return regla(LONGITUD_MINIMA, minimo, "El campo " + campoActual() + " tiene menos de " + minimo + " caracteres");
+	}
+
+	/**
+	 * El campo, sin los espacios de los extremos, no puede superar esa longitud.
+	 * No se aplica si el campo está vacío.
+	 *
+	 * @param maximo la longitud máxima
+	 * @return la instancia actual del validador
+	 */
+	public Validador longitudMaxima(int maximo) {
+		return regla(LONGITUD_MAXIMA, maximo, "El campo " + campoActual() + " tiene más de " + maximo + " caracteres");
+	}
+
+	/**
+	 * El campo debe ser un número decimal no negativo, con coma o punto decimal.
+	 *
+	 * @return la instancia actual del validador
+	 * @see #esDecimal(CharSequence)
+	 */
+	public Validador decimal() {
+		return regla(DECIMAL, 0, "El campo " + campoActual() + " contiene un formato incorrecto o está vacío");
+	}
+
+	/**
+	 * El campo debe ser un número entero no negativo.
+	 *
+	 * @return la instancia actual del validador
+	 * @see #esEntero(CharSequence)
+	 */
+	public Validador entero() {
+		return regla(ENTERO, 0, "El campo " + campoActual() + " contiene un formato incorrecto o está vacío");
+	}
+
+	/**
+	 * Obtiene el número de campos declarados.
+	 *
+	 * @return el número de campos
+	 */
+	public int getNumeroCampos() {
+		return campos.size();
+	}
+
+	/**
+	 * Obtiene el número de reglas declaradas.
+	 *
+	 * @return el número de reglas
+	 */
+	public int getNumeroReglas() {
+		return reglas.length;
+	}
+
+	/**
+	 * Crea un contenedor de errores con capacidad para este validador.
+	 *
+	 * @return el contenedor, reutilizable entre validaciones
+	 */
+	public ErroresValidacion crearErrores() {
+		return new ErroresValidacion(Math.max(1, campos.size()));
+	}
+
+	/**
+	 * Valida todos los campos. Los errores anteriores del contenedor se descartan.
+	 *
+	 * @param valores los valores de los campos, en orden de declaración
+	 * @param errores el contenedor donde se anotan los errores
+	 * @return true si todos los campos son válidos
+	 */
+	public boolean validar(CharSequence[] valores, ErroresValidacion errores) {
+		errores.limpiar();
+		for (int campo = 0; campo < campos.size(); campo++) {
+			Regla fallida = primeraFallida(campo, valores[campo]);
+			if (fallida != null) {
+				errores.anadir(fallida);
+			}
+		}
+		return !errores.hayErrores();
+	}
+
+	/**
+	 * Valida un único campo.
+	 *
+	 * @param campo el índice del campo
+	 * @param valor el valor del campo
+	 * @return true si el valor cumple todas las reglas del campo
+	 */
+	public boolean esValido(int campo, CharSequence valor) {
+		return primeraFallida(campo, valor) == null;
+	}
+
+	/**
+	 * Comprueba si un texto es un número decimal no negativo: uno o más dígitos, opcionalmente
+	 * seguidos de coma o punto y uno o más dígitos.
+	 *
+	 * @param cs el texto a comprobar
+	 * @return true si tiene formato decimal
+	 */
+	public static boolean esDecimal(CharSequence cs) {
+		int longitud = StringUtils.length(cs);
+		int i = digitos(cs, 0, longitud);
+		if (i == 0) {
+			return false;
+		}
+		if (i == longitud) {
+			return true;
+		}
+		char separador = cs.charAt(i);
+		if (separador != '.' && separador != ',') {
+			return false;
+		}
+		int fin = digitos(cs, i + 1, longitud);
+		return fin > i + 1 && fin == longitud;
+	}
+
+	/**
+	 * Comprueba si un texto es un número entero no negativo: uno o más dígitos.
+	 *
+	 * @param cs el texto a comprobar
+	 * @return true si tiene formato entero
+	 */
+	public static boolean esEntero(CharSequence cs) {
+		int longitud = StringUtils.length(cs);
+		return longitud > 0 && digitos(cs, 0, longitud) == longitud;
+	}
+
+	/**
+	 * Avanza sobre los dígitos ASCII desde una posición.
+	 *
+	 * @return la posición del primer carácter que no es un dígito
+	 */
+	private static int digitos(CharSequence cs, int desde, int hasta) {
+		int i = desde;
+		while (i < hasta) {
+			char c = cs.charAt(i);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private Regla primeraFallida(int campo, CharSequence valor) {
+		for (int i = inicioCampo[campo]; i < inicioCampo[campo + 1]; i++) {
+			if (!cumple(reglas[i], valor)) {
+				return reglas[i];
+			}
+		}
+		return null;
+	}
+
+	private static boolean cumple(Regla regla, CharSequence valor) {
+		switch (regla.tipo) {
+		case NO_VACIO:
+			return !StringUtils.isBlank(valor);
+		case LONGITUD_MINIMA:
+			return StringUtils.isBlank(valor) || longitudSinEspacios(valor) >= regla.parametro;
+		case LONGITUD_MAXIMA:
+			return StringUtils.isBlank(valor) || longitudSinEspacios(valor) <= regla.parametro;
+		case DECIMAL:
+			return esDecimal(valor);
+		case ENTERO:
+			return esEntero(valor);
+		default:
+			return true;
+		}
+	}
+
+	private static int longitudSinEspacios(CharSequence cs) {
+		int inicio = 0;
+		int fin = cs.length();
+		while (inicio < fin && Character.isWhitespace(cs.charAt(inicio))) {
+			inicio++;
+		}
+		while (fin > inicio && Character.isWhitespace(cs.charAt(fin - 1))) {
+			fin--;
+		}
+		return fin - inicio;
+	}
+
+	private String campoActual() {
+		if (campos.isEmpty()) {
+			throw new IllegalStateException("Hay que declarar un campo antes que sus reglas");
+		}
+		return campos.get(campos.size() - 1);
+	}
+
+	/**
+	 * Añade una regla al campo actual.
+	 */
+	private Validador regla(int tipo, int parametro, String mensaje) {
+		declaradas.add(new Regla(campos.size() - 1, tipo, parametro, mensaje));
+		compilar();
+		return this;
+	}
+
+	/**
+	 * Compila las reglas declaradas a un array y calcula dónde empiezan las de cada campo.
+	 */
+	private void compilar() {
+		reglas = declaradas.toArray(new Regla[0]);
+		inicioCampo = new int[campos.size() + 1];
+		int r = 0;
+		for (int campo = 0; campo < campos.size(); campo++) {
+			inicioCampo[campo] = r;
+			while (r < reglas.length && reglas[r].campo == campo) {
+				r++;
+			}
+		}
+		inicioCampo[campos.size()] = r;
+	}
+}
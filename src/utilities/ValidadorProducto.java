@@ -0,0 +1,43 @@
+package utilities;
+
+/**
+ * Reglas de validación de los datos de un producto, compartidas por el formulario y la importación.
+ */
+public class ValidadorProducto {
+	
+	/** Índice del campo código. */
+	public static final int CODIGO = 0;
+	/** Índice del campo nombre. */
+	public static final int NOMBRE = 1;
+	/** Índice del campo precio. */
+	public static final int PRECIO = 2;
+	
+	private ValidadorProducto() throws IllegalAccessException {
+		throw new IllegalAccessException("Clase de utilidad");
+	}
+	
+	/**
+	 * Crea el validador de producto. Los campos se llaman como los del formulario.
+	 * 
+	 * @return un nuevo validador con los campos {@link #CODIGO}, {@link #NOMBRE} y {@link #PRECIO}
+	 */
+	public static Validador crear() {
+		return crear("tfCodigo", "tfNombre", "tfPrecio");
+	}
+	
+	/**
+	 * Crea el validador de producto con otros nombres de campo en los mensajes de error, por
+	 * ejemplo los de los campos JSON del servidor.
+	 * 
+	 * @param codigo el nombre del campo código
+	 * @param nombre el nombre del campo nombre
+	 * @param precio el nombre del campo precio
+	 * @return un nuevo validador con los campos {@link #CODIGO}, {@link #NOMBRE} y {@link #PRECIO}
+	 */
+	public static Validador crear(String codigo, String nombre, String precio) {
+		return new Validador()
+				.campo(codigo).noVacio().longitudMinima(5).longitudMaxima(5)
+				.campo(nombre).noVacio().longitudMaxima(50)
+				.campo(precio).noVacio().decimal();
+	}
+}